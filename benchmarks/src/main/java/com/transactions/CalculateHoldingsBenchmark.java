@@ -0,0 +1,100 @@
+package com.transactions;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end calculateHoldings over a generated file, for each HoldingCalculator implementation. The rows counter
+ * reports throughput in lines per second next to the per call score
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CalculateHoldingsBenchmark {
+    private static final LocalDate DATE = LocalDate.of(2030, 1, 1);
+
+    @Param({"10000"})
+    public int accounts;
+
+    @Param({"100"})
+    public int transactionsPerAccount;
+
+    @Param({"50"})
+    public int assets;
+
+    @Param({"0.0", "0.05"})
+    public double invalidRatio;
+
+    @Param({"impl", "mapped", "parallel", "fixed", "columnar"})
+    public String calculator;
+
+    private File file;
+    private long lines;
+    private HoldingCalculator holdingCalculator;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Rows {
+        public long rows;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        TransactionFileGenerator generator = new TransactionFileGenerator(accounts, transactionsPerAccount, assets, invalidRatio);
+        file = File.createTempFile("transactions", ".txt");
+        generator.write(file);
+        lines = generator.lines();
+        holdingCalculator = create(calculator);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        file.delete();
+    }
+
+    @Benchmark
+    public Map<String, List<Holding>> calculateHoldings(Rows rows){
+        rows.rows += lines;
+        return holdingCalculator.calculateHoldings(file, DATE);
+    }
+
+    static HoldingCalculator create(String name){
+        switch (name){
+            case "impl":
+                return new HoldingCalculatorImpl();
+            case "mapped":
+                return new MappedHoldingCalculator();
+            case "parallel":
+                return new ParallelHoldingCalculator();
+            case "fixed":
+                return new FixedPointHoldingCalculator();
+            case "columnar":
+                return new ColumnarHoldingCalculator();
+            default:
+                throw new IllegalArgumentException("Error: unknown calculator [" + name + "]");
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.transactions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Line parsing: split, Transaction construction and validation, the whole parseTransaction, and the byte tokenizer of
+ * MappedTransactionReader. Scores are per line
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParsingBenchmark {
+    private static final int LINES = 1024;
+
+    @Param({"8"})
+    public int assets;
+
+    @Param({"0.0", "0.1"})
+    public double invalidRatio;
+
+    private String[] lines;
+    private String[][] elements;
+    private Transaction[] transactions;
+    private byte[][] bytes;
+    private MappedTransactionReader reader;
+
+    @Setup
+    public void setUp(){
+        lines = new TransactionFileGenerator(LINES / 32, 32, assets, invalidRatio).lines(LINES).toArray(new String[0]);
+        elements = new String[LINES][];
+        bytes = new byte[LINES][];
+        List<Transaction> constructed = new ArrayList<>();
+        for (int i = 0; i < LINES; i++){
+            elements[i] = lines[i].split(",");
+            bytes[i] = lines[i].getBytes(StandardCharsets.UTF_8);
+            try {
+                constructed.add(new Transaction(elements[i]));
+            } catch (InvalidTransactionException e){
+                //only valid transactions are validated
+            }
+        }
+        //as many transactions as lines, repeating valid ones, so that scores are per transaction
+        transactions = new Transaction[LINES];
+        for (int i = 0; i < LINES; i++){
+            transactions[i] = constructed.get(i % constructed.size());
+        }
+        reader = new MappedTransactionReader();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void split(Blackhole blackhole){
+        for (String line : lines){
+            blackhole.consume(line.split(","));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void constructTransaction(Blackhole blackhole){
+        for (String[] line : elements){
+            try {
+                blackhole.consume(new Transaction(line));
+            } catch (InvalidTransactionException e){
+                blackhole.consume(e);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void validateTransactions(Blackhole blackhole){
+        for (Transaction t : transactions){
+            try {
+                t.validateTransaction();
+            } catch (InvalidTransactionException e){
+                blackhole.consume(e);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void parseTransaction(Blackhole blackhole){
+        for (String line : lines){
+            try {
+                blackhole.consume(HoldingCalculatorImpl.parseTransaction(line));
+            } catch (InvalidTransactionException e){
+                blackhole.consume(e);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void tokenizeBytes(Blackhole blackhole){
+        for (byte[] line : bytes){
+            blackhole.consume(reader.parseLine(line, line.length));
+        }
+    }
+}
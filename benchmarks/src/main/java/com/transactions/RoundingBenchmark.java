@@ -0,0 +1,87 @@
+package com.transactions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rounding of BOT/SLD notionals: roundToFourPlaces against FixedPoint.toFixed of the same product, as
+ * FixedPointHoldingCalculator rounds notionals, and a BOT followed by a SLD through
+ * handleBotTransaction/handleSldTransaction. Scores are per notional or per BOT/SLD pair
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoundingBenchmark {
+    private static final int VALUES = 1024;
+
+    private final HoldingCalculatorImpl calculator = new HoldingCalculatorImpl();
+    private double[] units;
+    private double[] prices;
+    private Transaction[] bought;
+    private Transaction[] sold;
+
+    @Setup
+    public void setUp(){
+        Random random = new Random(42);
+        units = new double[VALUES];
+        prices = new double[VALUES];
+        bought = new Transaction[VALUES];
+        sold = new Transaction[VALUES];
+        for (int i = 0; i < VALUES; i++){
+            units[i] = (1 + random.nextInt(100000)) / 100.0;
+            prices[i] = (1 + random.nextInt(1000000)) / 10000.0;
+            String asset = "AS" + (i % 8);
+            bought[i] = new Transaction("NEAA0000", LocalDate.of(2017, 1, 1),
+                    Transaction.txn.BOT, units[i], prices[i], asset);
+            sold[i] = new Transaction("NEAA0000", bought[i].getDate(), Transaction.txn.SLD, units[i], prices[i], asset);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void roundToFourPlaces(Blackhole blackhole){
+        for (int i = 0; i < VALUES; i++){
+            blackhole.consume(calculator.roundToFourPlaces(units[i] * prices[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void fixedPointNotional(Blackhole blackhole){
+        for (int i = 0; i < VALUES; i++){
+            blackhole.consume(FixedPoint.toFixed(units[i] * prices[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public double botThenSld(){
+        Map<String, Holding> holdingMap = new HashMap<>();
+        double cash = 0;
+        for (int i = 0; i < VALUES; i++){
+            cash = calculator.handleBotTransaction(holdingMap, bought[i], cash);
+            cash = calculator.handleSldTransaction(holdingMap, sold[i], cash);
+        }
+        return cash;
+    }
+}
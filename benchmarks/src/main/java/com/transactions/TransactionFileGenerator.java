@@ -0,0 +1,118 @@
+package com.transactions;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic transaction files grouped by account, for benchmarks. Every account starts with a deposit and
+ * then buys, sells, receives dividends and withdraws over consecutive days; a share of lines is replaced by invalid ones
+ * (header rows, malformed dates, unknown txn types, missing fields)
+ */
+
+public class TransactionFileGenerator {
+    private static final LocalDate START = LocalDate.of(2015, 1, 1);
+    private static final String[] INVALID_LINES = {
+            "Account,Date,TxnType,Units,Price,Asset",
+            "%s,2017-01-01,BOT,10,1.5,VUKE",
+            "%s,20170101,BUY,10,1.5,VUKE",
+            "%s,20170101,BOT,10,VUKE",
+    };
+
+    private final int accounts;
+    private final int transactionsPerAccount;
+    private final int assets;
+    private final double invalidRatio;
+    private final long seed;
+
+    /**
+     * @param accounts int number of accounts
+     * @param transactionsPerAccount int number of lines per account
+     * @param assets int number of distinct assets
+     * @param invalidRatio double share of lines that are invalid, between 0 and 1
+     */
+
+    public TransactionFileGenerator(int accounts, int transactionsPerAccount, int assets, double invalidRatio){
+        this(accounts, transactionsPerAccount, assets, invalidRatio, 42);
+    }
+
+    public TransactionFileGenerator(int accounts, int transactionsPerAccount, int assets, double invalidRatio, long seed){
+        this.accounts = accounts;
+        this.transactionsPerAccount = transactionsPerAccount;
+        this.assets = assets;
+        this.invalidRatio = invalidRatio;
+        this.seed = seed;
+    }
+
+    /**
+     * @return long number of lines generated
+     */
+
+    public long lines(){
+        return (long) accounts * transactionsPerAccount;
+    }
+
+    /**
+     * Writes generated transactions to file
+     *
+     * @param file File file to write
+     * @throws IOException
+     */
+
+    public void write(File file) throws IOException {
+        Random random = new Random(seed);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file), 1 << 16)){
+            for (int a = 0; a < accounts; a++){
+                String account = String.format("NEAA%07d", a);
+                for (int t = 0; t < transactionsPerAccount; t++){
+                    writer.write(line(random, account, t));
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param count int number of lines
+     * @return List<String> generated lines, as write would write them for the first accounts
+     */
+
+    public List<String> lines(int count){
+        Random random = new Random(seed);
+        List<String> lines = new ArrayList<>(count);
+        for (int a = 0; lines.size() < count; a++){
+            String account = String.format("NEAA%07d", a);
+            for (int t = 0; t < transactionsPerAccount && lines.size() < count; t++){
+                lines.add(line(random, account, t));
+            }
+        }
+        return lines;
+    }
+
+    private String line(Random random, String account, int index){
+        if (random.nextDouble() < invalidRatio){
+            return String.format(INVALID_LINES[random.nextInt(INVALID_LINES.length)], account);
+        }
+        String date = START.plusDays(index).format(Transaction.formatter);
+        if (index == 0){
+            return account + "," + date + ",DEP,100000,1,CASH";
+        }
+        String asset = String.format("AS%05d", random.nextInt(assets));
+        String units = Double.toString((1 + random.nextInt(100000)) / 100.0);
+        String price = Double.toString((1 + random.nextInt(1000000)) / 10000.0);
+        int kind = random.nextInt(10);
+        if (kind < 5){
+            return account + "," + date + ",BOT," + units + "," + price + "," + asset;
+        } else if (kind < 8){
+            return account + "," + date + ",SLD," + units + "," + price + "," + asset;
+        } else if (kind < 9){
+            return account + "," + date + ",DIV,1," + price + "," + asset;
+        }
+        return account + "," + date + ",WDR," + units + ",1,CASH";
+    }
+}
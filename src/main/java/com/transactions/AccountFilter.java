@@ -0,0 +1,175 @@
+package com.transactions;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Selects accounts by name: any of a set of names, names starting with a prefix, names in a range, or a union of
+ * these. Names are compared as UTF-8 bytes, so an account field can be tested straight from the bytes of a line without
+ * creating a String; ranges are ordered by those bytes, which for ASCII names is the order of String.compareTo.
+ * Immutable and thread safe
+ */
+
+public final class AccountFilter {
+    private static final byte[][] NONE = new byte[0][];
+
+    //sorted for binary search
+    private final byte[][] accounts;
+    private final byte[][] prefixes;
+    private final byte[] from;
+    private final byte[] to;
+
+    private AccountFilter(byte[][] accounts, byte[][] prefixes, byte[] from, byte[] to){
+        this.accounts = accounts;
+        this.prefixes = prefixes;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * @param accounts Collection<String> names of the accounts to select
+     * @return AccountFilter filter selecting exactly these accounts
+     */
+
+    public static AccountFilter of(Collection<String> accounts){
+        byte[][] names = new byte[accounts.size()][];
+        int i = 0;
+        for (String account : accounts){
+            names[i++] = bytes(account);
+        }
+        Arrays.sort(names, AccountFilter::compare);
+        return new AccountFilter(names, NONE, null, null);
+    }
+
+    public static AccountFilter of(String... accounts){
+        return of(Arrays.asList(accounts));
+    }
+
+    /**
+     * @param prefix String start of the names of the accounts to select
+     * @return AccountFilter filter selecting accounts whose name starts with prefix
+     */
+
+    public static AccountFilter prefix(String prefix){
+        return new AccountFilter(NONE, new byte[][]{bytes(prefix)}, null, null);
+    }
+
+    /**
+     * @param from String first name selected
+     * @param to String first name after the range, not selected, not before from in UTF-8 byte order
+     * @return AccountFilter filter selecting accounts named from from (inclusive) to to (exclusive)
+     */
+
+    public static AccountFilter range(String from, String to){
+        byte[] start = bytes(from);
+        byte[] end = bytes(to);
+        if (compare(start, end) > 0){
+            throw new IllegalArgumentException("Error: range start [" + from + "] expected not to be after its end [" +
+                    to + "]");
+        }
+        return new AccountFilter(NONE, NONE, start, end);
+    }
+
+    /**
+     * Parses a comma separated list of account names and prefixes, a prefix ending with *, e.g. NEAA*,NEAB0001
+     *
+     * @param pattern String list of names and prefixes
+     * @return AccountFilter filter selecting accounts matching any of them
+     */
+
+    public static AccountFilter parse(String pattern){
+        List<String> names = new ArrayList<>();
+        List<byte[]> prefixes = new ArrayList<>();
+        for (String part : pattern.split(",")){
+            String trimmed = part.trim();
+            if (trimmed.isEmpty()){
+                continue;
+            }
+            if (trimmed.endsWith("*")){
+                prefixes.add(bytes(trimmed.substring(0, trimmed.length() - 1)));
+            } else {
+                names.add(trimmed);
+            }
+        }
+        return new AccountFilter(of(names).accounts, prefixes.toArray(NONE), null, null);
+    }
+
+    /**
+     * @param other AccountFilter filter to add
+     * @return AccountFilter filter selecting accounts selected by this or by other
+     */
+
+    public AccountFilter or(AccountFilter other){
+        if (from != null && other.from != null){
+            throw new IllegalArgumentException("Error: cannot combine two ranges");
+        }
+        byte[][] allAccounts = Arrays.copyOf(accounts, accounts.length + other.accounts.length);
+        System.arraycopy(other.accounts, 0, allAccounts, accounts.length, other.accounts.length);
+        Arrays.sort(allAccounts, AccountFilter::compare);
+        byte[][] allPrefixes = Arrays.copyOf(prefixes, prefixes.length + other.prefixes.length);
+        System.arraycopy(other.prefixes, 0, allPrefixes, prefixes.length, other.prefixes.length);
+        return from != null ? new AccountFilter(allAccounts, allPrefixes, from, to) :
+                new AccountFilter(allAccounts, allPrefixes, other.from, other.to);
+    }
+
+    public boolean matches(String account){
+        byte[] name = bytes(account);
+        return matches(name, 0, name.length);
+    }
+
+    /**
+     * @param bytes byte[] buffer holding the account name
+     * @param start int index of the first byte of the name
+     * @param end int index after the last byte of the name
+     * @return boolean true if the account is selected
+     */
+
+    public boolean matches(byte[] bytes, int start, int end){
+        for (byte[] prefix : prefixes){
+            if (end - start >= prefix.length && compare(prefix, 0, prefix.length, bytes, start, start + prefix.length) == 0){
+                return true;
+            }
+        }
+        if (from != null && compare(from, 0, from.length, bytes, start, end) <= 0 &&
+                compare(bytes, start, end, to, 0, to.length) < 0){
+            return true;
+        }
+        int low = 0;
+        int high = accounts.length - 1;
+        while (low <= high){
+            int middle = (low + high) >>> 1;
+            int comparison = compare(accounts[middle], 0, accounts[middle].length, bytes, start, end);
+            if (comparison == 0){
+                return true;
+            }
+            if (comparison < 0){
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] bytes(String name){
+        return name.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int compare(byte[] a, byte[] b){
+        return compare(a, 0, a.length, b, 0, b.length);
+    }
+
+    private static int compare(byte[] a, int aFrom, int aTo, byte[] b, int bFrom, int bTo){
+        int length = Math.min(aTo - aFrom, bTo - bFrom);
+        for (int i = 0; i < length; i++){
+            int difference = (a[aFrom + i] & 0xFF) - (b[bFrom + i] & 0xFF);
+            if (difference != 0){
+                return difference;
+            }
+        }
+        return (aTo - aFrom) - (bTo - bFrom);
+    }
+}
@@ -0,0 +1,243 @@
+package com.transactions;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Sparse index of a plain transaction file: one entry per account group, a run of valid transactions of the same
+ * account, holding the account name and the offset of the group's first line. A group extends to the start of the next
+ * one, so the lines of any group can be read without touching the rest of the file. Invalid lines never start or end a
+ * group. The index is kept next to the file as a sidecar, file name plus .accounts, together with the size and last
+ * modified time of the file it describes; load rebuilds it once the file has changed
+ */
+
+public final class AccountIndex {
+    static final String SIDECAR_EXTENSION = ".accounts";
+    private static final int MAGIC = 0x484C4458;
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final long fileSize;
+    private final long lastModified;
+    private final String[] accounts;
+    private final long[] offsets;
+
+    AccountIndex(long fileSize, long lastModified, String[] accounts, long[] offsets){
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.accounts = accounts;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Returns the index of transactionFile from its sidecar if that is up to date, otherwise builds the index and writes
+     * the sidecar; a sidecar that cannot be written is skipped, the index is still returned
+     *
+     * @param transactionFile File plain file containing transactions
+     * @return AccountIndex index describing the file as it is now
+     */
+
+    public static AccountIndex load(File transactionFile){
+        Path sidecar = sidecar(transactionFile);
+        long size = transactionFile.length();
+        long modified = transactionFile.lastModified();
+        if (Files.exists(sidecar)){
+            try {
+                AccountIndex index = read(sidecar);
+                if (index.fileSize == size && index.lastModified == modified){
+                    return index;
+                }
+            } catch (IOException | RuntimeException e){
+                //rebuilt below
+            }
+        }
+        AccountIndex index = build(transactionFile);
+        try {
+            index.write(sidecar);
+        } catch (IOException e){
+            //the index is still usable, it will be built again next time
+        }
+        return index;
+    }
+
+    public static Path sidecar(File transactionFile){
+        return transactionFile.toPath().resolveSibling(transactionFile.getName() + SIDECAR_EXTENSION);
+    }
+
+    /**
+     * Reads the whole file once, parsing every line to find the groups
+     *
+     * @param transactionFile File plain file containing transactions
+     * @return AccountIndex index of the file
+     */
+
+    public static AccountIndex build(File transactionFile){
+        long modified = transactionFile.lastModified();
+        Builder builder = new Builder();
+        try {
+            if (TransactionInput.detect(transactionFile) != TransactionInput.Format.PLAIN){
+                throw new HoldingCalculationException("Error: cannot index compressed file [" +
+                        transactionFile.getName() + "], terminating");
+            }
+        } catch (IOException e){
+            throw new HoldingCalculationException("Error: cannot index transaction file [" + transactionFile.getName() +
+                    "], terminating", e);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(transactionFile, "r");
+             FileChannel channel = file.getChannel()){
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long bufferOffset = 0;
+            int length = 0;
+            int read;
+            while ((read = channel.read(ByteBuffer.wrap(buffer, length, buffer.length - length))) >= 0){
+                length += read;
+                int lineStart = 0;
+                for (int i = length - read; i < length; i++){
+                    if (buffer[i] == '\n' || buffer[i] == '\r'){
+                        builder.line(buffer, lineStart, i, bufferOffset + lineStart);
+                        lineStart = i + 1;
+                    }
+                }
+                //keeps the partial last line, growing the buffer if it fills it
+                length -= lineStart;
+                System.arraycopy(buffer, lineStart, buffer, 0, length);
+                bufferOffset += lineStart;
+                if (length == buffer.length){
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
+            builder.line(buffer, 0, length, bufferOffset);
+            return builder.build(bufferOffset + length, modified);
+        } catch (IOException e){
+            throw new HoldingCalculationException("Error: cannot index transaction file [" + transactionFile.getName() +
+                    "], terminating", e);
+        }
+    }
+
+    /**
+     * @return int number of account groups
+     */
+
+    public int size(){
+        return accounts.length;
+    }
+
+    /**
+     * @param group int number of the group, in file order
+     * @return String account of the group
+     */
+
+    public String getAccount(int group){
+        return accounts[group];
+    }
+
+    /**
+     * @param group int number of the group, in file order
+     * @return long offset of the first line of the group
+     */
+
+    public long getStart(int group){
+        return offsets[group];
+    }
+
+    /**
+     * @param group int number of the group, in file order
+     * @return long offset after the last line of the group
+     */
+
+    public long getEnd(int group){
+        return group + 1 < offsets.length ? offsets[group + 1] : fileSize;
+    }
+
+    public long getFileSize(){
+        return fileSize;
+    }
+
+    /**
+     * Writes index to path, replacing it only once complete
+     *
+     * @param path Path file to write
+     * @throws IOException
+     */
+
+    public void write(Path path) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))){
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fileSize);
+            out.writeLong(lastModified);
+            out.writeInt(accounts.length);
+            for (int i = 0; i < accounts.length; i++){
+                out.writeUTF(accounts[i]);
+                out.writeLong(offsets[i]);
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static AccountIndex read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))){
+            if (in.readInt() != MAGIC || in.readInt() != VERSION){
+                throw new IOException("Error: [" + path + "] is not an account index");
+            }
+            long fileSize = in.readLong();
+            long lastModified = in.readLong();
+            int size = in.readInt();
+            String[] accounts = new String[size];
+            long[] offsets = new long[size];
+            for (int i = 0; i < size; i++){
+                accounts[i] = in.readUTF();
+                offsets[i] = in.readLong();
+            }
+            return new AccountIndex(fileSize, lastModified, accounts, offsets);
+        }
+    }
+
+    /**
+     * Collects groups line by line: a group starts at the first valid transaction whose account differs from the one
+     * of the previous valid transaction
+     */
+
+    private static class Builder {
+        private final MappedTransactionReader reader = new MappedTransactionReader();
+        private String[] accounts = new String[1024];
+        private long[] offsets = new long[1024];
+        private int size;
+        private String current;
+
+        void line(byte[] bytes, int from, int to, long offset){
+            if (to == from){
+                return;
+            }
+            Transaction t = reader.parseLine(bytes, from, to);
+            if (t == null || t.getAccount().equals(current)){
+                return;
+            }
+            current = t.getAccount();
+            if (size == accounts.length){
+                accounts = Arrays.copyOf(accounts, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            accounts[size] = current;
+            //the first group also covers any invalid lines before it
+            offsets[size] = size == 0 ? 0 : offset;
+            size++;
+        }
+
+        AccountIndex build(long fileSize, long lastModified){
+            return new AccountIndex(fileSize, lastModified, Arrays.copyOf(accounts, size), Arrays.copyOf(offsets, size));
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.transactions;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+
+/**
+ * HoldingCalculator running calculations on an Executor instead of the calling thread. calculateHoldingsAsync returns
+ * at once with a HoldingRun, whose result completes when the file is read; meanwhile holdings of every account are
+ * passed to an optional consumer as soon as the account is closed, and bytes and lines read are published on the run.
+ * Runs are cancelled cooperatively: the worker checks for cancellation after every buffer it reads and cancelling
+ * closes the file under it. Results are the same as HoldingCalculatorImpl's
+ */
+
+public class AsyncHoldingCalculator extends HoldingCalculatorImpl {
+    private final Executor executor;
+
+    /**
+     * Runs calculations on daemon threads created as needed, which end after a minute without work
+     */
+
+    public AsyncHoldingCalculator(){
+        this(Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "holding-calculation");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * @param executor Executor running calculations, one task per run
+     */
+
+    public AsyncHoldingCalculator(Executor executor){
+        this.executor = executor;
+    }
+
+    /**
+     * Blocking calculation, waits for the result of calculateHoldingsAsync; failures are thrown as the
+     * HoldingCalculationException the run completed with
+     */
+
+    @Override
+    public Map<String, List<Holding>> calculateHoldings(File transactionFile, LocalDate date){
+        try {
+            return calculateHoldingsAsync(transactionFile, date, null).getResult().join();
+        } catch (CompletionException e){
+            if (e.getCause() instanceof HoldingCalculationException){
+                throw (HoldingCalculationException) e.getCause();
+            }
+            throw new HoldingCalculationException("Error: calculating holdings failed [" + e.getCause() + "], terminating",
+                    e.getCause());
+        }
+    }
+
+    public HoldingRun calculateHoldingsAsync(File transactionFile, LocalDate date){
+        return calculateHoldingsAsync(transactionFile, date, null);
+    }
+
+    /**
+     * Starts calculating holdings from transactionFile up to date
+     *
+     * @param transactionFile File plain or compressed file containing transactions
+     * @param date LocalDate date up to which calculate holdings
+     * @param accountConsumer BiConsumer<String, List<Holding>> receives each account and its holdings as soon as the
+     *                        account is closed, on the worker thread; an account appearing again later in the file is
+     *                        passed again with holdings replacing the earlier ones. May be null
+     * @return HoldingRun the run started
+     */
+
+    public HoldingRun calculateHoldingsAsync(File transactionFile, LocalDate date,
+                                             BiConsumer<String, List<Holding>> accountConsumer){
+        HoldingRun run = new HoldingRun(transactionFile, date);
+        try {
+            executor.execute(() -> calculate(run, accountConsumer));
+        } catch (RuntimeException e){
+            run.getResult().completeExceptionally(new HoldingCalculationException(
+                    "Error: cannot start calculation for [" + transactionFile.getName() + "], terminating", e));
+        }
+        return run;
+    }
+
+    /**
+     * Shuts down the executor if it is an ExecutorService, cancelling runs still in progress
+     */
+
+    public void shutdown(){
+        if (executor instanceof ExecutorService){
+            ((ExecutorService) executor).shutdownNow();
+        }
+    }
+
+    private void calculate(HoldingRun run, BiConsumer<String, List<Holding>> accountConsumer){
+        if (run.isCancelled()){
+            return;
+        }
+        BiConsumer<String, List<Holding>> sink = accountConsumer == null ? null : (account, holdings) -> {
+            if (!run.isCancelled()){
+                accountConsumer.accept(account, holdings);
+            }
+        };
+        HoldingAccumulator accumulator = new HoldingAccumulator(this, run.getDate(), null, sink);
+        MappedTransactionReader reader = new MappedTransactionReader();
+        try {
+            InputStream in = TransactionInput.open(run.getTransactionFile());
+            if (!run.opened(in)){
+                return;
+            }
+            try {
+                ProgressInputStream progress = new ProgressInputStream(in, run, reader);
+                reader.read(progress, accumulator::accept);
+                progress.finished();
+            } finally {
+                run.closed();
+                in.close();
+            }
+            if (!run.isCancelled()){
+                run.getResult().complete(accumulator.finish());
+            }
+        } catch (IOException e){
+            //closing the file on cancel makes the read fail, which is not an error
+            if (!run.isCancelled()){
+                run.getResult().completeExceptionally(new HoldingCalculationException("Error: cannot read transaction file [" +
+                        run.getTransactionFile().getName() + "], terminating", e));
+            }
+        } catch (RuntimeException e){
+            run.getResult().completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Stream handed to MappedTransactionReader: stops at the first read after the run is cancelled and publishes
+     * progress after every buffer
+     */
+
+    private static class ProgressInputStream extends FilterInputStream {
+        private final HoldingRun run;
+        private final MappedTransactionReader reader;
+        private long bytes;
+
+        ProgressInputStream(InputStream in, HoldingRun run, MappedTransactionReader reader){
+            super(in);
+            this.run = run;
+            this.reader = reader;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            run.progress(bytes, reader.getLinesRead());
+            if (run.isCancelled()){
+                return -1;
+            }
+            int read = super.read(buffer, offset, length);
+            if (read > 0){
+                bytes += read;
+            }
+            return read;
+        }
+
+        void finished(){
+            run.progress(bytes, reader.getLinesRead());
+        }
+    }
+}
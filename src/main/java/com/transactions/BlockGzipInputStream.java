@@ -0,0 +1,204 @@
+package com.transactions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decompresses block gzip (BGZF): a series of gzip members, each at most 64KB compressed, carrying its compressed size
+ * in a BC extra field. Since members can be cut out without inflating them, they are read ahead and inflated by a pool
+ * of threads while the content is returned in order. At most parallelism * 4 members are read ahead
+ */
+
+class BlockGzipInputStream extends InputStream {
+    //fixed gzip header with FEXTRA, XLEN and the BC subfield
+    static final int HEADER_SIZE = 18;
+    private static final int TRAILER_SIZE = 8;
+    //a member holds at most 64KB uncompressed
+    private static final int MAX_CONTENT_SIZE = 65536;
+    private static final int FEXTRA = 4;
+
+    private final InputStream in;
+    private final ExecutorService executor;
+    private final int readAhead;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private boolean endOfInput;
+    private byte[] current = new byte[0];
+    private int position;
+
+    BlockGzipInputStream(InputStream in, int parallelism){
+        if (parallelism < 1){
+            throw new IllegalArgumentException("Error: parallelism expected to be positive, actual [" + parallelism + "]");
+        }
+        this.in = in;
+        this.readAhead = parallelism * 4;
+        this.executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "block-gzip-inflater");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns total size of the gzip member starting with header, as given by its BC extra subfield, or -1 if the
+     * member has no such subfield
+     */
+
+    static int blockSize(byte[] header, int length){
+        if (length < 12 || (header[3] & FEXTRA) == 0){
+            return -1;
+        }
+        int extraLength = (header[10] & 0xff) | (header[11] & 0xff) << 8;
+        int offset = 12;
+        int end = Math.min(length, 12 + extraLength);
+        while (offset + 4 <= end){
+            int subfieldLength = (header[offset + 2] & 0xff) | (header[offset + 3] & 0xff) << 8;
+            if (header[offset] == 'B' && header[offset + 1] == 'C' && subfieldLength == 2 && offset + 6 <= end){
+                return ((header[offset + 4] & 0xff) | (header[offset + 5] & 0xff) << 8) + 1;
+            }
+            offset += 4 + subfieldLength;
+        }
+        return -1;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()){
+            return -1;
+        }
+        return current[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0){
+            return 0;
+        }
+        if (!fill()){
+            return -1;
+        }
+        int count = Math.min(length, current.length - position);
+        System.arraycopy(current, position, buffer, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        in.close();
+    }
+
+    /**
+     * Makes sure current has bytes left to return, returns false at the end of the content
+     */
+
+    private boolean fill() throws IOException {
+        while (position == current.length){
+            while (!endOfInput && pending.size() < readAhead){
+                byte[] member = readMember();
+                if (member == null){
+                    endOfInput = true;
+                } else {
+                    pending.add(executor.submit(() -> inflate(member)));
+                }
+            }
+            Future<byte[]> next = pending.poll();
+            if (next == null){
+                return false;
+            }
+            try {
+                current = next.get();
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw new IOException("Error: interrupted while decompressing", e);
+            } catch (ExecutionException e){
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() :
+                        new IOException("Error: cannot decompress block", e.getCause());
+            }
+            position = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Reads next whole member, returns null at the end of the input
+     */
+
+    private byte[] readMember() throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        int length = readFully(header, 0, HEADER_SIZE);
+        if (length == 0){
+            return null;
+        }
+        int size = blockSize(header, length);
+        if ((header[0] & 0xff) != 0x1f || (header[1] & 0xff) != 0x8b || size < HEADER_SIZE + TRAILER_SIZE){
+            throw new IOException("Error: block gzip member without block size");
+        }
+        byte[] member = Arrays.copyOf(header, size);
+        if (readFully(member, HEADER_SIZE, size - HEADER_SIZE) != size - HEADER_SIZE){
+            throw new IOException("Error: block gzip member truncated");
+        }
+        return member;
+    }
+
+    private int readFully(byte[] buffer, int offset, int length) throws IOException {
+        int total = 0;
+        int read;
+        while (total < length && (read = in.read(buffer, offset + total, length - total)) > 0){
+            total += read;
+        }
+        return total;
+    }
+
+    private static byte[] inflate(byte[] member) throws IOException {
+        int extraLength = (member[10] & 0xff) | (member[11] & 0xff) << 8;
+        int dataStart = 12 + extraLength;
+        int trailer = member.length - TRAILER_SIZE;
+        int expectedLength = readInt(member, trailer + 4);
+        if (expectedLength < 0 || expectedLength > MAX_CONTENT_SIZE){
+            throw new IOException("Error: block gzip member recording " + (expectedLength & 0xffffffffL) +
+                    " uncompressed bytes, at most " + MAX_CONTENT_SIZE + " expected");
+        }
+        byte[] content = new byte[expectedLength];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(member, dataStart, trailer - dataStart);
+            int length = 0;
+            while (length < content.length && !inflater.finished()){
+                int inflated = inflater.inflate(content, length, content.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())){
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != content.length){
+                throw new IOException("Error: block gzip member shorter than its recorded size");
+            }
+        } catch (DataFormatException e){
+            throw new IOException("Error: corrupt block gzip member", e);
+        } finally {
+            inflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length);
+        if ((int) crc.getValue() != readInt(member, trailer)){
+            throw new IOException("Error: block gzip member checksum mismatch");
+        }
+        return content;
+    }
+
+    private static int readInt(byte[] bytes, int offset){
+        return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8 | (bytes[offset + 2] & 0xff) << 16 |
+                (bytes[offset + 3] & 0xff) << 24;
+    }
+}
@@ -0,0 +1,498 @@
+package com.transactions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * HoldingCalculator remembering results of another one per transaction file and date. A file is identified by its
+ * canonical path, size, last modified time and the CRC32 of its first and last 4KB, which are checked on every call.
+ * If a plain file has only grown, its old content being unchanged and ending with a line end, the cached result is
+ * brought up to date by folding only the appended lines and the last account before them, which they may continue;
+ * this needs a delegate folding accounts in file order, see resumesAppends.
+ * <p>
+ * Entries are evicted least recently used first once their total weight, one per account and per holding, exceeds
+ * maxWeight. If a persistence directory is given, every entry is also written there, as a HoldingSnapshot and a
+ * properties file describing the transaction file, and entries missing from memory are looked up there, so results
+ * survive restarts; files of evicted entries are deleted. Files are written outside the lock under temporary names and
+ * moved into place only while their entry is still cached, so an eviction or a newer result racing with the write
+ * never leaves stale files behind. Maps returned are shared between calls and must not be modified. Thread safe;
+ * concurrent misses for the same key may both calculate
+ */
+
+public class CachingHoldingCalculator implements HoldingCalculator {
+    public static final long DEFAULT_MAX_WEIGHT = 10_000_000L;
+    private static final int FINGERPRINT_SIZE = 4096;
+
+    private final HoldingCalculator delegate;
+    private final HoldingCalculatorImpl rules;
+    private final long maxWeight;
+    private final Path persistenceDirectory;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private long hits;
+    private long appends;
+    private long misses;
+    private long evictions;
+
+    public CachingHoldingCalculator(HoldingCalculator delegate){
+        this(delegate, DEFAULT_MAX_WEIGHT, null);
+    }
+
+    /**
+     * @param delegate HoldingCalculator calculator results are cached for
+     * @param maxWeight long largest total number of accounts and holdings kept
+     * @param persistenceDirectory Path directory to keep entries in across restarts, created if missing, null for none
+     */
+
+    public CachingHoldingCalculator(HoldingCalculator delegate, long maxWeight, Path persistenceDirectory){
+        if (maxWeight < 1){
+            throw new IllegalArgumentException("Error: maxWeight expected to be positive, actual [" + maxWeight + "]");
+        }
+        this.delegate = delegate;
+        this.rules = resumesAppends(delegate) ? (HoldingCalculatorImpl) delegate : null;
+        this.maxWeight = maxWeight;
+        this.persistenceDirectory = persistenceDirectory;
+        if (persistenceDirectory != null){
+            try {
+                Files.createDirectories(persistenceDirectory);
+            } catch (IOException e){
+                throw new HoldingCalculationException("Error: cannot create cache directory [" + persistenceDirectory +
+                        "], terminating", e);
+            }
+        }
+    }
+
+    /**
+     * Tells whether cached results of delegate can be brought up to date by folding appended lines: true for
+     * calculators folding accounts in file order like HoldingCalculatorImpl, false for those grouping accounts across
+     * the file, reading several files, keeping only some accounts or counting and quarantining rejected lines, which
+     * would miss the appended lines. Appends are not resumed either while the delegate has a listener
+     *
+     * @param delegate HoldingCalculator calculator results are cached for
+     * @return boolean true if appended lines are folded instead of recalculating
+     */
+
+    static boolean resumesAppends(HoldingCalculator delegate){
+        return delegate instanceof HoldingCalculatorImpl && !(delegate instanceof GroupingHoldingCalculator) &&
+                !(delegate instanceof MultiFileHoldingCalculator) && !(delegate instanceof FilteringHoldingCalculator) &&
+                !(delegate instanceof ValidatingHoldingCalculator);
+    }
+
+    @Override
+    public Map<String, List<Holding>> calculateHoldings(File transactionFile, LocalDate date){
+        try {
+            String key = transactionFile.getCanonicalPath() + "|" + date;
+            Fingerprint current = Fingerprint.of(transactionFile);
+            Entry entry = lookup(key);
+            if (entry != null && entry.fingerprint.equals(current)){
+                count(Outcome.HIT);
+                return entry.holdings;
+            }
+            Map<String, List<Holding>> holdings;
+            if (entry != null && rules != null && rules.getListener() == null &&
+                    entry.fingerprint.isPrefixOf(transactionFile, current)){
+                holdings = resume(transactionFile, entry, date, current.size);
+                count(Outcome.APPEND);
+            } else {
+                holdings = delegate.calculateHoldings(transactionFile, date);
+                count(Outcome.MISS);
+            }
+            Entry updated = new Entry(key, current, Collections.unmodifiableMap(holdings));
+            store(updated);
+            return updated.holdings;
+        } catch (IOException e){
+            throw new HoldingCalculationException("Error: cannot read transaction file [" + transactionFile.getName() +
+                    "], terminating", e);
+        }
+    }
+
+    public synchronized long getHits(){
+        return hits;
+    }
+
+    /**
+     * @return long number of calls answered by folding only lines appended since the cached result
+     */
+
+    public synchronized long getAppends(){
+        return appends;
+    }
+
+    public synchronized long getMisses(){
+        return misses;
+    }
+
+    public synchronized long getEvictions(){
+        return evictions;
+    }
+
+    public synchronized int size(){
+        return entries.size();
+    }
+
+    /**
+     * @return long total weight of the entries kept, one per account and per holding
+     */
+
+    public synchronized long getWeight(){
+        return weight;
+    }
+
+    /**
+     * Drops all entries, from memory and from the persistence directory
+     */
+
+    public synchronized void clear(){
+        for (Entry entry : entries.values()){
+            deletePersisted(entry.key);
+        }
+        entries.clear();
+        weight = 0;
+    }
+
+    private enum Outcome {
+        HIT, APPEND, MISS
+    }
+
+    private synchronized void count(Outcome outcome){
+        switch (outcome){
+            case HIT:
+                hits++;
+                break;
+            case APPEND:
+                appends++;
+                break;
+            default:
+                misses++;
+        }
+    }
+
+    private Entry lookup(String key){
+        synchronized (this){
+            Entry entry = entries.get(key);
+            if (entry != null || persistenceDirectory == null){
+                return entry;
+            }
+        }
+        Entry persisted = readPersisted(key);
+        if (persisted != null){
+            synchronized (this){
+                if (!entries.containsKey(key)){
+                    add(persisted);
+                }
+            }
+        }
+        return persisted;
+    }
+
+    private void store(Entry entry){
+        synchronized (this){
+            Entry old = entries.remove(entry.key);
+            if (old != null){
+                weight -= old.weight;
+            }
+            add(entry);
+            if (persistenceDirectory == null || !entries.containsKey(entry.key)){
+                return;
+            }
+        }
+        //written outside the lock under names of their own, moved into place only if the entry is still the one cached
+        String suffix = "." + UUID.randomUUID() + ".tmp";
+        boolean written = writePersisted(entry, suffix);
+        synchronized (this){
+            if (written && entries.get(entry.key) == entry){
+                movePersisted(entry.key, suffix);
+            } else {
+                deletePersisted(entry.key, suffix);
+            }
+        }
+    }
+
+    /**
+     * Adds entry, evicting least recently used ones while over maxWeight; an entry heavier than maxWeight is not kept
+     */
+
+    private void add(Entry entry){
+        entries.put(entry.key, entry);
+        weight += entry.weight;
+        Iterator<Entry> oldest = entries.values().iterator();
+        while (weight > maxWeight && oldest.hasNext()){
+            Entry evicted = oldest.next();
+            oldest.remove();
+            weight -= evicted.weight;
+            evictions++;
+            deletePersisted(evicted.key);
+        }
+    }
+
+    /**
+     * Folds lines appended after the cached result, starting with the last account group before them, and lays the
+     * accounts folded over the cached holdings
+     */
+
+    private Map<String, List<Holding>> resume(File transactionFile, Entry entry, LocalDate date, long size)
+            throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(transactionFile, "r");
+             FileChannel channel = file.getChannel()){
+            long start = lastAccountStart(channel, entry.fingerprint.size);
+            HoldingAccumulator accumulator = new HoldingAccumulator(rules, date);
+            new MappedTransactionReader().read(channel, start, size, accumulator::accept);
+            Map<String, List<Holding>> holdings = new HashMap<>(entry.holdings);
+            holdings.putAll(accumulator.finish());
+            return holdings;
+        }
+    }
+
+    /**
+     * Returns offset of the first line after the last valid transaction before end whose account differs from the one
+     * of the last valid transaction before end, 0 if there is none; folding from there recreates the account open at end
+     */
+
+    static long lastAccountStart(FileChannel channel, long end) throws IOException {
+        MappedTransactionReader reader = new MappedTransactionReader();
+        ByteBuffer chunk = ByteBuffer.allocate(64 * 1024);
+        String account = null;
+        long chunkStart = end;
+        long lineEnd = end;
+        for (long position = end - 1; position >= -1; position--){
+            if (position >= 0 && position < chunkStart){
+                chunkStart = Math.max(0, position + 1 - chunk.capacity());
+                chunk.clear().limit((int) (position + 1 - chunkStart));
+                readFully(channel, chunk, chunkStart);
+            }
+            if (position >= 0){
+                byte b = chunk.get((int) (position - chunkStart));
+                if (b != '\n' && b != '\r'){
+                    continue;
+                }
+            }
+            long lineStart = position + 1;
+            if (lineEnd > lineStart){
+                byte[] line = new byte[(int) (lineEnd - lineStart)];
+                ByteBuffer target = ByteBuffer.wrap(line);
+                readFully(channel, target, lineStart);
+                Transaction t = reader.parseLine(line, 0, line.length);
+                if (t != null){
+                    if (account == null){
+                        account = t.getAccount();
+                    } else if (!account.equals(t.getAccount())){
+                        return lineEnd + 1;
+                    }
+                }
+            }
+            lineEnd = position;
+        }
+        return 0;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()){
+            if (channel.read(buffer, position + buffer.position()) < 0){
+                throw new IOException("Error: transaction file shrank while being read");
+            }
+        }
+    }
+
+    private Path persistedPath(String key, String extension){
+        return persistenceDirectory.resolve(UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)) + extension);
+    }
+
+    /**
+     * Writes entry to files whose names end with suffix, returns false if they could not be written
+     */
+
+    private boolean writePersisted(Entry entry, String suffix){
+        Properties properties = new Properties();
+        properties.setProperty("key", entry.key);
+        entry.fingerprint.store(properties);
+        try {
+            new HoldingSnapshot(entry.holdings, null).write(persistedPath(entry.key, ".hlds" + suffix));
+            try (OutputStream out = Files.newOutputStream(persistedPath(entry.key, ".properties" + suffix))){
+                properties.store(out, "holdings cache entry");
+            }
+            return true;
+        } catch (IOException e){
+            //persistence is best effort, the entry is still cached in memory
+            deletePersisted(entry.key, suffix);
+            return false;
+        }
+    }
+
+    private void movePersisted(String key, String suffix){
+        try {
+            Files.move(persistedPath(key, ".hlds" + suffix), persistedPath(key, ".hlds"),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(persistedPath(key, ".properties" + suffix), persistedPath(key, ".properties"),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e){
+            deletePersisted(key, suffix);
+            deletePersisted(key);
+        }
+    }
+
+    private Entry readPersisted(String key){
+        Path propertiesPath = persistedPath(key, ".properties");
+        if (!Files.exists(propertiesPath)){
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(propertiesPath, StandardOpenOption.READ)){
+            properties.load(in);
+            if (!key.equals(properties.getProperty("key"))){
+                return null;
+            }
+            Map<String, List<Holding>> holdings = HoldingSnapshot.read(persistedPath(key, ".hlds")).getHoldings();
+            return new Entry(key, Fingerprint.load(properties), Collections.unmodifiableMap(holdings));
+        } catch (IOException | RuntimeException e){
+            deletePersisted(key);
+            return null;
+        }
+    }
+
+    private void deletePersisted(String key){
+        deletePersisted(key, "");
+    }
+
+    private void deletePersisted(String key, String suffix){
+        if (persistenceDirectory == null){
+            return;
+        }
+        try {
+            Files.deleteIfExists(persistedPath(key, ".properties" + suffix));
+            Files.deleteIfExists(persistedPath(key, ".hlds" + suffix));
+        } catch (IOException e){
+            //left behind, overwritten or ignored when the key is next stored or read
+        }
+    }
+
+    private static class Entry {
+        final String key;
+        final Fingerprint fingerprint;
+        final Map<String, List<Holding>> holdings;
+        final long weight;
+
+        Entry(String key, Fingerprint fingerprint, Map<String, List<Holding>> holdings){
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.holdings = holdings;
+            long w = holdings.size();
+            for (List<Holding> accountHoldings : holdings.values()){
+                w += accountHoldings.size();
+            }
+            this.weight = w;
+        }
+    }
+
+    /**
+     * Size, last modified time and CRC32 of the first and last bytes of a file, and whether its last byte ends a line
+     */
+
+    static class Fingerprint {
+        final long size;
+        final long lastModified;
+        final long headCrc;
+        final long tailCrc;
+        final boolean endsWithLineEnd;
+
+        Fingerprint(long size, long lastModified, long headCrc, long tailCrc, boolean endsWithLineEnd){
+            this.size = size;
+            this.lastModified = lastModified;
+            this.headCrc = headCrc;
+            this.tailCrc = tailCrc;
+            this.endsWithLineEnd = endsWithLineEnd;
+        }
+
+        static Fingerprint of(File file) throws IOException {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")){
+                return of(raf, raf.length(), file.lastModified());
+            }
+        }
+
+        private static Fingerprint of(RandomAccessFile file, long size, long lastModified) throws IOException {
+            int sample = (int) Math.min(FINGERPRINT_SIZE, size);
+            byte[] head = new byte[sample];
+            file.seek(0);
+            file.readFully(head);
+            byte[] tail = new byte[sample];
+            file.seek(size - sample);
+            file.readFully(tail);
+            boolean lineEnd = sample > 0 && (tail[sample - 1] == '\n' || tail[sample - 1] == '\r');
+            return new Fingerprint(size, lastModified, crc(head), crc(tail), lineEnd);
+        }
+
+        /**
+         * Tells whether the file described by current is this file with lines appended: it is longer, this file ended
+         * with a line end and its first and last bytes are still in place
+         */
+
+        boolean isPrefixOf(File file, Fingerprint current) throws IOException {
+            if (current.size <= size || !endsWithLineEnd){
+                return false;
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")){
+                if (TransactionInput.detect(file) != TransactionInput.Format.PLAIN){
+                    return false;
+                }
+                Fingerprint prefix = of(raf, size, lastModified);
+                return prefix.headCrc == headCrc && prefix.tailCrc == tailCrc;
+            }
+        }
+
+        void store(Properties properties){
+            properties.setProperty("size", Long.toString(size));
+            properties.setProperty("lastModified", Long.toString(lastModified));
+            properties.setProperty("headCrc", Long.toString(headCrc));
+            properties.setProperty("tailCrc", Long.toString(tailCrc));
+            properties.setProperty("endsWithLineEnd", Boolean.toString(endsWithLineEnd));
+        }
+
+        static Fingerprint load(Properties properties){
+            return new Fingerprint(Long.parseLong(properties.getProperty("size")),
+                    Long.parseLong(properties.getProperty("lastModified")),
+                    Long.parseLong(properties.getProperty("headCrc")),
+                    Long.parseLong(properties.getProperty("tailCrc")),
+                    Boolean.parseBoolean(properties.getProperty("endsWithLineEnd")));
+        }
+
+        private static long crc(byte[] bytes){
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length);
+            return crc.getValue();
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if (!(o instanceof Fingerprint)){
+                return false;
+            }
+            Fingerprint other = (Fingerprint) o;
+            return size == other.size && lastModified == other.lastModified && headCrc == other.headCrc &&
+                    tailCrc == other.tailCrc;
+        }
+
+        @Override
+        public int hashCode(){
+            return Long.hashCode(size) * 31 + Long.hashCode(headCrc);
+        }
+    }
+}
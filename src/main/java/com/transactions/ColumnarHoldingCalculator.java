@@ -0,0 +1,163 @@
+package com.transactions;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HoldingCalculator working directly on the columns of a TransactionStore. Per account positions are kept in a primitive
+ * array indexed by asset id, which is reused from one account to the next, so the fold itself creates no objects until
+ * holdings of an account are returned. Same rules and rounding as HoldingCalculatorImpl
+ */
+
+public class ColumnarHoldingCalculator extends HoldingCalculatorImpl {
+
+    private final boolean offHeap;
+
+    public ColumnarHoldingCalculator(){
+        this(false);
+    }
+
+    /**
+     * @param offHeap boolean true to keep the columns of stores loaded by calculateHoldings(File, LocalDate) off heap
+     */
+
+    public ColumnarHoldingCalculator(boolean offHeap){
+        this.offHeap = offHeap;
+    }
+
+    @Override
+    public Map<String, List<Holding>> calculateHoldings(File transactionFile, LocalDate date){
+        TransactionStore store;
+        try {
+            store = TransactionStore.load(transactionFile, offHeap);
+        } catch (IOException e){
+            throw new HoldingCalculationException("Error: cannot read transaction file [" + transactionFile.getName() +
+                    "], terminating", e);
+        }
+        return calculateHoldings(store, date);
+    }
+
+    /**
+     * Creates list of holdings for each account in store based on its transactions up to the date given as parameter,
+     * relying on transactions of an account being stored one after another
+     *
+     * @param store TransactionStore transactions to calculate holdings from
+     * @param date LocalDate date up to which calculate holdings
+     * @return Map<String, List<Holding>> records holdings (value) for accounts (key)
+     */
+
+    public Map<String, List<Holding>> calculateHoldings(TransactionStore store, LocalDate date){
+        Map<String, List<Holding>> holdings = new HashMap<>();
+        Positions positions = new Positions(store.getAssets().size());
+        long lastDay = date.toEpochDay();
+        int row = 0;
+        while (row < store.size()){
+            int account = store.account(row);
+            double cash = 0;
+            for (; row < store.size() && store.account(row) == account; row++){
+                if (store.epochDay(row) > lastDay){
+                    continue;
+                }
+                int asset = store.asset(row);
+                switch (store.txnType(row)){
+                    case BOT:
+                        positions.add(asset, store.units(row));
+                        cash -= roundToFourPlaces(store.units(row) * store.price(row));
+                        break;
+                    case SLD:
+                        if (positions.holds(asset)){
+                            positions.subtract(asset, store.units(row));
+                            cash += roundToFourPlaces(store.units(row) * store.price(row));
+                        }
+                        break;
+                    case WDR:
+                        cash -= store.price(row);
+                        break;
+                    case DEP:
+                        cash += store.price(row);
+                        break;
+                    case DIV:
+                        if (positions.holds(asset)){
+                            cash += store.price(row);
+                        }
+                        break;
+                }
+            }
+            holdings.put(store.getAccounts().decode(account), positions.drain(store.getAssets(), cash));
+        }
+        return holdings;
+    }
+
+    /**
+     * Units held per asset id for the account being folded, with the list of assets held so that clearing costs only
+     * as much as the account holds
+     */
+
+    private static class Positions {
+        private final double[] units;
+        private final boolean[] held;
+        private final boolean[] listed;
+        private final int[] heldAssets;
+        private int heldCount;
+
+        Positions(int assets){
+            units = new double[assets];
+            held = new boolean[assets];
+            listed = new boolean[assets];
+            heldAssets = new int[assets];
+        }
+
+        boolean holds(int asset){
+            return held[asset];
+        }
+
+        void add(int asset, double amount){
+            if (held[asset]){
+                units[asset] += amount;
+            } else {
+                held[asset] = true;
+                units[asset] = amount;
+                if (!listed[asset]){
+                    listed[asset] = true;
+                    heldAssets[heldCount++] = asset;
+                }
+            }
+        }
+
+        void subtract(int asset, double amount){
+            units[asset] -= amount;
+            //asset is removed from holdings once nothing of it is held
+            if (Double.compare(units[asset], 0.0) == 0){
+                held[asset] = false;
+            }
+        }
+
+        List<Holding> drain(Dictionary assets, double cash){
+            List<Holding> holdings = new ArrayList<>();
+            for (int i = 0; i < heldCount; i++){
+                int asset = heldAssets[i];
+                //a CASH position bought as an asset is replaced by the cash balance, as in toHoldingList
+                if (held[asset] && !assets.decode(asset).equals("CASH")){
+                    holdings.add(holding(assets.decode(asset), units[asset]));
+                }
+                held[asset] = false;
+                listed[asset] = false;
+            }
+            heldCount = 0;
+            holdings.add(holding("CASH", cash));
+            return holdings;
+        }
+
+        private static Holding holding(String asset, double value){
+            Holding holding = new Holding();
+            holding.setAsset(asset);
+            holding.setHoldings(value);
+            return holding;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.transactions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HoldingCalculator keeping the lots bought of every asset next to the holdings, in the same single pass over the file,
+ * to report cost basis and realized and unrealized profit per asset. Sales are matched against lots in the order of a
+ * CostBasisMethod; lots are held per asset in a LotQueue, two primitive arrays, so accounts with many partial fills
+ * create no objects per lot. A sale of more units than the lots hold is matched against what is held and reported as
+ * an Oversell, as is a sale of an asset never bought, which creates no position. Holdings are not capped by the lots:
+ * they are those of HoldingCalculatorImpl, which applies an oversell in full if the asset is held, leaving a negative
+ * holding, and ignores a sale of an asset not held. Like HoldingAccumulator, expects transactions grouped by account
+ */
+
+public class CostBasisHoldingCalculator extends HoldingCalculatorImpl {
+    private final CostBasisMethod method;
+
+    public CostBasisHoldingCalculator(){
+        this(CostBasisMethod.FIFO);
+    }
+
+    /**
+     * @param method CostBasisMethod order sold units are matched against lots in
+     */
+
+    public CostBasisHoldingCalculator(CostBasisMethod method){
+        if (method == null){
+            throw new IllegalArgumentException("Error: cost basis method expected");
+        }
+        this.method = method;
+    }
+
+    public CostBasisMethod getMethod(){
+        return method;
+    }
+
+    @Override
+    public Map<String, List<Holding>> calculateHoldings(File transactionFile, LocalDate date){
+        return calculate(transactionFile, date).getHoldings();
+    }
+
+    /**
+     * @param transactionFile File plain or compressed file containing transactions
+     * @param date LocalDate date to calculate holdings and positions for, later transactions are ignored
+     * @return CostBasisReport holdings, positions and oversells of every account
+     */
+
+    public CostBasisReport calculate(File transactionFile, LocalDate date){
+        HoldingAccumulator holdings = new HoldingAccumulator(this, date);
+        LotAccumulator lots = new LotAccumulator(date);
+        try (InputStream in = TransactionInput.open(transactionFile)){
+            new MappedTransactionReader().read(in, t -> {
+                holdings.accept(t);
+                lots.accept(t);
+            });
+        } catch (IOException e){
+            throw new HoldingCalculationException("Error: cannot read transaction file [" + transactionFile.getName() +
+                    "], terminating", e);
+        }
+        return new CostBasisReport(holdings.finish(), lots.finish(), lots.oversells);
+    }
+
+    /**
+     * Lots, realized profit and last price of one asset of the open account
+     */
+
+    private static class AssetBook {
+        final LotQueue lots;
+        double realizedPnl;
+        double lastPrice;
+
+        AssetBook(CostBasisMethod method){
+            lots = new LotQueue(method);
+        }
+    }
+
+    /**
+     * Folds transactions into positions one account at a time, closing the open account when the account name changes
+     */
+
+    private class LotAccumulator {
+        private final LocalDate date;
+        private final Map<String, List<CostBasisReport.Position>> positions = new HashMap<>();
+        private final List<CostBasisReport.Oversell> oversells = new ArrayList<>();
+        private final Map<String, AssetBook> books = new LinkedHashMap<>();
+        private String currentAccount;
+
+        LotAccumulator(LocalDate date){
+            this.date = date;
+        }
+
+        void accept(Transaction t){
+            if (!t.getAccount().equals(currentAccount)){
+                closeAccount();
+                currentAccount = t.getAccount();
+            }
+            if (t.getDate().isAfter(date) || t.getAsset().equals("CASH")){
+                return;
+            }
+            switch (t.getTxnType()){
+                case BOT:
+                    AssetBook bought = book(t.getAsset());
+                    bought.lots.buy(t.getUnits(), t.getPrice());
+                    bought.lastPrice = t.getPrice();
+                    break;
+                case SLD:
+                    AssetBook sold = books.get(t.getAsset());
+                    if (sold == null){
+                        oversells.add(new CostBasisReport.Oversell(currentAccount, t.getDate(), t.getAsset(),
+                                t.getUnits(), 0));
+                        break;
+                    }
+                    double available = sold.lots.getUnits();
+                    sold.lots.sell(t.getUnits());
+                    double matched = sold.lots.getMatchedUnits();
+                    sold.realizedPnl += roundToFourPlaces(matched * t.getPrice() - sold.lots.getMatchedCost());
+                    sold.lastPrice = t.getPrice();
+                    if (sold.lots.isOversold(t.getUnits())){
+                        oversells.add(new CostBasisReport.Oversell(currentAccount, t.getDate(), t.getAsset(),
+                                t.getUnits(), available));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private AssetBook book(String asset){
+            AssetBook book = books.get(asset);
+            if (book == null){
+                book = new AssetBook(method);
+                books.put(asset, book);
+            }
+            return book;
+        }
+
+        Map<String, List<CostBasisReport.Position>> finish(){
+            closeAccount();
+            return positions;
+        }
+
+        private void closeAccount(){
+            if (currentAccount == null){
+                return;
+            }
+            List<CostBasisReport.Position> accountPositions = new ArrayList<>(books.size());
+            for (Map.Entry<String, AssetBook> entry : books.entrySet()){
+                AssetBook book = entry.getValue();
+                accountPositions.add(new CostBasisReport.Position(entry.getKey(), book.lots.getUnits(),
+                        roundToFourPlaces(book.lots.getCost()), book.realizedPnl, book.lastPrice));
+            }
+            positions.put(currentAccount, accountPositions);
+            books.clear();
+            currentAccount = null;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.transactions;
+
+/**
+ * Order in which sold units are matched against the lots bought, for CostBasisHoldingCalculator
+ */
+
+public enum CostBasisMethod {
+    /** oldest lot first */
+    FIFO,
+    /** newest lot first */
+    LIFO,
+    /** all lots of an asset merged into one at their average cost */
+    AVERAGE
+}
@@ -0,0 +1,162 @@
+package com.transactions;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of a CostBasisHoldingCalculator run: the holdings, the same as HoldingCalculatorImpl's, the lot positions of
+ * every account and the sales that were larger than the units held. Holdings and positions may differ after an
+ * oversell: holdings apply the sale in full, possibly going negative, while positions only sell the units in lots
+ */
+
+public class CostBasisReport {
+    private final Map<String, List<Holding>> holdings;
+    private final Map<String, List<Position>> positions;
+    private final List<Oversell> oversells;
+
+    CostBasisReport(Map<String, List<Holding>> holdings, Map<String, List<Position>> positions, List<Oversell> oversells){
+        this.holdings = holdings;
+        this.positions = positions;
+        this.oversells = oversells;
+    }
+
+    /**
+     * @return Map<String, List<Holding>> records holdings (value) for accounts (key), oversells applied in full
+     */
+
+    public Map<String, List<Holding>> getHoldings(){
+        return holdings;
+    }
+
+    /**
+     * @return Map<String, List<Position>> records positions (value) of every asset traded by accounts (key), including
+     * assets sold out since
+     */
+
+    public Map<String, List<Position>> getPositions(){
+        return positions;
+    }
+
+    /**
+     * @return List<Oversell> sales of more units than held in lots, including sales of assets never bought, in file
+     * order
+     */
+
+    public List<Oversell> getOversells(){
+        return oversells;
+    }
+
+    /**
+     * Open lots of one asset of an account, summed up, and the profit realized by selling from them
+     */
+
+    public static class Position {
+        private final String asset;
+        private final double units;
+        private final double costBasis;
+        private final double realizedPnl;
+        private final double lastPrice;
+
+        Position(String asset, double units, double costBasis, double realizedPnl, double lastPrice){
+            this.asset = asset;
+            this.units = units;
+            this.costBasis = costBasis;
+            this.realizedPnl = realizedPnl;
+            this.lastPrice = lastPrice;
+        }
+
+        public String getAsset(){
+            return asset;
+        }
+
+        /**
+         * @return double units in open lots
+         */
+
+        public double getUnits(){
+            return units;
+        }
+
+        /**
+         * @return double cost of the units in open lots
+         */
+
+        public double getCostBasis(){
+            return costBasis;
+        }
+
+        /**
+         * @return double proceeds of all sales less the cost of the lots they were matched against
+         */
+
+        public double getRealizedPnl(){
+            return realizedPnl;
+        }
+
+        /**
+         * @return double price of the last purchase or sale
+         */
+
+        public double getLastPrice(){
+            return lastPrice;
+        }
+
+        /**
+         * @return double value of the open lots at the last price less their cost
+         */
+
+        public double getUnrealizedPnl(){
+            return units * lastPrice - costBasis;
+        }
+
+        public String toString(){
+            return asset + ":\t" + units + "\t" + costBasis + "\t" + realizedPnl;
+        }
+    }
+
+    /**
+     * Sale of more units than the open lots of the asset held; only the units held were matched against lots
+     */
+
+    public static class Oversell {
+        private final String account;
+        private final LocalDate date;
+        private final String asset;
+        private final double unitsSold;
+        private final double unitsAvailable;
+
+        Oversell(String account, LocalDate date, String asset, double unitsSold, double unitsAvailable){
+            this.account = account;
+            this.date = date;
+            this.asset = asset;
+            this.unitsSold = unitsSold;
+            this.unitsAvailable = unitsAvailable;
+        }
+
+        public String getAccount(){
+            return account;
+        }
+
+        public LocalDate getDate(){
+            return date;
+        }
+
+        public String getAsset(){
+            return asset;
+        }
+
+        public double getUnitsSold(){
+            return unitsSold;
+        }
+
+        public double getUnitsAvailable(){
+            return unitsAvailable;
+        }
+
+        public String toString(){
+            return account + "," + date.format(Transaction.formatter) + ",SLD," + unitsSold + " of " + unitsAvailable +
+                    "," + asset;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.transactions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes names (accounts or assets) as dense int ids, assigned in order of first appearance starting from 0. Not
+ * thread safe
+ */
+
+public class Dictionary {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    //transactions of an account come one after another, remembers the last lookup to skip hashing for them
+    private String lastName;
+    private int lastId = -1;
+
+    /**
+     * Returns id of name, assigning the next free id on first sight
+     *
+     * @param name String name to encode
+     * @return int id of name
+     */
+
+    public int encode(String name){
+        if (name == lastName){
+            return lastId;
+        }
+        Integer id = ids.get(name);
+        if (id == null){
+            id = names.size();
+            ids.put(name, id);
+            names.add(name);
+        }
+        lastName = name;
+        lastId = id;
+        return id;
+    }
+
+    /**
+     * @param name String name to look up
+     * @return int id of name, -1 if name has not been encoded
+     */
+
+    public int idOf(String name){
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param id int id returned by encode
+     * @return String name encoded with this id
+     */
+
+    public String decode(int id){
+        return names.get(id);
+    }
+
+    /**
+     * @return int number of names encoded
+     */
+
+    public int size(){
+        return names.size();
+    }
+}
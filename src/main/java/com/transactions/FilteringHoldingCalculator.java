@@ -0,0 +1,165 @@
+package com.transactions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HoldingCalculator computing holdings of selected accounts only. For plain files, an AccountIndex, built on first use
+ * and kept as a sidecar, gives the byte range of every account group: only the groups of matching accounts are read,
+ * neighbouring ones in a single pass. Without an index, or for compressed files, every line is read but only its first
+ * field is compared with the filter; lines of other accounts are parsed only to find where a matching account's group
+ * ends. Results are the same as HoldingCalculatorImpl's restricted to the matching accounts
+ */
+
+public class FilteringHoldingCalculator extends HoldingCalculatorImpl {
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final AccountFilter filter;
+    private final boolean useIndex;
+
+    /**
+     * @param filter AccountFilter accounts calculateHoldings is restricted to
+     */
+
+    public FilteringHoldingCalculator(AccountFilter filter){
+        this(filter, true);
+    }
+
+    /**
+     * @param filter AccountFilter accounts calculateHoldings is restricted to
+     * @param useIndex boolean true to read plain files through their AccountIndex, building it if needed
+     */
+
+    public FilteringHoldingCalculator(AccountFilter filter, boolean useIndex){
+        this.filter = filter;
+        this.useIndex = useIndex;
+    }
+
+    @Override
+    public Map<String, List<Holding>> calculateHoldings(File transactionFile, LocalDate date){
+        return calculateHoldings(transactionFile, date, filter);
+    }
+
+    /**
+     * @param transactionFile File plain or compressed file containing transactions
+     * @param date LocalDate date up to which calculate holdings
+     * @param accounts AccountFilter accounts to calculate holdings for
+     * @return Map<String, List<Holding>> records holdings (value) for matching accounts (key)
+     */
+
+    public Map<String, List<Holding>> calculateHoldings(File transactionFile, LocalDate date, AccountFilter accounts){
+        HoldingAccumulator accumulator = new HoldingAccumulator(this, date);
+        try {
+            if (useIndex && TransactionInput.detect(transactionFile) == TransactionInput.Format.PLAIN){
+                readIndexed(transactionFile, AccountIndex.load(transactionFile), accounts, accumulator);
+            } else {
+                try (InputStream in = TransactionInput.open(transactionFile)){
+                    scan(in, accounts, accumulator);
+                }
+            }
+        } catch (IOException e){
+            throw new HoldingCalculationException("Error: cannot read transaction file [" + transactionFile.getName() +
+                    "], terminating", e);
+        }
+        return accumulator.finish();
+    }
+
+    /**
+     * Reads the groups of matching accounts, each run of consecutive matching groups as one range; between runs the
+     * open account is closed, as a group of another account would have closed it
+     */
+
+    private static void readIndexed(File transactionFile, AccountIndex index, AccountFilter accounts,
+                                    HoldingAccumulator accumulator) throws IOException {
+        MappedTransactionReader reader = new MappedTransactionReader();
+        try (RandomAccessFile file = new RandomAccessFile(transactionFile, "r");
+             FileChannel channel = file.getChannel()){
+            int group = 0;
+            while (group < index.size()){
+                if (!accounts.matches(index.getAccount(group))){
+                    group++;
+                    continue;
+                }
+                int last = group;
+                while (last + 1 < index.size() && accounts.matches(index.getAccount(last + 1))){
+                    last++;
+                }
+                accumulator.closeAccount();
+                reader.read(channel, index.getStart(group), index.getEnd(last), accumulator::accept);
+                group = last + 1;
+            }
+        }
+    }
+
+    /**
+     * Reads every line, comparing its first field with the filter before parsing it
+     */
+
+    private static void scan(InputStream in, AccountFilter accounts, HoldingAccumulator accumulator) throws IOException {
+        Scanner scanner = new Scanner(accounts, accumulator);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int length = 0;
+        int read;
+        while ((read = in.read(buffer, length, buffer.length - length)) >= 0){
+            length += read;
+            int lineStart = 0;
+            for (int i = length - read; i < length; i++){
+                if (buffer[i] == '\n' || buffer[i] == '\r'){
+                    scanner.line(buffer, lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+            //keeps the partial last line, growing the buffer if it fills it
+            length -= lineStart;
+            System.arraycopy(buffer, lineStart, buffer, 0, length);
+            if (length == buffer.length){
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+        scanner.line(buffer, 0, length);
+    }
+
+    /**
+     * Folds lines of matching accounts; after a matching account, parses lines of other accounts until a valid one is
+     * found, which ends the matching account's group
+     */
+
+    private static class Scanner {
+        private final MappedTransactionReader reader = new MappedTransactionReader();
+        private final AccountFilter accounts;
+        private final HoldingAccumulator accumulator;
+        private boolean groupOpen;
+
+        Scanner(AccountFilter accounts, HoldingAccumulator accumulator){
+            this.accounts = accounts;
+            this.accumulator = accumulator;
+        }
+
+        void line(byte[] bytes, int from, int to){
+            if (to == from){
+                return;
+            }
+            int comma = from;
+            while (comma < to && bytes[comma] != ','){
+                comma++;
+            }
+            if (accounts.matches(bytes, from, comma)){
+                Transaction t = reader.parseLine(bytes, from, to);
+                if (t != null){
+                    accumulator.accept(t);
+                    groupOpen = true;
+                }
+            } else if (groupOpen && reader.parseLine(bytes, from, to) != null){
+                accumulator.closeAccount();
+                groupOpen = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.transactions;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Arithmetic on values held as longs scaled by 10^4, i.e. with four decimal places. All operations are exact, round
+ * HALF_UP like roundToFourPlaces in HoldingCalculatorImpl, and throw ArithmeticException on overflow instead of wrapping
+ */
+
+public final class FixedPoint {
+    public static final int SCALE = 4;
+    public static final long ONE = 10_000L;
+    //2^39, magnitude below which the ulp of a double is under 5e-5, so that doubles are closer together than half a
+    // fixed point step and the fast paths of toFixed can tell the decimal of Double.toString from its neighbours
+    private static final double FAST_PATH_LIMIT = 549755813888.0;
+
+    private FixedPoint(){
+    }
+
+    /**
+     * Converts double to fixed point, rounding the decimal written by Double.toString to four places HALF_UP, as
+     * roundToFourPlaces does. Values of magnitude 2^39 or more, and values within a few ulps of a tie between two
+     * fixed point values, need that decimal to decide and go through BigDecimal; all others are converted without
+     * allocation
+     *
+     * @param value double value to convert
+     * @return long value scaled by 10^4
+     * @throws ArithmeticException if value is not finite or does not fit
+     */
+
+    public static long toFixed(double value){
+        if (Math.abs(value) < FAST_PATH_LIMIT){
+            double scaled = value * ONE;
+            long candidate = Math.round(scaled);
+            if (candidate / (double) ONE == value){
+                return candidate;
+            }
+            //the decimal of Double.toString is within half an ulp of value, scaling it moves it by less than two ulps
+            // of scaled, so away from a tie it rounds the same way as scaled itself
+            double magnitude = Math.abs(scaled);
+            double fraction = magnitude - Math.floor(magnitude);
+            if (Math.abs(fraction - 0.5) > 8 * Math.ulp(magnitude)){
+                long rounded = (long) (fraction < 0.5 ? Math.floor(magnitude) : Math.ceil(magnitude));
+                return value < 0 ? -rounded : rounded;
+            }
+        }
+        if (Double.isNaN(value) || Double.isInfinite(value)){
+            throw new ArithmeticException("Error: cannot convert [" + value + "] to fixed point");
+        }
+        return new BigDecimal(Double.toString(value)).setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * @param value long value scaled by 10^4
+     * @return double nearest double to value
+     */
+
+    public static double toDouble(long value){
+        return value / (double) ONE;
+    }
+
+    /**
+     * @param value long value scaled by 10^4
+     * @return BigDecimal exact value with scale 4
+     */
+
+    public static BigDecimal toBigDecimal(long value){
+        return BigDecimal.valueOf(value, SCALE);
+    }
+
+    public static long add(long a, long b){
+        return Math.addExact(a, b);
+    }
+
+    public static long subtract(long a, long b){
+        return Math.subtractExact(a, b);
+    }
+}
@@ -0,0 +1,169 @@
+package com.transactions;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HoldingCalculator holding units and cash as longs with four decimal places (see FixedPoint) instead of doubles, so
+ * that cash does not drift however many transactions an account has. BOT/SLD notionals are rounded once from the
+ * product units * price to four places HALF_UP, exactly as HoldingCalculatorImpl.roundToFourPlaces does, but without
+ * its BigDecimal round trip. Unlike HoldingCalculatorImpl, units with more than four decimal places are rounded to four
+ * before they are added to a position. Apart from allocating a position for an asset the first time it is bought,
+ * applying a transaction allocates nothing. Holdings returned carry their exact value in Holding.getExactHolding
+ */
+
+public class FixedPointHoldingCalculator implements HoldingCalculator {
+
+    /**
+     * Reads in transaction file, creates list of holdings for each account up to the date given as parameter
+     *
+     * @param transactionFile File input file containing information about transactions
+     * @param date LocalDate date up to which calculate holdings
+     * @return Map<String, List<Holding>> records holdings (value) for accounts (key)
+     * @throws HoldingCalculationException if file cannot be read or a value overflows
+     */
+    @Override
+    public Map<String, List<Holding>> calculateHoldings(File transactionFile, LocalDate date){
+        Accumulator accumulator = new Accumulator(date);
+        try {
+            new MappedTransactionReader().read(transactionFile, accumulator::accept);
+        } catch (IOException e){
+            throw new HoldingCalculationException("Error: cannot read transaction file [" + transactionFile.getName() +
+                    "], terminating", e);
+        }
+        return accumulator.finish();
+    }
+
+    /**
+     * Applies a single transaction to the positions of an account, ignoring it if it happened after the given date;
+     * same rules as HoldingCalculatorImpl.applyTransaction, except that units are held to four decimal places
+     *
+     * @param positions Map<String,long[]> units held (single element array, scaled by 10^4) for each asset (key)
+     * @param t Transaction transaction to be processed
+     * @param cash long cash held in account before the transaction, scaled by 10^4
+     * @param date LocalDate date up to which holdings will be calculated
+     * @return long updated cash value, scaled by 10^4
+     * @throws ArithmeticException if a value overflows
+     */
+
+    public long applyTransaction(Map<String, long[]> positions, Transaction t, long cash, LocalDate date){
+        if (t.getDate().isAfter(date)){
+            return cash;
+        }
+        long[] position = positions.get(t.getAsset());
+        switch (t.getTxnType()){
+            case BOT:
+                long units = FixedPoint.toFixed(t.getUnits());
+                if (position == null){
+                    positions.put(t.getAsset(), new long[]{units});
+                } else {
+                    position[0] = FixedPoint.add(position[0], units);
+                }
+                return FixedPoint.subtract(cash, notional(t));
+            //only assets held in account can be sold, otherwise transaction is ignored
+            case SLD:
+                if (position == null){
+                    return cash;
+                }
+                long sold = FixedPoint.toFixed(t.getUnits());
+                position[0] = FixedPoint.subtract(position[0], sold);
+                if (position[0] == 0){
+                    positions.remove(t.getAsset());
+                }
+                return FixedPoint.add(cash, notional(t));
+            case WDR:
+                return FixedPoint.subtract(cash, FixedPoint.toFixed(t.getPrice()));
+            case DEP:
+                return FixedPoint.add(cash, FixedPoint.toFixed(t.getPrice()));
+            //dividend only paid for assets held in account
+            case DIV:
+                return position == null ? cash : FixedPoint.add(cash, FixedPoint.toFixed(t.getPrice()));
+            default:
+                return cash;
+        }
+    }
+
+    /**
+     * Rounds the product of units and price once, like roundToFourPlaces(units * price), rather than each factor
+     */
+
+    private static long notional(Transaction t){
+        return FixedPoint.toFixed(t.getUnits() * t.getPrice());
+    }
+
+    /**
+     * Converts positions and cash of an account into holdings carrying their exact value; an asset named CASH is
+     * replaced by the cash balance, as in HoldingCalculatorImpl.toHoldingList
+     *
+     * @param positions Map<String,long[]> units held for each asset, scaled by 10^4
+     * @param cash long cash held in account, scaled by 10^4
+     * @return List<Holding> list of holdings related to an account, including CASH
+     */
+
+    public List<Holding> toHoldingList(Map<String, long[]> positions, long cash){
+        List<Holding> holdings = new ArrayList<>(positions.size() + 1);
+        for (Map.Entry<String, long[]> position : positions.entrySet()){
+            if (!position.getKey().equals("CASH")){
+                holdings.add(holding(position.getKey(), position.getValue()[0]));
+            }
+        }
+        holdings.add(holding("CASH", cash));
+        return holdings;
+    }
+
+    private static Holding holding(String asset, long value){
+        Holding holding = new Holding();
+        holding.setAsset(asset);
+        holding.setExactHolding(FixedPoint.toBigDecimal(value));
+        return holding;
+    }
+
+    /**
+     * Folds transactions grouped by account, keeping only the account currently being read open
+     */
+
+    private class Accumulator {
+        private final LocalDate date;
+        private final Map<String, List<Holding>> holdings = new HashMap<>();
+        private String currentAccount;
+        private Map<String, long[]> positions = new HashMap<>();
+        private long cash;
+
+        Accumulator(LocalDate date){
+            this.date = date;
+        }
+
+        void accept(Transaction t){
+            if (!t.getAccount().equals(currentAccount)){
+                closeAccount();
+                currentAccount = t.getAccount();
+            }
+            try {
+                cash = applyTransaction(positions, t, cash, date);
+            } catch (ArithmeticException e){
+                throw new HoldingCalculationException("Error: value overflow in account [" + currentAccount +
+                        "] applying " + t + ", terminating", e);
+            }
+        }
+
+        Map<String, List<Holding>> finish(){
+            closeAccount();
+            return holdings;
+        }
+
+        private void closeAccount(){
+            if (currentAccount == null){
+                return;
+            }
+            holdings.put(currentAccount, toHoldingList(positions, cash));
+            positions = new HashMap<>();
+            cash = 0;
+            currentAccount = null;
+        }
+    }
+}
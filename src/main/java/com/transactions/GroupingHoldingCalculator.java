@@ -0,0 +1,276 @@
+package com.transactions;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * HoldingCalculator accepting transaction files in any order: transactions are grouped by account first, keeping their
+ * order within an account, so that results are the same as for the file with accounts grouped. Files of up to
+ * maxTransactionsInMemory transactions are partitioned in a hash map. Beyond that, partitions are written to disk as
+ * runs sorted by account in a spill directory and the runs are merged, at most maxFanIn at a time: while there are more
+ * runs, consecutive ones are merged into longer runs in passes. Memory therefore holds at most maxTransactionsInMemory
+ * transactions plus maxFanIn read buffers, and at most maxFanIn + 1 run files are open at once
+ */
+
+public class GroupingHoldingCalculator extends HoldingCalculatorImpl {
+    public static final int DEFAULT_MAX_TRANSACTIONS_IN_MEMORY = 1_000_000;
+    public static final int DEFAULT_MAX_FAN_IN = 64;
+    private static final int RUN_BUFFER_SIZE = 64 * 1024;
+    private static final Transaction.txn[] TXN_TYPES = Transaction.txn.values();
+
+    private final int maxTransactionsInMemory;
+    private final File spillDirectory;
+    private final int maxFanIn;
+
+    public GroupingHoldingCalculator(){
+        this(DEFAULT_MAX_TRANSACTIONS_IN_MEMORY, new File(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * @param maxTransactionsInMemory int number of transactions held in memory before spilling a run to disk
+     * @param spillDirectory File directory to write runs to, they are deleted once merged
+     */
+
+    public GroupingHoldingCalculator(int maxTransactionsInMemory, File spillDirectory){
+        this(maxTransactionsInMemory, spillDirectory, DEFAULT_MAX_FAN_IN);
+    }
+
+    /**
+     * @param maxTransactionsInMemory int number of transactions held in memory before spilling a run to disk
+     * @param spillDirectory File directory to write runs to, they are deleted once merged
+     * @param maxFanIn int number of runs merged at a time, at least 2
+     */
+
+    public GroupingHoldingCalculator(int maxTransactionsInMemory, File spillDirectory, int maxFanIn){
+        if (maxTransactionsInMemory < 1){
+            throw new IllegalArgumentException("Error: maxTransactionsInMemory expected to be positive, actual [" +
+                    maxTransactionsInMemory + "]");
+        }
+        if (maxFanIn < 2){
+            throw new IllegalArgumentException("Error: maxFanIn expected to be at least 2, actual [" + maxFanIn + "]");
+        }
+        this.maxTransactionsInMemory = maxTransactionsInMemory;
+        this.spillDirectory = spillDirectory;
+        this.maxFanIn = maxFanIn;
+    }
+
+    @Override
+    public Map<String, List<Holding>> calculateHoldings(File transactionFile, LocalDate date){
+        HoldingAccumulator accumulator = new HoldingAccumulator(this, date);
+        try {
+            group(transactionFile, accumulator::accept);
+        } catch (IOException e){
+            throw new HoldingCalculationException("Error: cannot group transaction file [" + transactionFile.getName() +
+                    "]: " + e.getMessage() + ", terminating", e);
+        }
+        return accumulator.finish();
+    }
+
+    /**
+     * Reads transactionFile and passes its valid transactions to sink grouped by account, those of an account in file
+     * order; runs spilled on the way are deleted before returning
+     *
+     * @param transactionFile File plain or compressed file containing transactions
+     * @param sink Consumer<Transaction> receives every transaction of an account before those of the next one
+     * @throws IOException
+     */
+
+    void group(File transactionFile, Consumer<Transaction> sink) throws IOException {
+        Partitioner partitioner = new Partitioner();
+        try {
+            new MappedTransactionReader().read(transactionFile, partitioner::add);
+            if (partitioner.runs.isEmpty()){
+                for (List<Transaction> accountTransactions : partitioner.partitions.values()){
+                    accountTransactions.forEach(sink);
+                }
+            } else {
+                if (partitioner.size > 0){
+                    partitioner.spill();
+                }
+                mergePasses(partitioner.runs);
+                merge(partitioner.runs, sink);
+            }
+        } finally {
+            for (File run : partitioner.runs){
+                run.delete();
+            }
+        }
+    }
+
+    /**
+     * Merges consecutive runs, maxFanIn at a time, into longer runs taking their place until at most maxFanIn are left;
+     * merged runs are deleted as soon as they are consumed. Keeping runs in order keeps the earlier run first for
+     * equal accounts
+     */
+
+    private void mergePasses(List<File> runs) throws IOException {
+        while (runs.size() > maxFanIn){
+            List<File> merged = new ArrayList<>();
+            try {
+                for (int from = 0; from < runs.size(); from += maxFanIn){
+                    List<File> group = runs.subList(from, Math.min(from + maxFanIn, runs.size()));
+                    if (group.size() == 1){
+                        merged.add(group.get(0));
+                        continue;
+                    }
+                    File run = File.createTempFile("transactions", ".run", spillDirectory);
+                    merged.add(run);
+                    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run),
+                            RUN_BUFFER_SIZE))){
+                        merge(group, t -> write(out, t));
+                    } catch (UncheckedIOException e){
+                        throw e.getCause();
+                    }
+                    for (File input : group){
+                        input.delete();
+                    }
+                }
+            } catch (IOException | RuntimeException e){
+                //runs still listed are deleted by the caller
+                for (File run : merged){
+                    run.delete();
+                }
+                throw e;
+            }
+            runs.clear();
+            runs.addAll(merged);
+        }
+    }
+
+    /**
+     * Merges runs sorted by account into one sequence grouped by account; for equal accounts the earlier run comes
+     * first, which keeps transactions of an account in file order
+     */
+
+    private static void merge(List<File> runs, Consumer<Transaction> sink) throws IOException {
+        PriorityQueue<RunCursor> queue = new PriorityQueue<>((a, b) -> {
+            int byAccount = a.current.getAccount().compareTo(b.current.getAccount());
+            return byAccount != 0 ? byAccount : Integer.compare(a.index, b.index);
+        });
+        List<RunCursor> cursors = new ArrayList<>();
+        try {
+            for (int i = 0; i < runs.size(); i++){
+                RunCursor cursor = new RunCursor(runs.get(i), i);
+                cursors.add(cursor);
+                if (cursor.advance()){
+                    queue.add(cursor);
+                }
+            }
+            while (!queue.isEmpty()){
+                RunCursor cursor = queue.poll();
+                sink.accept(cursor.current);
+                if (cursor.advance()){
+                    queue.add(cursor);
+                }
+            }
+        } finally {
+            for (RunCursor cursor : cursors){
+                cursor.in.close();
+            }
+        }
+    }
+
+    /**
+     * Partitions transactions by account in memory, spilling partitions as a sorted run when full
+     */
+
+    private class Partitioner {
+        private Map<String, List<Transaction>> partitions = new HashMap<>();
+        private final List<File> runs = new ArrayList<>();
+        private int size;
+
+        void add(Transaction t){
+            List<Transaction> accountTransactions = partitions.get(t.getAccount());
+            if (accountTransactions == null){
+                accountTransactions = new ArrayList<>();
+                partitions.put(t.getAccount(), accountTransactions);
+            }
+            accountTransactions.add(t);
+            if (++size >= maxTransactionsInMemory){
+                try {
+                    spill();
+                } catch (IOException e){
+                    throw new HoldingCalculationException("Error: cannot spill transactions to [" + spillDirectory +
+                            "]: " + e.getMessage(), e);
+                }
+            }
+        }
+
+        void spill() throws IOException {
+            File run = File.createTempFile("transactions", ".run", spillDirectory);
+            runs.add(run);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), RUN_BUFFER_SIZE))){
+                for (List<Transaction> accountTransactions : new TreeMap<>(partitions).values()){
+                    for (Transaction t : accountTransactions){
+                        write(out, t);
+                    }
+                }
+            } catch (UncheckedIOException e){
+                throw e.getCause();
+            }
+            partitions = new HashMap<>();
+            size = 0;
+        }
+    }
+
+    /**
+     * Writes transaction in run format, read back by RunCursor
+     */
+
+    private static void write(DataOutputStream out, Transaction t){
+        try {
+            out.writeUTF(t.getAccount());
+            out.writeInt((int) t.getDate().toEpochDay());
+            out.writeByte(t.getTxnType().ordinal());
+            out.writeDouble(t.getUnits());
+            out.writeDouble(t.getPrice());
+            out.writeUTF(t.getAsset());
+        } catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads transactions back from a run, one at a time
+     */
+
+    private static class RunCursor {
+        private final DataInputStream in;
+        private final int index;
+        private Transaction current;
+
+        RunCursor(File run, int index) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), RUN_BUFFER_SIZE));
+            this.index = index;
+        }
+
+        boolean advance() throws IOException {
+            String account;
+            try {
+                account = in.readUTF();
+            } catch (EOFException e){
+                current = null;
+                return false;
+            }
+            current = new Transaction(account, LocalDate.ofEpochDay(in.readInt()), TXN_TYPES[in.readByte()],
+                    in.readDouble(), in.readDouble(), in.readUTF());
+            return true;
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.transactions;
 
+import java.math.BigDecimal;
+
 public class Holding implements java.io.Serializable{
     private String asset;
     private double holding;
+    private BigDecimal exactHolding;
 
     public String getAsset() {
         return asset;
@@ -18,6 +21,20 @@ public class Holding implements java.io.Serializable{
 
     public void setHoldings(double holding) {
         this.holding = holding;
+        this.exactHolding = null;
+    }
+
+    /**
+     * @return BigDecimal exact holding with four decimal places, null if holding was calculated with doubles
+     */
+
+    public BigDecimal getExactHolding() {
+        return exactHolding;
+    }
+
+    public void setExactHolding(BigDecimal exactHolding) {
+        this.holding = exactHolding.doubleValue();
+        this.exactHolding = exactHolding;
     }
 
     public String toString() {
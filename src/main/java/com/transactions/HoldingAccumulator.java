@@ -0,0 +1,100 @@
+package com.transactions;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Folds a stream of transactions into holdings, one account at a time. Makes use of the fact that transactions are
+ * grouped by account name in the input: only the holdings of the account currently being read are kept open, once a
+ * transaction with a different account name arrives the open account is closed and its holdings are added to the
+ * result map. If a listener is given, it is told about every accepted transaction and every closed account; if an
+ * account sink is given, it receives the holdings of every closed account
+ */
+
+class HoldingAccumulator {
+    private final HoldingCalculatorImpl calculator;
+    private final LocalDate date;
+    private final HoldingCalculationListener listener;
+    private final BiConsumer<String, List<Holding>> accountSink;
+    private final Map<String, List<Holding>> holdings = new HashMap<>();
+
+    private String currentAccount;
+    private final PositionMap positions = new PositionMap();
+    private double cash;
+    private long accountTransactions;
+    private long accountStart;
+
+    HoldingAccumulator(HoldingCalculatorImpl calculator, LocalDate date){
+        this(calculator, date, null);
+    }
+
+    HoldingAccumulator(HoldingCalculatorImpl calculator, LocalDate date, HoldingCalculationListener listener){
+        this(calculator, date, listener, null);
+    }
+
+    HoldingAccumulator(HoldingCalculatorImpl calculator, LocalDate date, HoldingCalculationListener listener,
+                       BiConsumer<String, List<Holding>> accountSink){
+        this.calculator = calculator;
+        this.date = date;
+        this.listener = listener;
+        this.accountSink = accountSink;
+    }
+
+    /**
+     * Applies transaction to the holdings of its account, closing the previous account if the account name changed
+     *
+     * @param t Transaction validated transaction
+     */
+
+    void accept(Transaction t){
+        if(!t.getAccount().equals(currentAccount)){
+            closeAccount();
+            currentAccount = t.getAccount();
+            if(listener != null){
+                accountTransactions = 0;
+                accountStart = System.nanoTime();
+            }
+        }
+        cash = calculator.applyTransaction(positions, t, cash, date);
+        if(listener != null){
+            accountTransactions++;
+            listener.transactionAccepted(t.getTxnType());
+        }
+    }
+
+    /**
+     * Closes the account currently being read and returns holdings for all accounts seen
+     *
+     * @return Map<String, List<Holding>> records holdings (value) for accounts (key)
+     */
+
+    Map<String, List<Holding>> finish(){
+        closeAccount();
+        return holdings;
+    }
+
+    /**
+     * Closes the account currently being read, so that a later transaction of the same account starts it again and
+     * replaces its holdings, as when another account came in between
+     */
+
+    void closeAccount(){
+        if(currentAccount == null){
+            return;
+        }
+        List<Holding> accountHoldings = calculator.toHoldingList(positions, cash);
+        holdings.put(currentAccount, accountHoldings);
+        if(accountSink != null){
+            accountSink.accept(currentAccount, accountHoldings);
+        }
+        if(listener != null){
+            listener.accountCompleted(currentAccount, accountTransactions, System.nanoTime() - accountStart);
+        }
+        positions.clear();
+        cash = 0;
+        currentAccount = null;
+    }
+}
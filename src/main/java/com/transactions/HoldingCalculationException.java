@@ -9,4 +9,8 @@ public class HoldingCalculationException extends RuntimeException {
     HoldingCalculationException(String message){
         super(message);
     }
+
+    HoldingCalculationException(String message, Throwable cause){
+        super(message, cause);
+    }
 }
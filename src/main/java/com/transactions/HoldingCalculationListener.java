@@ -0,0 +1,70 @@
+package com.transactions;
+
+import java.io.File;
+import java.time.LocalDate;
+
+/**
+ * Receives events of a holdings calculation, for metrics or tracing. Set on a HoldingCalculatorImpl with setListener;
+ * without a listener no event is created and no clock is read. Events of one calculation come from the calling thread,
+ * in order; as one listener may be told about several calculations at once, everything a run needs is passed to it
+ * with its events. All methods do nothing by default
+ */
+
+public interface HoldingCalculationListener {
+
+    enum Phase {
+        READ, PARSE, AGGREGATE
+    }
+
+    default void runStarted(File transactionFile, LocalDate date){
+    }
+
+    /**
+     * Told once per non-empty line read, valid or not
+     */
+
+    default void lineRead(){
+    }
+
+    /**
+     * @param bytes int number of bytes read, line terminators included, decompressed if the file is compressed
+     */
+
+    default void bytesRead(int bytes){
+    }
+
+    default void lineRejected(RejectReason reason){
+    }
+
+    default void transactionAccepted(Transaction.txn txnType){
+    }
+
+    /**
+     * @param account String account closed
+     * @param transactions long number of transactions of the account
+     * @param nanos long time from reading the first transaction of the account to closing it
+     */
+
+    default void accountCompleted(String account, long transactions, long nanos){
+    }
+
+    /**
+     * @param phase Phase phase of the calculation
+     * @param nanos long time spent in phase during the whole run
+     */
+
+    default void phaseCompleted(Phase phase, long nanos){
+    }
+
+    /**
+     * @param accounts int number of accounts in the result
+     * @param bytes long bytes read during the run
+     * @param nanos long time from the start of the run to its completion
+     */
+
+    default void runCompleted(int accounts, long bytes, long nanos){
+    }
+
+    default void runFailed(HoldingCalculationException error){
+    }
+}
@@ -3,17 +3,36 @@ package com.transactions;
 import java.io.*;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.util.*;
-import java.util.concurrent.atomic.DoubleAccumulator;
 
 public class HoldingCalculatorImpl implements HoldingCalculator{
 
     private static final String OUTPUT_FILENAME = "holdings.txt";
 
+    private volatile HoldingCalculationListener listener;
+
+    /**
+     * Sets listener told about the progress of every following calculation, null to turn reporting off; without a
+     * listener calculateHoldings reads no clock and creates no events. Only this class's calculateHoldings reports to the
+     * listener, subclasses replacing it do not
+     *
+     * @param listener HoldingCalculationListener listener, e.g. HoldingMetrics, or null
+     */
+
+    public void setListener(HoldingCalculationListener listener){
+        this.listener = listener;
+    }
+
+    public HoldingCalculationListener getListener(){
+        return listener;
+    }
+
     /**
-     * Reads in transaction file, parses it, creates list of holdings for each account based on the transactions in the
-     * transaction file, up to the date given as parameter
+     * Reads in transaction file line by line, parses each line and folds the resulting transaction into the holdings of
+     * its account as it arrives, up to the date given as parameter. Only the holdings of the account currently being
+     * read are kept open, in a PositionMap, so memory use does not grow with the number of lines in the file
      *
      * @param transactionFile File input file containing information about transactions
      * @param date LocalDate date up to which calculate holdings
@@ -21,75 +40,60 @@ public class HoldingCalculatorImpl implements HoldingCalculator{
      */
     @Override
     public Map<String, List<Holding>> calculateHoldings(File transactionFile, LocalDate date){
-        //map recording holdings for each account name, to be returned
-        Map<String, List<Holding>> holdings = new HashMap<>();
-        List<String> transactions = null;
-        //reads in transaction file
-        try{
-            readTransactionFile(transactionFile);
+        HoldingCalculationListener runListener = listener;
+        if (runListener != null){
+            return calculateHoldings(transactionFile, date, runListener);
+        }
+        HoldingAccumulator accumulator = new HoldingAccumulator(this, date);
+        //for every line in transaction file, parses line, creates and validates transaction, if transaction details
+        // invalid then ignores transaction; account and asset names are shared through the reader's SymbolTable
+        try (InputStream in = TransactionInput.open(transactionFile)){
+            new MappedTransactionReader().read(in, accumulator::accept);
         }catch(IOException e){
             throw new HoldingCalculationException("Error: cannot read transaction file [" + transactionFile.getName() +
-                    ", terminating");
+                    "], terminating", e);
         }
-        //for every line in transaction file, parses line, creates and validates transaction, if transaction details
-        // invalid then ignores transaction
-        for (String line : transactions){
-            List<Transaction> accountTransactions = new ArrayList<>();
-            String previousAccount = "";
-            Transaction t=null;
-            try {
-                t = parseTransaction(line);
-            }catch(InvalidTransactionException e){
-                continue;
-            }
-            //groups transactions by account name making use of fact that transactions are grouped by account name in
-            // input file: if the transaction is linked to the same account as the previous transaction, puts it in a
-            // list of transactions, once a transaction with a different account name is encountered calculates holdings
-            // for account name based on transactions in list and adds them to the holdings map with the account name as
-            // a key, clears list and adds transaction with new account name
-            if(t.getAccount().equals(previousAccount)){
-                accountTransactions.add(t);
-            }else if(previousAccount.isEmpty()){
-                accountTransactions.add(t);
-                previousAccount = t.getAccount();
-            } else{
-                List<Holding> holdingsForAccount = handleTransactions(accountTransactions, date);
-                holdings.put(previousAccount,holdingsForAccount);
-                accountTransactions.clear();
-                accountTransactions.add(t);
-                previousAccount = t.getAccount();
-            }
+        return accumulator.finish();
+    }
+
+    /**
+     * Same calculation as calculateHoldings, through the same reader, reporting to listener every line read or
+     * rejected, every transaction and account, and the time spent reading, parsing and aggregating
+     */
+
+    private Map<String, List<Holding>> calculateHoldings(File transactionFile, LocalDate date,
+                                                         HoldingCalculationListener runListener){
+        long start = System.nanoTime();
+        runListener.runStarted(transactionFile, date);
+        MappedTransactionReader reader = new MappedTransactionReader();
+        HoldingAccumulator accumulator = new HoldingAccumulator(this, date, runListener);
+        try (InputStream in = TransactionInput.open(transactionFile)){
+            reader.read(in, accumulator::accept, runListener);
+        }catch(IOException e){
+            HoldingCalculationException error = new HoldingCalculationException("Error: cannot read transaction file [" +
+                    transactionFile.getName() + "], terminating", e);
+            runListener.runFailed(error);
+            throw error;
         }
+        Map<String, List<Holding>> holdings = accumulator.finish();
+        runListener.runCompleted(holdings.size(), reader.getBytesRead(), System.nanoTime() - start);
         return holdings;
     }
 
     /**
-     * Prints holdings calculated based on transaction file for every account name
+     * Prints holdings calculated based on transaction file for every account name to holdings.txt, in
+     * HoldingFormat.TEXT; HoldingWriter writes other formats and destinations
      *
      * @param holdings Map<String, List<Holding>> map containing holdings for each account
      * @throws IOException
      */
 
     public void printHoldings(Map<String, List<Holding>> holdings) throws IOException {
-
-       try (BufferedWriter writer = new BufferedWriter(new FileWriter(OUTPUT_FILENAME))) {
-           for (String account : holdings.keySet()) {
-               writer.write(account);
-               writer.newLine();
-               for (Holding holding : holdings.get(account)) {
-                   writer.write(holding.getAsset());
-                   writer.write("\t");
-                   writer.write(Double.toString(holding.getHolding()));
-                   writer.newLine();
-               }
-               writer.newLine();
-
-           }
-       }
+        HoldingWriter.write(holdings, Paths.get(OUTPUT_FILENAME), HoldingFormat.TEXT);
     }
 
     /**
-     * Reads in transaction file and parses it into lines (each representing a transaction)
+     * Reads in transaction file, plain or compressed, and parses it into lines (each representing a transaction)
      *
      * @param transactionFile File file containing transactions
      * @return List<String> returns a list of Strings, each representing a transaction
@@ -99,7 +103,7 @@ public class HoldingCalculatorImpl implements HoldingCalculator{
     public static List<String> readTransactionFile(File transactionFile) throws IOException {
         List<String> transactions = new ArrayList<>();
 
-        try ( BufferedReader reader = new BufferedReader(new FileReader(transactionFile))){
+        try ( BufferedReader reader = new BufferedReader(new InputStreamReader(TransactionInput.open(transactionFile)))){
                 String line;
                 while ((line = reader.readLine()) != null) {
                     transactions.add(line);
@@ -119,39 +123,118 @@ public class HoldingCalculatorImpl implements HoldingCalculator{
      */
 
     public List<Holding> handleTransactions(List<Transaction> transactions, LocalDate date){
-        Map<String,Holding> holdingMap = new HashMap<>();
+        PositionMap positions = new PositionMap();
         double cash = 0;
         for (Transaction t : transactions){
-            if (t.getDate().isAfter(date)){
-                continue;
-            }
-            switch(t.getTxnType()){
-                case BOT:
-                    cash = handleBotTransaction(holdingMap,t,cash);
-                    break;
-                //if transaction(txn) type is sold, checks if account holds asset to be sold (assuming only assets can
-                // be sold that are held in account), if yes, calls helper function to update holdings and cash held in
-                // account, if not, ignores transaction
-                case SLD:
-                  if(!holdingMap.keySet().contains(t.getAsset())) continue;
-                  else cash = handleSldTransaction(holdingMap,t,cash);
-                    break;
-                 //if transaction(txn) type is withdrawal or deposit, updates cash held in account
-                case WDR:
-                    cash -= t.getPrice();
-                    break;
-                case DEP:
+            cash = applyTransaction(positions, t, cash, date);
+        }
+        return toHoldingList(positions, cash);
+    }
+
+    /**
+     * Applies a single transaction to the holdings of an account, ignoring it if it happened after the given date
+     *
+     * @param holdingMap Map<String,Holding> map recording holdings (value) for each asset (key) for an account
+     * @param t Transaction transaction to be processed
+     * @param cash double cash held in account before the transaction
+     * @param date LocalDate date up to which holdings will be calculated
+     * @return double updated cash value
+     */
+
+    public double applyTransaction(Map<String,Holding> holdingMap, Transaction t, double cash, LocalDate date){
+        return applyTransaction(new HoldingMapPositions(holdingMap), t, cash, date);
+    }
+
+    /**
+     * Applies a single transaction to the units held by an account, ignoring it if it happened after the given date;
+     * same rules as applyTransaction on a map of Holding objects, without creating any
+     *
+     * @param positions PositionMap units held (value) of each asset (key) for an account
+     * @param t Transaction transaction to be processed
+     * @param cash double cash held in account before the transaction
+     * @param date LocalDate date up to which holdings will be calculated
+     * @return double updated cash value
+     */
+
+    public double applyTransaction(PositionMap positions, Transaction t, double cash, LocalDate date){
+        return applyTransaction((Positions) positions, t, cash, date);
+    }
+
+    /**
+     * Rules of every transaction type, shared by both forms of applyTransaction
+     */
+
+    private double applyTransaction(Positions positions, Transaction t, double cash, LocalDate date){
+        if (t.getDate().isAfter(date)){
+            return cash;
+        }
+        switch(t.getTxnType()){
+            case BOT:
+                positions.add(t.getAsset(), t.getUnits());
+                cash -= roundToFourPlaces(t.getUnits()*t.getPrice());
+                break;
+            //if transaction(txn) type is sold, checks if account holds asset to be sold (assuming only assets can
+            // be sold that are held in account), if yes, updates holdings and cash held in account, if not, ignores
+            // transaction; sales of more units than held are applied whole, CostBasisHoldingCalculator reports them
+            // as oversells
+            case SLD:
+                if(positions.containsKey(t.getAsset())){
+                    positions.subtract(t.getAsset(), t.getUnits());
+                    cash += roundToFourPlaces(t.getUnits()*t.getPrice());
+                }
+                break;
+            //if transaction(txn) type is withdrawal or deposit, updates cash held in account
+            case WDR:
+                cash -= t.getPrice();
+                break;
+            case DEP:
+                cash += t.getPrice();
+                break;
+            //if transaction(txn) type is dividend, checks if account contains asset of type dividend is given for,
+            // updates cash held in account, adding dividend value
+            case DIV:
+                if(positions.containsKey(t.getAsset())){
                     cash += t.getPrice();
-                    break;
-                //if transaction(txn) type is dividend, checks if account contains asset of type dividend is given for,
-                // updates cash held in account, adding dividend value
-                case DIV:
-                    if(holdingMap.keySet().contains(t.getAsset())){
-                        cash +=t.getPrice();
-                    }
-                    break;
-            }
+                }
+                break;
         }
+        return cash;
+    }
+
+    /**
+     * Creates Holding objects for the units held by an account, the cash balance taking the place of any CASH asset
+     *
+     * @param positions PositionMap units held (value) of each asset (key) for an account
+     * @param cash double cash held in account
+     * @return List<Holding> list of holdings related to an account
+     */
+
+    public List<Holding> toHoldingList(PositionMap positions, double cash){
+        List<Holding> holdings = new ArrayList<>(positions.size() + 1);
+        positions.forEach((asset, units) -> {
+            if (!asset.equals("CASH")){
+                Holding holding = new Holding();
+                holding.setAsset(asset);
+                holding.setHoldings(units);
+                holdings.add(holding);
+            }
+        });
+        Holding cashHolding = new Holding();
+        cashHolding.setAsset("CASH");
+        cashHolding.setHoldings(cash);
+        holdings.add(cashHolding);
+        return holdings;
+    }
+
+    /**
+     * Adds cash holding to the holdings of an account and returns them as list
+     *
+     * @param holdingMap Map<String,Holding> map recording holdings (value) for each asset (key) for an account
+     * @param cash double cash held in account
+     * @return List<Holding> list of holdings related to an account
+     */
+
+    public List<Holding> toHoldingList(Map<String,Holding> holdingMap, double cash){
         //creates cash holding for account, adds it to map containing holdings related to account
         Holding cashHolding = new Holding();
         cashHolding.setAsset("CASH");
@@ -181,7 +264,7 @@ public class HoldingCalculatorImpl implements HoldingCalculator{
     /**
      * Processes BOT transaction (buying asset): checks if map recording holdings for account contains asset, if it does,
      * updates holding of asset (increasing by amount bought), if not, adds holding to map, updates and returns rounded
-     * cash value held in account (pre-transaction value accepted as parameter)
+     * cash value held in account (pre-transaction value accepted as parameter); same rule as applyTransaction
      *
      * @param holdingMap Map<String,Holding> map recording holdings (value) for each asset (key) for an account
      * @param t Transaction transaction to be processed
@@ -190,25 +273,13 @@ public class HoldingCalculatorImpl implements HoldingCalculator{
      */
 
     public double handleBotTransaction(Map<String,Holding> holdingMap, Transaction t, double cash){
-        String asset = t.getAsset();
-        if(holdingMap.keySet().contains(asset)){
-            double currentHoldings = holdingMap.get(asset).getHolding();
-            holdingMap.get(asset).setHoldings(currentHoldings+t.getUnits());
-        }else{
-            Holding stockHolding = new Holding();
-            stockHolding.setAsset(asset);
-            stockHolding.setHoldings(t.getUnits());
-            holdingMap.put(asset,stockHolding);
-        }
-       return cash -=roundToFourPlaces(t.getUnits()*t.getPrice());
-
+        return applyTransaction(new HoldingMapPositions(holdingMap), t, cash, LocalDate.MAX);
     }
 
-    //TODO: check if account holds at least as many units of the stock it wants to sell
     /**
      * Processes SLD transaction (selling asset): updates holding of asset (decreasing by amount sold), removes asset
      * from map of holdings if holdings value is 0, updates and returns rounded cash value held in account
-     * (pre-transaction value accepted as parameter)
+     * (pre-transaction value accepted as parameter); same rule as applyTransaction
      *
      * @param holdingMap Map<String,Holding> map recording holdings (value) for each asset (key) for an account
      * @param t Transaction transaction to be processed
@@ -217,15 +288,7 @@ public class HoldingCalculatorImpl implements HoldingCalculator{
      */
 
     public double handleSldTransaction(Map<String,Holding> holdingMap, Transaction t, double cash){
-        String asset = t.getAsset();
-            double currentHoldings = holdingMap.get(asset).getHolding();
-            holdingMap.get(asset).setHoldings(currentHoldings-t.getUnits());
-
-        if(Double.compare(holdingMap.get(asset).getHolding(),0.0)==0){
-            holdingMap.remove(asset);
-        }
-        cash +=roundToFourPlaces(t.getUnits()*t.getPrice());
-        return cash;
+        return applyTransaction(new HoldingMapPositions(holdingMap), t, cash, LocalDate.MAX);
     }
 
     /**
@@ -241,4 +304,43 @@ public class HoldingCalculatorImpl implements HoldingCalculator{
         return bd.doubleValue();
     }
 
+    /**
+     * Positions of an account kept as a map of Holding objects, creating and removing them as the rules require
+     */
+
+    private static class HoldingMapPositions implements Positions {
+        private final Map<String,Holding> holdingMap;
+
+        HoldingMapPositions(Map<String,Holding> holdingMap){
+            this.holdingMap = holdingMap;
+        }
+
+        @Override
+        public boolean containsKey(String asset){
+            return holdingMap.containsKey(asset);
+        }
+
+        @Override
+        public void add(String asset, double amount){
+            Holding holding = holdingMap.get(asset);
+            if(holding != null){
+                holding.setHoldings(holding.getHolding()+amount);
+            }else{
+                Holding stockHolding = new Holding();
+                stockHolding.setAsset(asset);
+                stockHolding.setHoldings(amount);
+                holdingMap.put(asset,stockHolding);
+            }
+        }
+
+        @Override
+        public void subtract(String asset, double amount){
+            Holding holding = holdingMap.get(asset);
+            holding.setHoldings(holding.getHolding()-amount);
+            if(Double.compare(holding.getHolding(),0.0)==0){
+                holdingMap.remove(asset);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,32 @@
+package com.transactions;
+
+/**
+ * Output formats of HoldingWriter
+ */
+
+public enum HoldingFormat {
+    /** account on a line of its own, then asset&lt;TAB&gt;holding per line and an empty line, as printHoldings writes */
+    TEXT("txt"),
+    /** account&lt;TAB&gt;asset&lt;TAB&gt;holding per holding, after a header line */
+    TSV("tsv"),
+    /** account,asset,holding per holding, after a header line; names containing commas or quotes are quoted */
+    CSV("csv"),
+    /** one JSON object per account: {"account":...,"holdings":[{"asset":...,"holding":...},...]} */
+    JSONL("jsonl"),
+    /** columns of account groups, see HoldingWriter */
+    BINARY("hldc");
+
+    private final String extension;
+
+    HoldingFormat(String extension){
+        this.extension = extension;
+    }
+
+    /**
+     * @return String file name extension of the format, without dot
+     */
+
+    public String getExtension(){
+        return extension;
+    }
+}
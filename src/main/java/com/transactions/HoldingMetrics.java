@@ -0,0 +1,208 @@
+package com.transactions;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * HoldingCalculationListener adding up events over all runs it listens to: lines read and rejected per reason,
+ * transactions per txn type, accounts, time per phase and a histogram of time per account with power of two buckets.
+ * Counters may be read from any thread while runs are in progress, and exposed through JMX with register. Keeps no
+ * state of its own per run, so one instance may listen to concurrent runs
+ */
+
+public class HoldingMetrics implements HoldingCalculationListener, HoldingMetricsMXBean {
+    private static final RejectReason[] REASONS = RejectReason.values();
+    private static final Transaction.txn[] TXN_TYPES = Transaction.txn.values();
+    //bucket i counts accounts taking less than 2^i microseconds, the last one all slower accounts
+    private static final int LATENCY_BUCKETS = 32;
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder failedRuns = new LongAdder();
+    private final LongAdder linesRead = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final AtomicLongArray rejects = new AtomicLongArray(REASONS.length);
+    private final AtomicLongArray txnTypes = new AtomicLongArray(TXN_TYPES.length);
+    private final LongAdder accounts = new LongAdder();
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+    private final AtomicLongArray accountLatency = new AtomicLongArray(LATENCY_BUCKETS);
+    private final AtomicLong lastRunBytesPerSecond = new AtomicLong();
+
+    /**
+     * Registers metrics with the platform MBean server as com.transactions:type=HoldingMetrics,name=name
+     *
+     * @param name String name distinguishing this instance
+     * @return ObjectName name registered under
+     */
+
+    public ObjectName register(String name){
+        try {
+            ObjectName objectName = new ObjectName("com.transactions:type=HoldingMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e){
+            throw new IllegalStateException("Error: cannot register holding metrics [" + name + "]", e);
+        }
+    }
+
+    @Override
+    public void lineRead(){
+        linesRead.increment();
+    }
+
+    @Override
+    public void bytesRead(int bytes){
+        bytesRead.add(bytes);
+    }
+
+    @Override
+    public void lineRejected(RejectReason reason){
+        rejects.incrementAndGet(reason.ordinal());
+    }
+
+    @Override
+    public void transactionAccepted(Transaction.txn txnType){
+        txnTypes.incrementAndGet(txnType.ordinal());
+    }
+
+    @Override
+    public void accountCompleted(String account, long transactions, long nanos){
+        accounts.increment();
+        long micros = nanos / 1000;
+        int bucket = Math.min(LATENCY_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        accountLatency.incrementAndGet(bucket);
+    }
+
+    @Override
+    public void phaseCompleted(Phase phase, long nanos){
+        phaseNanos.addAndGet(phase.ordinal(), nanos);
+    }
+
+    @Override
+    public void runCompleted(int accountCount, long bytes, long nanos){
+        runs.increment();
+        lastRunBytesPerSecond.set(nanos == 0 ? 0 : (long) (bytes * 1e9 / nanos));
+    }
+
+    @Override
+    public void runFailed(HoldingCalculationException error){
+        failedRuns.increment();
+    }
+
+    @Override
+    public long getRuns(){
+        return runs.sum();
+    }
+
+    @Override
+    public long getFailedRuns(){
+        return failedRuns.sum();
+    }
+
+    @Override
+    public long getLinesRead(){
+        return linesRead.sum();
+    }
+
+    @Override
+    public long getBytesRead(){
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getLinesRejected(){
+        long total = 0;
+        for (int i = 0; i < REASONS.length; i++){
+            total += rejects.get(i);
+        }
+        return total;
+    }
+
+    public long getLinesRejected(RejectReason reason){
+        return rejects.get(reason.ordinal());
+    }
+
+    @Override
+    public Map<String, Long> getLinesRejectedByReason(){
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (RejectReason reason : REASONS){
+            map.put(reason.name(), rejects.get(reason.ordinal()));
+        }
+        return map;
+    }
+
+    public long getTransactions(Transaction.txn txnType){
+        return txnTypes.get(txnType.ordinal());
+    }
+
+    @Override
+    public Map<String, Long> getTransactionsByTxnType(){
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (Transaction.txn txnType : TXN_TYPES){
+            map.put(txnType.name(), txnTypes.get(txnType.ordinal()));
+        }
+        return map;
+    }
+
+    @Override
+    public long getAccountsProcessed(){
+        return accounts.sum();
+    }
+
+    @Override
+    public long getReadNanos(){
+        return phaseNanos.get(Phase.READ.ordinal());
+    }
+
+    @Override
+    public long getParseNanos(){
+        return phaseNanos.get(Phase.PARSE.ordinal());
+    }
+
+    @Override
+    public long getAggregateNanos(){
+        return phaseNanos.get(Phase.AGGREGATE.ordinal());
+    }
+
+    @Override
+    public long getLastRunBytesPerSecond(){
+        return lastRunBytesPerSecond.get();
+    }
+
+    @Override
+    public Map<String, Long> getAccountLatencyHistogram(){
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (int i = 0; i < LATENCY_BUCKETS - 1; i++){
+            map.put("<" + (1L << i) + "us", accountLatency.get(i));
+        }
+        map.put(">=" + (1L << (LATENCY_BUCKETS - 2)) + "us", accountLatency.get(LATENCY_BUCKETS - 1));
+        return map;
+    }
+
+    @Override
+    public void reset(){
+        runs.reset();
+        failedRuns.reset();
+        linesRead.reset();
+        bytesRead.reset();
+        accounts.reset();
+        for (int i = 0; i < REASONS.length; i++){
+            rejects.set(i, 0);
+        }
+        for (int i = 0; i < TXN_TYPES.length; i++){
+            txnTypes.set(i, 0);
+        }
+        for (int i = 0; i < Phase.values().length; i++){
+            phaseNanos.set(i, 0);
+        }
+        for (int i = 0; i < LATENCY_BUCKETS; i++){
+            accountLatency.set(i, 0);
+        }
+        lastRunBytesPerSecond.set(0);
+    }
+}
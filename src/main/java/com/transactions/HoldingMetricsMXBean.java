@@ -0,0 +1,50 @@
+package com.transactions;
+
+import java.util.Map;
+
+/**
+ * JMX view of HoldingMetrics
+ */
+
+public interface HoldingMetricsMXBean {
+
+    long getRuns();
+
+    long getFailedRuns();
+
+    long getLinesRead();
+
+    /**
+     * @return long bytes read over all runs, decompressed for compressed files
+     */
+
+    long getBytesRead();
+
+    long getLinesRejected();
+
+    Map<String, Long> getLinesRejectedByReason();
+
+    Map<String, Long> getTransactionsByTxnType();
+
+    long getAccountsProcessed();
+
+    long getReadNanos();
+
+    long getParseNanos();
+
+    long getAggregateNanos();
+
+    /**
+     * @return long bytes read per second during the last completed run
+     */
+
+    long getLastRunBytesPerSecond();
+
+    /**
+     * @return Map<String, Long> number of accounts per latency bucket, bucket named by its upper bound in microseconds
+     */
+
+    Map<String, Long> getAccountLatencyHistogram();
+
+    void reset();
+}
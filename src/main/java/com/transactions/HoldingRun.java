@@ -0,0 +1,131 @@
+package com.transactions;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A holdings calculation started by AsyncHoldingCalculator: its result, its progress and a way to stop it. Progress
+ * counters may be read from any thread while the run is in progress
+ */
+
+public class HoldingRun {
+    private final File transactionFile;
+    private final LocalDate date;
+    private final long fileSize;
+    private final CompletableFuture<Map<String, List<Holding>>> result = new CompletableFuture<>();
+
+    private volatile long bytesRead;
+    private volatile long linesRead;
+    private volatile boolean cancelled;
+    private Closeable input;
+
+    HoldingRun(File transactionFile, LocalDate date){
+        this.transactionFile = transactionFile;
+        this.date = date;
+        this.fileSize = transactionFile.length();
+        //cancelling the future directly stops the run as well
+        result.whenComplete((holdings, error) -> {
+            if (result.isCancelled()){
+                cancel();
+            }
+        });
+    }
+
+    /**
+     * @return CompletableFuture<Map<String, List<Holding>>> completes with holdings for all accounts, exceptionally with
+     * a HoldingCalculationException if the run fails, or is cancelled with the run
+     */
+
+    public CompletableFuture<Map<String, List<Holding>>> getResult(){
+        return result;
+    }
+
+    public File getTransactionFile(){
+        return transactionFile;
+    }
+
+    public LocalDate getDate(){
+        return date;
+    }
+
+    /**
+     * @return long number of bytes read so far, uncompressed
+     */
+
+    public long getBytesRead(){
+        return bytesRead;
+    }
+
+    public long getLinesRead(){
+        return linesRead;
+    }
+
+    /**
+     * @return long size of the transaction file on disk, compressed if the file is
+     */
+
+    public long getFileSize(){
+        return fileSize;
+    }
+
+    public boolean isCancelled(){
+        return cancelled;
+    }
+
+    /**
+     * Stops the run: its result is cancelled, no more accounts are reported, and its file is closed, which also wakes
+     * a worker waiting on a read; the worker thread is given back as soon as it sees the run was cancelled
+     */
+
+    public void cancel(){
+        Closeable toClose;
+        synchronized (this){
+            if (cancelled){
+                return;
+            }
+            cancelled = true;
+            toClose = input;
+            input = null;
+        }
+        result.cancel(false);
+        closeQuietly(toClose);
+    }
+
+    void progress(long bytes, long lines){
+        bytesRead = bytes;
+        linesRead = lines;
+    }
+
+    /**
+     * Records input as the one to close on cancel; returns false, closing input, if the run is already cancelled
+     */
+
+    synchronized boolean opened(Closeable input){
+        if (cancelled){
+            closeQuietly(input);
+            return false;
+        }
+        this.input = input;
+        return true;
+    }
+
+    synchronized void closed(){
+        input = null;
+    }
+
+    private static void closeQuietly(Closeable closeable){
+        if (closeable == null){
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e){
+            //nothing more to release
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package com.transactions;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resident engine keeping the holdings of every account in memory and applying transactions appended to a transaction
+ * file, or to the files of a directory, as they arrive. Files are tailed from the byte offset reached so far and only
+ * complete lines, ended by a line end, are applied; a line still being written waits for the next poll. Transactions
+ * are applied on top of what an account already holds, wherever the account appears, as IncrementalHoldingCalculator
+ * does, and whatever their date. Files are expected to be plain text and to only ever grow.
+ *
+ * A single writer, either the watcher thread started by start or callers of poll, applies transactions; after each
+ * poll the holdings of every account it touched are published as new unmodifiable lists in a ConcurrentHashMap, so
+ * getHoldings never waits for the writer and always sees a whole poll applied to an account, or none of it. If a state
+ * directory is given, holdings and offsets are checkpointed there and a new service carries on from them
+ */
+
+public class HoldingService implements Closeable {
+    public static final long DEFAULT_POLL_MILLIS = 1000;
+    public static final long DEFAULT_CHECKPOINT_MILLIS = 60_000;
+    private static final String STATE_FILE = "service.properties";
+    private static final String OFFSET_PREFIX = "offset.";
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private final HoldingCalculatorImpl calculator = new HoldingCalculatorImpl();
+    private final MappedTransactionReader reader = new MappedTransactionReader();
+    private final Path source;
+    private final String glob;
+    private final Path stateDirectory;
+    //writer side, guarded by this
+    private final Map<String, AccountState> accounts = new HashMap<>();
+    private final Map<String, Long> offsets = new HashMap<>();
+    private long generation;
+    //reader side
+    private final ConcurrentHashMap<String, List<Holding>> published = new ConcurrentHashMap<>();
+    private volatile long transactionsApplied;
+    private volatile RuntimeException failure;
+    private volatile boolean closed;
+    private WatchService watchService;
+    private Thread watcher;
+
+    /**
+     * @param transactionFile Path transaction file to tail, may not exist yet; a directory is tailed as with glob *
+     * @param stateDirectory Path directory to checkpoint holdings and offsets in, created if missing, null for none
+     */
+
+    public HoldingService(Path transactionFile, Path stateDirectory){
+        this(transactionFile, Files.isDirectory(transactionFile) ? "*" : null, stateDirectory);
+    }
+
+    /**
+     * @param directory Path directory whose files are tailed, in order of their names
+     * @param glob String pattern of the names of the files to tail, e.g. *.csv
+     * @param stateDirectory Path directory to checkpoint holdings and offsets in, created if missing, null for none
+     */
+
+    public HoldingService(Path directory, String glob, Path stateDirectory){
+        this.source = directory;
+        this.glob = glob;
+        this.stateDirectory = stateDirectory;
+        if (stateDirectory != null){
+            try {
+                Files.createDirectories(stateDirectory);
+            } catch (IOException e){
+                throw new HoldingCalculationException("Error: cannot create state directory [" + stateDirectory +
+                        "], terminating", e);
+            }
+            restore();
+        }
+    }
+
+    /**
+     * Starts a daemon thread applying new transactions as soon as the WatchService reports a change to the tailed
+     * files, and at the latest every pollMillis, checkpointing at most every checkpointMillis
+     */
+
+    public void start(){
+        start(DEFAULT_POLL_MILLIS, DEFAULT_CHECKPOINT_MILLIS);
+    }
+
+    /**
+     * @param pollMillis long longest time between two polls
+     * @param checkpointMillis long shortest time between two checkpoints, if a state directory is given
+     */
+
+    public synchronized void start(long pollMillis, long checkpointMillis){
+        if (watcher != null || closed){
+            throw new IllegalStateException("Error: service already started or closed");
+        }
+        Path directory = glob != null ? source : source.toAbsolutePath().getParent();
+        try {
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e){
+            throw new HoldingCalculationException("Error: cannot watch [" + directory + "], terminating", e);
+        }
+        WatchService service = watchService;
+        watcher = new Thread(() -> watch(service, pollMillis, checkpointMillis), "holding-service");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watch(WatchService service, long pollMillis, long checkpointMillis){
+        long lastCheckpoint = System.nanoTime();
+        try {
+            while (!closed){
+                poll();
+                if (stateDirectory != null &&
+                        System.nanoTime() - lastCheckpoint >= TimeUnit.MILLISECONDS.toNanos(checkpointMillis)){
+                    checkpoint();
+                    lastCheckpoint = System.nanoTime();
+                }
+                WatchKey key = service.poll(pollMillis, TimeUnit.MILLISECONDS);
+                //any event in the directory is only a hint to poll, which checks the files themselves
+                while (key != null){
+                    key.pollEvents();
+                    key.reset();
+                    key = service.poll();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e){
+            //service is being closed
+        } catch (RuntimeException e){
+            //already recorded by poll or checkpoint, the watcher stops
+        }
+    }
+
+    /**
+     * Applies every complete line appended to the tailed files since the last poll and publishes the holdings of the
+     * accounts touched
+     *
+     * @return int number of transactions applied
+     */
+
+    public synchronized int poll(){
+        checkUsable();
+        Map<String, AccountState> touched = new HashMap<>();
+        int[] applied = new int[1];
+        try {
+            for (File file : files()){
+                String name = file.getName();
+                long offset = offsets.getOrDefault(name, 0L);
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+                    long size = channel.size();
+                    if (size < offset){
+                        throw new HoldingCalculationException("Error: transaction file [" + name + "] shrank from [" +
+                                offset + "] to [" + size + "] bytes, terminating");
+                    }
+                    long end = lastLineEnd(channel, offset, size);
+                    if (end == offset){
+                        continue;
+                    }
+                    if (offset == 0 && TransactionInput.detect(file) != TransactionInput.Format.PLAIN){
+                        throw new HoldingCalculationException("Error: cannot tail compressed file [" + name +
+                                "], terminating");
+                    }
+                    reader.read(channel, offset, end, t -> {
+                        apply(touched, t);
+                        applied[0]++;
+                    });
+                    offsets.put(name, end);
+                }
+            }
+        } catch (IOException e){
+            fail(new HoldingCalculationException("Error: cannot read transaction files in [" + source +
+                    "], terminating", e));
+        } catch (RuntimeException e){
+            fail(e);
+        } finally {
+            //publishes whatever was applied, even if the poll failed half way
+            for (Map.Entry<String, AccountState> account : touched.entrySet()){
+                AccountState state = account.getValue();
+                published.put(account.getKey(),
+                        Collections.unmodifiableList(calculator.toHoldingList(state.positions, state.cash)));
+            }
+            transactionsApplied += applied[0];
+        }
+        return applied[0];
+    }
+
+    private List<File> files(){
+        if (glob != null){
+            return MultiFileHoldingCalculator.listFiles(source, glob);
+        }
+        return Files.isRegularFile(source) ? Collections.singletonList(source.toFile()) : Collections.<File>emptyList();
+    }
+
+    private void apply(Map<String, AccountState> touched, Transaction t){
+        AccountState state = touched.get(t.getAccount());
+        if (state == null){
+            state = accounts.get(t.getAccount());
+            if (state == null){
+                state = new AccountState();
+                accounts.put(t.getAccount(), state);
+            }
+            touched.put(t.getAccount(), state);
+        }
+        state.cash = calculator.applyTransaction(state.positions, t, state.cash, LocalDate.MAX);
+    }
+
+    /**
+     * Returns offset after the last line end in [from, size), from if there is none
+     */
+
+    static long lastLineEnd(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long chunkEnd = size;
+        while (chunkEnd > from){
+            long chunkStart = Math.max(from, chunkEnd - chunk.capacity());
+            chunk.clear().limit((int) (chunkEnd - chunkStart));
+            while (chunk.hasRemaining()){
+                if (channel.read(chunk, chunkStart + chunk.position()) < 0){
+                    throw new IOException("Error: transaction file shrank while being read");
+                }
+            }
+            for (int i = chunk.limit() - 1; i >= 0; i--){
+                byte b = chunk.get(i);
+                if (b == '\n' || b == '\r'){
+                    return chunkStart + i + 1;
+                }
+            }
+            chunkEnd = chunkStart;
+        }
+        return from;
+    }
+
+    /**
+     * @param account String account name
+     * @return List<Holding> current holdings of account including CASH, unmodifiable, null if account is unknown
+     */
+
+    public List<Holding> getHoldings(String account){
+        return published.get(account);
+    }
+
+    /**
+     * @return Set<String> accounts with holdings, a live view
+     */
+
+    public Set<String> getAccounts(){
+        return Collections.unmodifiableSet(published.keySet());
+    }
+
+    /**
+     * @return long number of transactions applied since the service was created
+     */
+
+    public long getTransactionsApplied(){
+        return transactionsApplied;
+    }
+
+    /**
+     * @return RuntimeException error that stopped the service, null while it is working
+     */
+
+    public RuntimeException getFailure(){
+        return failure;
+    }
+
+    /**
+     * Writes holdings and offsets to the state directory: the holdings as a new HoldingSnapshot, then the offsets and
+     * the name of that snapshot in a properties file replaced atomically, so a crash at any point leaves a consistent
+     * pair behind
+     */
+
+    public synchronized void checkpoint(){
+        if (stateDirectory == null){
+            throw new IllegalStateException("Error: no state directory to checkpoint to");
+        }
+        checkUsable();
+        long next = generation + 1;
+        Map<String, List<Holding>> holdings = new HashMap<>(published);
+        Properties properties = new Properties();
+        properties.setProperty("generation", Long.toString(next));
+        for (Map.Entry<String, Long> offset : offsets.entrySet()){
+            properties.setProperty(OFFSET_PREFIX + offset.getKey(), Long.toString(offset.getValue()));
+        }
+        try {
+            new HoldingSnapshot(holdings, null).write(snapshotPath(next));
+            Path temporary = stateDirectory.resolve(STATE_FILE + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporary)){
+                properties.store(out, "holding service state");
+            }
+            Files.move(temporary, stateDirectory.resolve(STATE_FILE), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e){
+            throw fail(new HoldingCalculationException("Error: cannot write checkpoint to [" + stateDirectory +
+                    "], terminating", e));
+        }
+        generation = next;
+        try {
+            Files.deleteIfExists(snapshotPath(next - 1));
+        } catch (IOException e){
+            //left behind, never read again
+        }
+    }
+
+    private void restore(){
+        Path stateFile = stateDirectory.resolve(STATE_FILE);
+        if (!Files.exists(stateFile)){
+            return;
+        }
+        Properties properties = new Properties();
+        HoldingSnapshot snapshot;
+        try (InputStream in = Files.newInputStream(stateFile)){
+            properties.load(in);
+            generation = Long.parseLong(properties.getProperty("generation"));
+            snapshot = HoldingSnapshot.read(snapshotPath(generation));
+        } catch (IOException | RuntimeException e){
+            throw new HoldingCalculationException("Error: cannot restore state from [" + stateDirectory +
+                    "], terminating", e);
+        }
+        for (String key : properties.stringPropertyNames()){
+            if (key.startsWith(OFFSET_PREFIX)){
+                offsets.put(key.substring(OFFSET_PREFIX.length()), Long.parseLong(properties.getProperty(key)));
+            }
+        }
+        SymbolTable symbols = new SymbolTable();
+        for (Map.Entry<String, List<Holding>> account : snapshot.getHoldings().entrySet()){
+            AccountState state = new AccountState();
+            for (Holding holding : account.getValue()){
+                if (holding.getAsset().equals("CASH")){
+                    state.cash = holding.getHolding();
+                } else {
+                    state.positions.put(symbols.intern(holding.getAsset()), holding.getHolding());
+                }
+            }
+            accounts.put(account.getKey(), state);
+            published.put(account.getKey(),
+                    Collections.unmodifiableList(calculator.toHoldingList(state.positions, state.cash)));
+        }
+    }
+
+    private Path snapshotPath(long snapshotGeneration){
+        return stateDirectory.resolve("holdings-" + snapshotGeneration + ".hlds");
+    }
+
+    private RuntimeException fail(RuntimeException error){
+        if (failure == null){
+            failure = error;
+        }
+        throw error;
+    }
+
+    private void checkUsable(){
+        if (failure != null){
+            throw new HoldingCalculationException("Error: service stopped after an earlier error, terminating", failure);
+        }
+    }
+
+    /**
+     * Stops the watcher and, if a state directory is given and the service has not failed, writes a last checkpoint
+     */
+
+    @Override
+    public void close(){
+        Thread running;
+        synchronized (this){
+            if (closed){
+                return;
+            }
+            closed = true;
+            running = watcher;
+            if (watchService != null){
+                try {
+                    watchService.close();
+                } catch (IOException e){
+                    //the watcher still stops, it checks closed after every poll
+                }
+            }
+        }
+        if (running != null){
+            try {
+                running.join();
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (stateDirectory != null && failure == null){
+            checkpoint();
+        }
+    }
+
+    /**
+     * Positions and cash of one account, only touched by the writer
+     */
+
+    private static class AccountState {
+        private final PositionMap positions = new PositionMap();
+        private double cash;
+    }
+}
@@ -0,0 +1,427 @@
+package com.transactions;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Holdings of all accounts as of a date, with a compact binary format to save them to and restore them from a channel.
+ * Layout, all numbers big endian:
+ * <pre>
+ * header      magic "HLDS", int version, long as-of epoch day (Long.MIN_VALUE if none)
+ * dictionary  int asset count, then per asset: int byte length, UTF-8 bytes
+ * accounts    int account count, then per account a record:
+ *               int record byte length, int account name byte length, UTF-8 bytes, int holding count,
+ *               per holding: int asset id, double holding, byte exact flag, [byte scale, long unscaled value]
+ * pending     int transaction count, then per transaction: int account name byte length, UTF-8 bytes, long epoch day,
+ *               byte txn type ordinal, double units, double price, int asset name byte length, UTF-8 bytes
+ *               (since version 2)
+ * trailer     long CRC32 of all bytes before it
+ * </pre>
+ * Pending transactions are those dated after the as-of date, kept to be applied once holdings reach their date
+ */
+
+public class HoldingSnapshot {
+    private static final int MAGIC = 0x484C4453;
+    private static final int VERSION = 2;
+    private static final Transaction.txn[] TXN_TYPES = Transaction.txn.values();
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private final Map<String, List<Holding>> holdings;
+    private final LocalDate asOf;
+    private final List<Transaction> pending;
+
+    public HoldingSnapshot(Map<String, List<Holding>> holdings, LocalDate asOf){
+        this(holdings, asOf, Collections.<Transaction>emptyList());
+    }
+
+    /**
+     * @param holdings Map<String, List<Holding>> holdings (value) for accounts (key)
+     * @param asOf LocalDate date holdings are valid for, null for none
+     * @param pending List<Transaction> transactions dated after asOf, not yet applied
+     */
+
+    public HoldingSnapshot(Map<String, List<Holding>> holdings, LocalDate asOf, List<Transaction> pending){
+        this.holdings = holdings;
+        this.asOf = asOf;
+        this.pending = pending;
+    }
+
+    public Map<String, List<Holding>> getHoldings(){
+        return holdings;
+    }
+
+    public LocalDate getAsOf(){
+        return asOf;
+    }
+
+    public List<Transaction> getPending(){
+        return pending;
+    }
+
+    /**
+     * Writes snapshot to file, replacing it only once the new snapshot is complete so that a crash while writing
+     * leaves the previous checkpoint in place
+     *
+     * @param path Path file to write
+     * @throws IOException
+     */
+
+    public void write(Path path) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)){
+            write(channel);
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes snapshot to channel
+     *
+     * @param channel WritableByteChannel channel to write to, left open
+     * @throws IOException
+     */
+
+    public void write(WritableByteChannel channel) throws IOException {
+        Map<String, Integer> assetIds = new HashMap<>();
+        List<byte[]> assetNames = new ArrayList<>();
+        for (List<Holding> accountHoldings : holdings.values()){
+            for (Holding holding : accountHoldings){
+                if (!assetIds.containsKey(holding.getAsset())){
+                    assetIds.put(holding.getAsset(), assetNames.size());
+                    assetNames.add(holding.getAsset().getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+        Output out = new Output(channel);
+        out.ensure(16);
+        out.buffer.putInt(MAGIC).putInt(VERSION).putLong(asOf == null ? NO_DATE : asOf.toEpochDay());
+        out.ensure(4);
+        out.buffer.putInt(assetNames.size());
+        for (byte[] name : assetNames){
+            out.putBytes(name);
+        }
+        out.ensure(4);
+        out.buffer.putInt(holdings.size());
+        //exact values of the account being written, computed once for its length and its holdings
+        Long[] exactValues = new Long[16];
+        for (Map.Entry<String, List<Holding>> account : holdings.entrySet()){
+            byte[] name = account.getKey().getBytes(StandardCharsets.UTF_8);
+            List<Holding> accountHoldings = account.getValue();
+            if (exactValues.length < accountHoldings.size()){
+                exactValues = new Long[accountHoldings.size()];
+            }
+            int length = 4 + name.length + 4;
+            for (int h = 0; h < accountHoldings.size(); h++){
+                exactValues[h] = unscaledExact(accountHoldings.get(h));
+                length += 13 + (exactValues[h] != null ? 9 : 0);
+            }
+            out.ensure(4);
+            out.buffer.putInt(length);
+            out.putBytes(name);
+            out.ensure(4);
+            out.buffer.putInt(accountHoldings.size());
+            for (int h = 0; h < accountHoldings.size(); h++){
+                Holding holding = accountHoldings.get(h);
+                Long unscaled = exactValues[h];
+                out.ensure(22);
+                out.buffer.putInt(assetIds.get(holding.getAsset())).putDouble(holding.getHolding());
+                if (unscaled == null){
+                    out.buffer.put((byte) 0);
+                } else {
+                    out.buffer.put((byte) 1).put((byte) holding.getExactHolding().scale()).putLong(unscaled);
+                }
+            }
+        }
+        out.ensure(4);
+        out.buffer.putInt(pending.size());
+        for (Transaction t : pending){
+            out.putBytes(t.getAccount().getBytes(StandardCharsets.UTF_8));
+            out.ensure(25);
+            out.buffer.putLong(t.getDate().toEpochDay()).put((byte) t.getTxnType().ordinal()).putDouble(t.getUnits())
+                    .putDouble(t.getPrice());
+            out.putBytes(t.getAsset().getBytes(StandardCharsets.UTF_8));
+        }
+        out.finish();
+    }
+
+    /**
+     * @return Long unscaled exact value if holding has one that fits a long and a byte scale, null otherwise
+     */
+
+    private static Long unscaledExact(Holding holding){
+        BigDecimal exact = holding.getExactHolding();
+        if (exact == null || exact.scale() != (byte) exact.scale() || exact.unscaledValue().bitLength() > 63){
+            return null;
+        }
+        return exact.unscaledValue().longValue();
+    }
+
+    /**
+     * Reads snapshot from file
+     *
+     * @param path Path file written by write
+     * @return HoldingSnapshot snapshot read
+     * @throws IOException if file cannot be read or is not a valid snapshot
+     */
+
+    public static HoldingSnapshot read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            return read(channel);
+        }
+    }
+
+    /**
+     * Reads snapshot from channel, verifying its checksum. Counts, lengths and ids are checked as they are read, and
+     * every account record against its length prefix, so a corrupt snapshot fails with an IOException before its
+     * checksum is reached instead of with a runtime exception or an allocation it cannot satisfy
+     *
+     * @param channel ReadableByteChannel channel positioned at the start of a snapshot, left open
+     * @return HoldingSnapshot snapshot read
+     * @throws IOException if channel cannot be read or does not hold a valid snapshot
+     */
+
+    public static HoldingSnapshot read(ReadableByteChannel channel) throws IOException {
+        Input in = new Input(channel);
+        in.require(16);
+        if (in.buffer.getInt() != MAGIC){
+            throw new IOException("Error: not a holdings snapshot");
+        }
+        int version = in.buffer.getInt();
+        if (version != 1 && version != VERSION){
+            throw new IOException("Error: unsupported holdings snapshot version [" + version + "]");
+        }
+        long epochDay = in.buffer.getLong();
+        int assetCount = in.getCount();
+        //collections grow as entries are read, a corrupt count cannot make them allocate up front
+        List<String> assets = new ArrayList<>(Math.min(assetCount, 1024));
+        for (int i = 0; i < assetCount; i++){
+            assets.add(in.getString());
+        }
+        int accounts = in.getCount();
+        Map<String, List<Holding>> holdings = new HashMap<>(Math.min(accounts, 1024) * 2);
+        for (int a = 0; a < accounts; a++){
+            in.require(4);
+            int length = in.buffer.getInt();
+            long start = in.offset();
+            String account = in.getString();
+            int count = in.getCount();
+            if (length < 8 || count > (length - 8) / 13){
+                throw new IOException("Error: holdings snapshot record of [" + account + "] corrupt");
+            }
+            List<Holding> accountHoldings = new ArrayList<>(count);
+            for (int h = 0; h < count; h++){
+                in.require(13);
+                int assetId = in.buffer.getInt();
+                if (assetId < 0 || assetId >= assets.size()){
+                    throw new IOException("Error: holdings snapshot asset id [" + assetId + "] out of range");
+                }
+                Holding holding = new Holding();
+                holding.setAsset(assets.get(assetId));
+                holding.setHoldings(in.buffer.getDouble());
+                byte exact = in.buffer.get();
+                if (exact == 1){
+                    in.require(9);
+                    int scale = in.buffer.get();
+                    holding.setExactHolding(new BigDecimal(BigInteger.valueOf(in.buffer.getLong()), scale));
+                } else if (exact != 0){
+                    throw new IOException("Error: holdings snapshot record of [" + account + "] corrupt");
+                }
+                accountHoldings.add(holding);
+            }
+            if (in.offset() - start != length){
+                throw new IOException("Error: holdings snapshot record of [" + account + "] does not match its length");
+            }
+            holdings.put(account, accountHoldings);
+        }
+        List<Transaction> pending = new ArrayList<>();
+        if (version >= 2){
+            int count = in.getCount();
+            for (int i = 0; i < count; i++){
+                String account = in.getString();
+                in.require(25);
+                long day = in.buffer.getLong();
+                int txnType = in.buffer.get();
+                if (day < LocalDate.MIN.toEpochDay() || day > LocalDate.MAX.toEpochDay() || txnType < 0 ||
+                        txnType >= TXN_TYPES.length){
+                    throw new IOException("Error: holdings snapshot pending transaction of [" + account + "] corrupt");
+                }
+                LocalDate date = LocalDate.ofEpochDay(day);
+                double units = in.buffer.getDouble();
+                double price = in.buffer.getDouble();
+                pending.add(new Transaction(account, date, TXN_TYPES[txnType], units, price, in.getString()));
+            }
+        }
+        long expected = in.checksum();
+        in.require(8);
+        if (in.buffer.getLong() != expected){
+            throw new IOException("Error: holdings snapshot checksum mismatch");
+        }
+        return new HoldingSnapshot(holdings, epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay), pending);
+    }
+
+    /**
+     * Buffered channel output computing the CRC32 of everything written
+     */
+
+    private static class Output {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CRC32 crc = new CRC32();
+
+        Output(WritableByteChannel channel){
+            this.channel = channel;
+        }
+
+        void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes){
+                flush();
+            }
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            ensure(4);
+            buffer.putInt(bytes.length);
+            int offset = 0;
+            while (offset < bytes.length){
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        void finish() throws IOException {
+            ensure(8);
+            long checksum = checksumOfBuffered();
+            buffer.putLong(checksum);
+            buffer.flip();
+            drain();
+        }
+
+        private long checksumOfBuffered(){
+            ByteBuffer pending = buffer.duplicate();
+            pending.flip();
+            crc.update(pending);
+            return crc.getValue();
+        }
+
+        private void flush() throws IOException {
+            checksumOfBuffered();
+            buffer.flip();
+            drain();
+        }
+
+        private void drain() throws IOException {
+            while (buffer.hasRemaining()){
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Buffered channel input computing the CRC32 of everything consumed
+     */
+
+    private static class Input {
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CRC32 crc = new CRC32();
+        //start of the bytes in buffer not yet added to crc
+        private int unchecked;
+        //number of bytes consumed before those in buffer
+        private long consumed;
+
+        Input(ReadableByteChannel channel){
+            this.channel = channel;
+            buffer.limit(0);
+        }
+
+        void require(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes){
+                return;
+            }
+            update();
+            consumed += buffer.position();
+            buffer.compact();
+            unchecked = 0;
+            while (buffer.position() < bytes){
+                if (channel.read(buffer) < 0){
+                    throw new IOException("Error: holdings snapshot truncated");
+                }
+            }
+            buffer.flip();
+        }
+
+        /**
+         * @return long number of bytes consumed from the start of the snapshot
+         */
+
+        long offset(){
+            return consumed + buffer.position();
+        }
+
+        int getCount() throws IOException {
+            require(4);
+            int count = buffer.getInt();
+            if (count < 0){
+                throw new IOException("Error: holdings snapshot count [" + count + "] negative");
+            }
+            return count;
+        }
+
+        /**
+         * Reads a length prefixed string; the bytes are collected as they arrive, so a corrupt length ends in a
+         * truncated snapshot rather than a huge allocation
+         */
+
+        String getString() throws IOException {
+            int length = getCount();
+            byte[] bytes = new byte[Math.min(length, BUFFER_SIZE)];
+            int offset = 0;
+            while (offset < length){
+                require(1);
+                if (offset == bytes.length){
+                    bytes = Arrays.copyOf(bytes, (int) Math.min(length, bytes.length * 2L));
+                }
+                int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.get(bytes, offset, chunk);
+                offset += chunk;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        long checksum(){
+            update();
+            return crc.getValue();
+        }
+
+        private void update(){
+            ByteBuffer consumed = buffer.duplicate();
+            consumed.limit(buffer.position()).position(unchecked);
+            crc.update(consumed);
+            unchecked = buffer.position();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.transactions;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * End of day holdings of every account over its whole history, as built by ReplayHoldingCalculator. Each account has
+ * one series per asset it ever held and one for CASH. A series only records the days its value changed, as the epoch
+ * day and the new value; the value holds until the next change, so a value at a date is found by binary search. All
+ * series share two primitive arrays, each series being one contiguous range. A change may also record that the asset
+ * stopped being held, which is kept as a flag apart from the value: a position brought back to 0.0 without being
+ * removed, as after an oversell, is still held with 0.0, as calculateHoldings reports it
+ */
+
+public class HoldingTimeSeries {
+    private final Map<String, Map<String, Integer>> series;
+    private final int[] seriesStart;
+    private final int[] seriesLength;
+    private final int[] days;
+    private final double[] values;
+    private final BitSet notHeld;
+
+    private HoldingTimeSeries(Map<String, Map<String, Integer>> series, int[] seriesStart, int[] seriesLength,
+                              int[] days, double[] values, BitSet notHeld){
+        this.series = series;
+        this.seriesStart = seriesStart;
+        this.seriesLength = seriesLength;
+        this.days = days;
+        this.values = values;
+        this.notHeld = notHeld;
+    }
+
+    public Set<String> getAccounts(){
+        return Collections.unmodifiableSet(series.keySet());
+    }
+
+    /**
+     * @param account String account name
+     * @return Set<String> assets the account held at some point, including CASH, empty for an unknown account
+     */
+
+    public Set<String> getAssets(String account){
+        Map<String, Integer> assets = series.get(account);
+        return assets == null ? Collections.<String>emptySet() : Collections.unmodifiableSet(assets.keySet());
+    }
+
+    /**
+     * @return int number of changes recorded over all series
+     */
+
+    public int getChangeCount(){
+        return values.length;
+    }
+
+    /**
+     * @param account String account name
+     * @param asset String asset name, CASH for the cash balance
+     * @param date LocalDate day to look up
+     * @return double units of asset, or cash, held by account at the end of date; 0 if not held
+     */
+
+    public double valueAt(String account, String asset, LocalDate date){
+        int id = seriesId(account, asset);
+        if (id < 0){
+            return 0;
+        }
+        int change = lastChange(id, date.toEpochDay());
+        return change < 0 || notHeld.get(change) ? 0 : values[change];
+    }
+
+    /**
+     * Returns end of day values of one series for every day from from to to, both included
+     *
+     * @param account String account name
+     * @param asset String asset name, CASH for the cash balance
+     * @param from LocalDate first day
+     * @param to LocalDate last day
+     * @return double[] one value per day, 0 on days the asset was not held
+     */
+
+    public double[] daily(String account, String asset, LocalDate from, LocalDate to){
+        long first = from.toEpochDay();
+        long last = to.toEpochDay();
+        if (last < first){
+            throw new IllegalArgumentException("Error: date range [" + from + ", " + to + "] is empty");
+        }
+        double[] daily = new double[Math.toIntExact(last - first + 1)];
+        int id = seriesId(account, asset);
+        if (id < 0){
+            return daily;
+        }
+        int change = lastChange(id, first);
+        double value = change < 0 || notHeld.get(change) ? 0 : values[change];
+        int end = seriesStart[id] + seriesLength[id];
+        change = change < 0 ? seriesStart[id] : change + 1;
+        for (int d = 0; d < daily.length; d++){
+            //applies every change up to the end of this day
+            while (change < end && days[change] <= first + d){
+                value = notHeld.get(change) ? 0 : values[change];
+                change++;
+            }
+            daily[d] = value;
+        }
+        return daily;
+    }
+
+    /**
+     * Returns holdings of every account at the end of date, in the form calculateHoldings returns them
+     *
+     * @param date LocalDate day to look up
+     * @return Map<String, List<Holding>> records holdings (value) for accounts (key)
+     */
+
+    public Map<String, List<Holding>> holdingsAt(LocalDate date){
+        long day = date.toEpochDay();
+        Map<String, List<Holding>> holdings = new HashMap<>(series.size() * 2);
+        for (Map.Entry<String, Map<String, Integer>> account : series.entrySet()){
+            List<Holding> accountHoldings = new ArrayList<>();
+            double cash = 0;
+            for (Map.Entry<String, Integer> asset : account.getValue().entrySet()){
+                int change = lastChange(asset.getValue(), day);
+                if (change < 0 || notHeld.get(change)){
+                    continue;
+                }
+                if (asset.getKey().equals("CASH")){
+                    cash = values[change];
+                } else {
+                    accountHoldings.add(holding(asset.getKey(), values[change]));
+                }
+            }
+            accountHoldings.add(holding("CASH", cash));
+            holdings.put(account.getKey(), accountHoldings);
+        }
+        return holdings;
+    }
+
+    private int seriesId(String account, String asset){
+        Map<String, Integer> assets = series.get(account);
+        Integer id = assets == null ? null : assets.get(asset);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Index of the last change of series on or before day, -1 if the series starts after day
+     */
+
+    private int lastChange(int id, long day){
+        int low = seriesStart[id];
+        int high = low + seriesLength[id] - 1;
+        int found = -1;
+        while (low <= high){
+            int middle = (low + high) >>> 1;
+            if (days[middle] <= day){
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    private static Holding holding(String asset, double value){
+        Holding holding = new Holding();
+        holding.setAsset(asset);
+        holding.setHoldings(value);
+        return holding;
+    }
+
+    /**
+     * Collects changes one account at a time; all changes of an account are recorded before the next account starts,
+     * in increasing day order per series
+     */
+
+    static class Builder {
+        private final Map<String, Map<String, Integer>> series = new LinkedHashMap<>();
+        private int[] seriesStart = new int[64];
+        private int[] seriesLength = new int[64];
+        private int seriesCount;
+        //changes of the account being built, per series, moved to the shared arrays when the account ends
+        private final List<int[]> accountDays = new ArrayList<>();
+        private final List<double[]> accountValues = new ArrayList<>();
+        private final List<BitSet> accountNotHeld = new ArrayList<>();
+        private final List<Integer> accountLengths = new ArrayList<>();
+        private int accountFirstSeries;
+        private Map<String, Integer> accountSeries;
+        private int[] days = new int[1024];
+        private double[] values = new double[1024];
+        private final BitSet notHeld = new BitSet();
+        private int size;
+
+        void startAccount(String account){
+            if (series.containsKey(account)){
+                throw new IllegalStateException("Error: account [" + account + "] already recorded");
+            }
+            accountSeries = new LinkedHashMap<>();
+            series.put(account, accountSeries);
+            accountFirstSeries = seriesCount;
+        }
+
+        /**
+         * Records value of asset, held, at the end of day, if it differs from the last change recorded for it
+         */
+
+        void record(String asset, long day, double value){
+            record(asset, day, value, false);
+        }
+
+        /**
+         * Records that asset is no longer held at the end of day, unless it was not held already
+         */
+
+        void recordNotHeld(String asset, long day){
+            record(asset, day, 0.0, true);
+        }
+
+        private void record(String asset, long day, double value, boolean removed){
+            Integer id = accountSeries.get(asset);
+            if (id == null){
+                //cash reads 0 before its first change, an asset reads as not held
+                if (removed || asset.equals("CASH") && Double.doubleToRawLongBits(value) == 0L){
+                    return;
+                }
+                id = newSeries();
+                accountSeries.put(asset, id);
+            }
+            int local = id - accountFirstSeries;
+            int length = accountLengths.get(local);
+            double[] seriesValues = accountValues.get(local);
+            BitSet seriesNotHeld = accountNotHeld.get(local);
+            if (length > 0 && seriesNotHeld.get(length - 1) == removed &&
+                    Double.doubleToRawLongBits(seriesValues[length - 1]) == Double.doubleToRawLongBits(value)){
+                return;
+            }
+            int[] seriesDays = accountDays.get(local);
+            if (length == seriesDays.length){
+                seriesDays = Arrays.copyOf(seriesDays, length * 2);
+                seriesValues = Arrays.copyOf(seriesValues, length * 2);
+                accountDays.set(local, seriesDays);
+                accountValues.set(local, seriesValues);
+            }
+            seriesDays[length] = Math.toIntExact(day);
+            seriesValues[length] = value;
+            seriesNotHeld.set(length, removed);
+            accountLengths.set(local, length + 1);
+        }
+
+        void endAccount(){
+            for (int local = 0; local < accountLengths.size(); local++){
+                int id = accountFirstSeries + local;
+                int length = accountLengths.get(local);
+                ensure(size + length);
+                System.arraycopy(accountDays.get(local), 0, days, size, length);
+                System.arraycopy(accountValues.get(local), 0, values, size, length);
+                BitSet seriesNotHeld = accountNotHeld.get(local);
+                for (int i = seriesNotHeld.nextSetBit(0); i >= 0; i = seriesNotHeld.nextSetBit(i + 1)){
+                    notHeld.set(size + i);
+                }
+                seriesStart[id] = size;
+                seriesLength[id] = length;
+                size += length;
+            }
+            accountDays.clear();
+            accountValues.clear();
+            accountNotHeld.clear();
+            accountLengths.clear();
+        }
+
+        HoldingTimeSeries build(){
+            return new HoldingTimeSeries(series, Arrays.copyOf(seriesStart, seriesCount),
+                    Arrays.copyOf(seriesLength, seriesCount), Arrays.copyOf(days, size), Arrays.copyOf(values, size),
+                    (BitSet) notHeld.clone());
+        }
+
+        private int newSeries(){
+            if (seriesCount == seriesStart.length){
+                int capacity = seriesCount * 2;
+                seriesStart = Arrays.copyOf(seriesStart, capacity);
+                seriesLength = Arrays.copyOf(seriesLength, capacity);
+            }
+            accountDays.add(new int[4]);
+            accountValues.add(new double[4]);
+            accountNotHeld.add(new BitSet());
+            accountLengths.add(0);
+            return seriesCount++;
+        }
+
+        private void ensure(int capacity){
+            if (capacity > days.length){
+                int grown = Math.max(capacity, days.length * 2);
+                days = Arrays.copyOf(days, grown);
+                values = Arrays.copyOf(values, grown);
+            }
+        }
+    }
+}
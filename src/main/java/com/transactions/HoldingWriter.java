@@ -0,0 +1,568 @@
+package com.transactions;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes holdings in a HoldingFormat to an OutputStream or a file through one large buffer, a direct one for files.
+ * Holdings are written the way Double.toString writes them, but values with at most four decimal places, which is all
+ * values holdings are rounded to, are formatted straight into the buffer without creating Strings; ASCII names are
+ * copied the same way. The BINARY format holds accounts in groups of up to 4096, each laid out in columns, numbers big
+ * endian:
+ * <pre>
+ * header   magic "HLDC", int version
+ * group    int account count, per account: int byte length, UTF-8 name; int holding count per account;
+ *          int asset count, per asset: int byte length, UTF-8 name; int asset index per holding;
+ *          double holding per holding
+ * end      int 0
+ * </pre>
+ * Not thread safe
+ */
+
+public class HoldingWriter implements Closeable {
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+    private static final int MAGIC = 0x484C4443;
+    private static final int VERSION = 1;
+    private static final int GROUP_SIZE = 4096;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    //Double.toString writes values between these bounds without exponent
+    private static final double PLAIN_MIN = 1e-3;
+    private static final double PLAIN_MAX = 1e7;
+
+    private final HoldingFormat format;
+    private final OutputStream out;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final byte[] digits = new byte[20];
+    private final List<String> groupAccounts = new ArrayList<>();
+    private final List<List<Holding>> groupHoldings = new ArrayList<>();
+    private boolean started;
+
+    public HoldingWriter(OutputStream out, HoldingFormat format){
+        this(out, format, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param out OutputStream stream to write to, closed by close
+     * @param format HoldingFormat format to write
+     * @param bufferSize int number of bytes buffered before writing to out
+     */
+
+    public HoldingWriter(OutputStream out, HoldingFormat format, int bufferSize){
+        this(out, null, format, ByteBuffer.allocate(bufferSize));
+    }
+
+    /**
+     * @param path Path file to write to, replaced if it exists
+     * @param format HoldingFormat format to write
+     * @throws IOException
+     */
+
+    public HoldingWriter(Path path, HoldingFormat format) throws IOException {
+        this(null, FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING), format, ByteBuffer.allocateDirect(DEFAULT_BUFFER_SIZE));
+    }
+
+    private HoldingWriter(OutputStream out, FileChannel channel, HoldingFormat format, ByteBuffer buffer){
+        if (buffer.capacity() < 64){
+            throw new IllegalArgumentException("Error: buffer size expected to be at least 64, actual [" +
+                    buffer.capacity() + "]");
+        }
+        this.out = out;
+        this.channel = channel;
+        this.format = format;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Writes holdings of every account in holdings, in the map's iteration order
+     *
+     * @param holdings Map<String, List<Holding>> records holdings (value) for accounts (key)
+     * @throws IOException
+     */
+
+    public void write(Map<String, List<Holding>> holdings) throws IOException {
+        for (Map.Entry<String, List<Holding>> entry : holdings.entrySet()){
+            write(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Writes holdings of one account
+     *
+     * @param account String account name
+     * @param holdings List<Holding> holdings of the account
+     * @throws IOException
+     */
+
+    public void write(String account, List<Holding> holdings) throws IOException {
+        start();
+        switch (format){
+            case TEXT:
+                putText(account);
+                putByte('\n');
+                for (Holding holding : holdings){
+                    putText(holding.getAsset());
+                    putByte('\t');
+                    putDecimal(holding.getHolding());
+                    putByte('\n');
+                }
+                putByte('\n');
+                break;
+            case TSV:
+            case CSV:
+                byte separator = (byte) (format == HoldingFormat.TSV ? '\t' : ',');
+                for (Holding holding : holdings){
+                    putField(account);
+                    putByte(separator);
+                    putField(holding.getAsset());
+                    putByte(separator);
+                    putDecimal(holding.getHolding());
+                    putByte('\n');
+                }
+                break;
+            case JSONL:
+                putAscii("{\"account\":");
+                putJsonString(account);
+                putAscii(",\"holdings\":[");
+                for (int i = 0; i < holdings.size(); i++){
+                    if (i > 0){
+                        putByte(',');
+                    }
+                    putAscii("{\"asset\":");
+                    putJsonString(holdings.get(i).getAsset());
+                    putAscii(",\"holding\":");
+                    double value = holdings.get(i).getHolding();
+                    if (Double.isNaN(value) || Double.isInfinite(value)){
+                        putAscii("null");
+                    } else {
+                        putDecimal(value);
+                    }
+                    putByte('}');
+                }
+                putAscii("]}\n");
+                break;
+            default:
+                groupAccounts.add(account);
+                groupHoldings.add(holdings);
+                if (groupAccounts.size() == GROUP_SIZE){
+                    writeGroup();
+                }
+        }
+    }
+
+    /**
+     * Writes everything buffered, including an incomplete BINARY group
+     *
+     * @throws IOException
+     */
+
+    public void flush() throws IOException {
+        if (format == HoldingFormat.BINARY && !groupAccounts.isEmpty()){
+            writeGroup();
+        }
+        drain();
+        if (out != null){
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            start();
+            if (format == HoldingFormat.BINARY){
+                if (!groupAccounts.isEmpty()){
+                    writeGroup();
+                }
+                putInt(0);
+            }
+            drain();
+        } finally {
+            if (channel != null){
+                channel.close();
+            } else {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Writes holdings to one file
+     *
+     * @param holdings Map<String, List<Holding>> records holdings (value) for accounts (key)
+     * @param path Path file to write to
+     * @param format HoldingFormat format to write
+     * @throws IOException
+     */
+
+    public static void write(Map<String, List<Holding>> holdings, Path path, HoldingFormat format) throws IOException {
+        try (HoldingWriter writer = new HoldingWriter(path, format)){
+            writer.write(holdings);
+        }
+    }
+
+    /**
+     * Writes holdings to part files part-00000.ext, part-00001.ext... in directory, each holding a range of accounts in
+     * name order, written on up to threads threads at the same time
+     *
+     * @param holdings Map<String, List<Holding>> records holdings (value) for accounts (key)
+     * @param directory Path directory to write part files to, created if missing
+     * @param format HoldingFormat format to write
+     * @param parts int number of part files, fewer if there are fewer accounts
+     * @param threads int number of part files written at the same time
+     * @return List<Path> part files written, in account order
+     * @throws IOException
+     */
+
+    public static List<Path> writePartitioned(Map<String, List<Holding>> holdings, Path directory, HoldingFormat format,
+                                              int parts, int threads) throws IOException {
+        if (parts < 1 || threads < 1){
+            throw new IllegalArgumentException("Error: parts and threads expected to be positive");
+        }
+        Files.createDirectories(directory);
+        String[] accounts = holdings.keySet().toArray(new String[0]);
+        Arrays.sort(accounts);
+        int partCount = Math.max(1, Math.min(parts, accounts.length));
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, partCount));
+        try {
+            List<Path> paths = new ArrayList<>();
+            List<Future<Path>> written = new ArrayList<>();
+            for (int part = 0; part < partCount; part++){
+                int from = (int) ((long) accounts.length * part / partCount);
+                int to = (int) ((long) accounts.length * (part + 1) / partCount);
+                Path path = directory.resolve(String.format("part-%05d.%s", part, format.getExtension()));
+                written.add(executor.submit(() -> {
+                    try (HoldingWriter writer = new HoldingWriter(path, format)){
+                        for (int i = from; i < to; i++){
+                            writer.write(accounts[i], holdings.get(accounts[i]));
+                        }
+                    }
+                    return path;
+                }));
+            }
+            for (Future<Path> path : written){
+                paths.add(path.get());
+            }
+            return paths;
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IOException("Error: interrupted while writing holdings", e);
+        } catch (ExecutionException e){
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() :
+                    new IOException("Error: cannot write holdings", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads holdings written in BINARY format
+     *
+     * @param in InputStream stream to read from
+     * @return Map<String, List<Holding>> records holdings (value) for accounts (key), in written order
+     * @throws IOException if stream is not in BINARY format or is truncated
+     */
+
+    public static Map<String, List<Holding>> readBinary(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        try {
+            if (data.readInt() != MAGIC){
+                throw new IOException("Error: not a binary holdings file");
+            }
+            int version = data.readInt();
+            if (version != VERSION){
+                throw new IOException("Error: unsupported binary holdings version [" + version + "]");
+            }
+            Map<String, List<Holding>> holdings = new LinkedHashMap<>();
+            int accountCount;
+            while ((accountCount = data.readInt()) > 0){
+                String[] accounts = new String[accountCount];
+                for (int i = 0; i < accountCount; i++){
+                    accounts[i] = readString(data);
+                }
+                int[] holdingCounts = new int[accountCount];
+                int rows = 0;
+                for (int i = 0; i < accountCount; i++){
+                    holdingCounts[i] = data.readInt();
+                    rows += holdingCounts[i];
+                }
+                String[] assets = new String[data.readInt()];
+                for (int i = 0; i < assets.length; i++){
+                    assets[i] = readString(data);
+                }
+                int[] assetIndexes = new int[rows];
+                for (int i = 0; i < rows; i++){
+                    assetIndexes[i] = data.readInt();
+                }
+                int row = 0;
+                for (int i = 0; i < accountCount; i++){
+                    List<Holding> accountHoldings = new ArrayList<>(holdingCounts[i]);
+                    for (int j = 0; j < holdingCounts[i]; j++){
+                        Holding holding = new Holding();
+                        holding.setAsset(assets[assetIndexes[row++]]);
+                        accountHoldings.add(holding);
+                    }
+                    holdings.put(accounts[i], accountHoldings);
+                }
+                for (int i = 0; i < accountCount; i++){
+                    for (Holding holding : holdings.get(accounts[i])){
+                        holding.setHoldings(data.readDouble());
+                    }
+                }
+            }
+            return holdings;
+        } catch (EOFException | ArrayIndexOutOfBoundsException | NegativeArraySizeException e){
+            throw new IOException("Error: truncated or corrupt binary holdings file", e);
+        }
+    }
+
+    private static String readString(DataInputStream data) throws IOException {
+        byte[] bytes = new byte[data.readInt()];
+        data.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void start() throws IOException {
+        if (started){
+            return;
+        }
+        started = true;
+        switch (format){
+            case TSV:
+                putAscii("Account\tAsset\tHolding\n");
+                break;
+            case CSV:
+                putAscii("Account,Asset,Holding\n");
+                break;
+            case BINARY:
+                putInt(MAGIC);
+                putInt(VERSION);
+                break;
+            default:
+        }
+    }
+
+    private void writeGroup() throws IOException {
+        putInt(groupAccounts.size());
+        for (String account : groupAccounts){
+            putLengthPrefixed(account);
+        }
+        Map<String, Integer> assetIndexes = new HashMap<>();
+        List<String> assets = new ArrayList<>();
+        for (List<Holding> holdings : groupHoldings){
+            putInt(holdings.size());
+            for (Holding holding : holdings){
+                if (!assetIndexes.containsKey(holding.getAsset())){
+                    assetIndexes.put(holding.getAsset(), assets.size());
+                    assets.add(holding.getAsset());
+                }
+            }
+        }
+        putInt(assets.size());
+        for (String asset : assets){
+            putLengthPrefixed(asset);
+        }
+        for (List<Holding> holdings : groupHoldings){
+            for (Holding holding : holdings){
+                putInt(assetIndexes.get(holding.getAsset()));
+            }
+        }
+        for (List<Holding> holdings : groupHoldings){
+            for (Holding holding : holdings){
+                ensure(8);
+                buffer.putDouble(holding.getHolding());
+            }
+        }
+        groupAccounts.clear();
+        groupHoldings.clear();
+    }
+
+    /**
+     * Writes value as Double.toString does; values with at most four decimal places between 10^-3 and 10^7, where
+     * Double.toString does not use an exponent, are written digit by digit
+     */
+
+    private void putDecimal(double value) throws IOException {
+        double magnitude = Math.abs(value);
+        if (magnitude >= PLAIN_MIN && magnitude < PLAIN_MAX){
+            long scaled = Math.round(value * FixedPoint.ONE);
+            if (scaled / (double) FixedPoint.ONE == value){
+                if (scaled < 0){
+                    putByte('-');
+                    scaled = -scaled;
+                }
+                putLong(scaled / FixedPoint.ONE);
+                putByte('.');
+                long fraction = scaled % FixedPoint.ONE;
+                int places = FixedPoint.SCALE;
+                while (places > 1 && fraction % 10 == 0){
+                    fraction /= 10;
+                    places--;
+                }
+                ensure(places);
+                for (int i = places - 1; i >= 0; i--){
+                    digits[i] = (byte) ('0' + fraction % 10);
+                    fraction /= 10;
+                }
+                buffer.put(digits, 0, places);
+                return;
+            }
+        }
+        if (value == 0){
+            putAscii(1 / value < 0 ? "-0.0" : "0.0");
+            return;
+        }
+        putAscii(Double.toString(value));
+    }
+
+    private void putLong(long value) throws IOException {
+        int position = digits.length;
+        do {
+            digits[--position] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        ensure(digits.length - position);
+        buffer.put(digits, position, digits.length - position);
+    }
+
+    /**
+     * Writes CSV field, quoted if needed; TSV fields are written as they are
+     */
+
+    private void putField(String text) throws IOException {
+        if (format == HoldingFormat.CSV && needsQuotes(text)){
+            putByte('"');
+            for (int i = 0; i < text.length(); i++){
+                if (text.charAt(i) == '"'){
+                    putByte('"');
+                }
+                putChar(text, i);
+            }
+            putByte('"');
+            return;
+        }
+        putText(text);
+    }
+
+    private static boolean needsQuotes(String text){
+        for (int i = 0; i < text.length(); i++){
+            char c = text.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r'){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void putJsonString(String text) throws IOException {
+        putByte('"');
+        for (int i = 0; i < text.length(); i++){
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\'){
+                putByte('\\');
+                putByte(c);
+            } else if (c < ' '){
+                ensure(6);
+                buffer.put((byte) '\\').put((byte) 'u').put((byte) '0').put((byte) '0')
+                        .put(HEX[c >> 4]).put(HEX[c & 0xf]);
+            } else {
+                putChar(text, i);
+            }
+        }
+        putByte('"');
+    }
+
+    private void putText(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++){
+            putChar(text, i);
+        }
+    }
+
+    /**
+     * Writes character at index as UTF-8; a surrogate pair is written when its low surrogate is reached
+     */
+
+    private void putChar(String text, int index) throws IOException {
+        char c = text.charAt(index);
+        if (c < 0x80){
+            putByte(c);
+        } else if (Character.isHighSurrogate(c) && index + 1 < text.length() &&
+                Character.isLowSurrogate(text.charAt(index + 1))){
+            //written with its low surrogate
+        } else {
+            int start = Character.isLowSurrogate(c) && index > 0 && Character.isHighSurrogate(text.charAt(index - 1)) ?
+                    index - 1 : index;
+            byte[] bytes = text.substring(start, index + 1).getBytes(StandardCharsets.UTF_8);
+            ensure(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private void putLengthPrefixed(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        int offset = 0;
+        while (offset < bytes.length){
+            ensure(1);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private void putAscii(String text) throws IOException {
+        ensure(text.length());
+        for (int i = 0; i < text.length(); i++){
+            buffer.put((byte) text.charAt(i));
+        }
+    }
+
+    private void putInt(int value) throws IOException {
+        ensure(4);
+        buffer.putInt(value);
+    }
+
+    private void putByte(int value) throws IOException {
+        ensure(1);
+        buffer.put((byte) value);
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes){
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        if (channel != null){
+            while (buffer.hasRemaining()){
+                channel.write(buffer);
+            }
+        } else {
+            out.write(buffer.array(), buffer.arrayOffset(), buffer.limit());
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,239 @@
+package com.transactions;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps holdings and cash of every account between runs and applies batches of new transactions on top of them, so
+ * that a daily run costs time proportional to the new transactions instead of replaying the whole history. Starts
+ * either empty or from a snapshot of holdings (as returned by calculateHoldings, CASH holding included) with the date
+ * it was calculated for. Delta files are expected to contain only transactions not yet reflected in the holdings and
+ * may be applied one after another; accounts in a delta file do not need to be grouped. Transactions dated after the
+ * date a delta file is applied up to are kept pending, and checkpointed, until a later apply reaches their date. A
+ * delta file is read completely before any of it is applied, so a failed apply changes nothing and may be retried.
+ * <p>
+ * Holdings, and so snapshots and checkpoints, show a units position in an asset named CASH as the cash balance, as
+ * calculateHoldings does; a calculator started from them no longer knows such a position was held, so a later SLD or
+ * DIV of asset CASH is ignored where a full replay would apply it. Not thread safe
+ */
+
+public class IncrementalHoldingCalculator {
+    private final HoldingCalculatorImpl calculator = new HoldingCalculatorImpl();
+    private final SymbolTable symbols = new SymbolTable();
+    private final Map<String, AccountState> accounts = new HashMap<>();
+    private List<Transaction> pending = new ArrayList<>();
+    private LocalDate asOf;
+
+    /**
+     * Creates calculator without any holdings
+     *
+     * @param asOf LocalDate date holdings are valid for, null if nothing has been applied yet
+     */
+
+    public IncrementalHoldingCalculator(LocalDate asOf){
+        this.asOf = asOf;
+    }
+
+    /**
+     * Creates calculator starting from a snapshot of holdings; the snapshot is copied, not modified
+     *
+     * @param holdings Map<String, List<Holding>> holdings (value) for accounts (key), including CASH holding
+     * @param asOf LocalDate date holdings were calculated for
+     */
+
+    public IncrementalHoldingCalculator(Map<String, List<Holding>> holdings, LocalDate asOf){
+        this(asOf);
+        for (Map.Entry<String, List<Holding>> account : holdings.entrySet()){
+            AccountState state = new AccountState();
+            for (Holding holding : account.getValue()){
+                if (holding.getAsset().equals("CASH")){
+                    state.cash = holding.getHolding();
+                } else {
+                    state.holdingMap.put(holding.getAsset(), copy(holding.getAsset(), holding.getHolding()));
+                }
+            }
+            accounts.put(symbols.intern(account.getKey()), state);
+        }
+    }
+
+    /**
+     * Applies pending transactions up to the date given as parameter, then every transaction in delta file up to that
+     * date, keeping later ones pending, and moves the as-of date to it
+     *
+     * @param deltaFile File file containing new transactions
+     * @param date LocalDate date up to which to apply transactions, not before current as-of date
+     * @return int number of accounts touched, by the delta file or by pending transactions
+     */
+
+    public int apply(File deltaFile, LocalDate date){
+        if (asOf != null && date.isBefore(asOf)){
+            throw new HoldingCalculationException("Error: cannot move holdings back from [" + asOf + "] to [" + date + "]");
+        }
+        //read before anything is applied, so that a file failing halfway leaves holdings as they were
+        List<Transaction> delta = new ArrayList<>();
+        try {
+            new MappedTransactionReader(symbols).read(deltaFile, delta::add);
+        } catch (IOException e){
+            throw new HoldingCalculationException("Error: cannot read transaction file [" + deltaFile.getName() +
+                    "], terminating", e);
+        }
+        Map<String, AccountState> touched = new HashMap<>();
+        List<Transaction> stillPending = new ArrayList<>();
+        for (Transaction t : pending){
+            if (t.getDate().isAfter(date)){
+                stillPending.add(t);
+            } else {
+                apply(touched, t, date);
+            }
+        }
+        for (Transaction t : delta){
+            if (t.getDate().isAfter(date)){
+                stillPending.add(t);
+            } else {
+                apply(touched, t, date);
+            }
+        }
+        pending = stillPending;
+        asOf = date;
+        return touched.size();
+    }
+
+    /**
+     * Applies several delta files in the order given, all up to the same date
+     *
+     * @param deltaFiles List<File> files containing new transactions, oldest first
+     * @param date LocalDate date up to which to apply transactions
+     */
+
+    public void applyAll(List<File> deltaFiles, LocalDate date){
+        for (File deltaFile : deltaFiles){
+            apply(deltaFile, date);
+        }
+    }
+
+    private void apply(Map<String, AccountState> touched, Transaction t, LocalDate date){
+        AccountState state = touched.get(t.getAccount());
+        if (state == null){
+            state = accounts.get(t.getAccount());
+            if (state == null){
+                state = new AccountState();
+                accounts.put(t.getAccount(), state);
+            }
+            touched.put(t.getAccount(), state);
+        }
+        state.cash = calculator.applyTransaction(state.holdingMap, t, state.cash, date);
+    }
+
+    /**
+     * Saves current holdings and as-of date as a binary HoldingSnapshot, so that a restarted process can carry on from
+     * them with restore instead of replaying history
+     *
+     * @param path Path file to write checkpoint to, replaced atomically
+     */
+
+    public void checkpoint(Path path){
+        try {
+            new HoldingSnapshot(getHoldings(), asOf, pending).write(path);
+        } catch (IOException e){
+            throw new HoldingCalculationException("Error: cannot write checkpoint [" + path + "]: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Creates calculator from a checkpoint written by checkpoint; see the class comment for positions in an asset
+     * named CASH, which are not kept
+     *
+     * @param path Path checkpoint file
+     * @return IncrementalHoldingCalculator calculator holding checkpointed holdings and as-of date
+     */
+
+    public static IncrementalHoldingCalculator restore(Path path){
+        HoldingSnapshot snapshot;
+        try {
+            snapshot = HoldingSnapshot.read(path);
+        } catch (IOException e){
+            throw new HoldingCalculationException("Error: cannot read checkpoint [" + path + "]: " + e.getMessage(), e);
+        }
+        IncrementalHoldingCalculator calculator = new IncrementalHoldingCalculator(snapshot.getHoldings(),
+                snapshot.getAsOf());
+        for (Transaction t : snapshot.getPending()){
+            t.account = calculator.symbols.intern(t.account);
+            t.asset = calculator.symbols.intern(t.asset);
+            calculator.pending.add(t);
+        }
+        return calculator;
+    }
+
+    /**
+     * @return List<Transaction> transactions dated after the as-of date, in the order they were read
+     */
+
+    public List<Transaction> getPending(){
+        return Collections.unmodifiableList(pending);
+    }
+
+    /**
+     * @return LocalDate date current holdings are valid for
+     */
+
+    public LocalDate getAsOf(){
+        return asOf;
+    }
+
+    /**
+     * @param account String account name
+     * @return List<Holding> current holdings of account including CASH, null if account is unknown
+     */
+
+    public List<Holding> getHoldings(String account){
+        AccountState state = accounts.get(account);
+        return state == null ? null : state.toHoldingList();
+    }
+
+    /**
+     * @return Map<String, List<Holding>> current holdings (value) for all accounts (key); holdings are copies
+     */
+
+    public Map<String, List<Holding>> getHoldings(){
+        Map<String, List<Holding>> holdings = new HashMap<>();
+        for (Map.Entry<String, AccountState> account : accounts.entrySet()){
+            holdings.put(account.getKey(), account.getValue().toHoldingList());
+        }
+        return holdings;
+    }
+
+    private static Holding copy(String asset, double value){
+        Holding holding = new Holding();
+        holding.setAsset(asset);
+        holding.setHoldings(value);
+        return holding;
+    }
+
+    /**
+     * Holdings and cash of one account
+     */
+
+    private static class AccountState {
+        private final Map<String, Holding> holdingMap = new HashMap<>();
+        private double cash;
+
+        List<Holding> toHoldingList(){
+            List<Holding> holdings = new ArrayList<>(holdingMap.size() + 1);
+            for (Holding holding : holdingMap.values()){
+                //an asset named CASH is replaced by the cash balance, as in HoldingCalculatorImpl.toHoldingList
+                if (!holding.getAsset().equals("CASH")){
+                    holdings.add(copy(holding.getAsset(), holding.getHolding()));
+                }
+            }
+            holdings.add(copy("CASH", cash));
+            return holdings;
+        }
+    }
+}
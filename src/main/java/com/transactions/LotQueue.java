@@ -0,0 +1,135 @@
+package com.transactions;
+
+import java.util.Arrays;
+
+/**
+ * Open lots of one asset, as units and cost per unit in a ring buffer of two primitive arrays, so that lots are taken
+ * off either end without creating objects. Under AVERAGE all units are kept in a single lot. Units are doubles, so
+ * matching fractional lots leaves rounding errors far below the four places units are given in: a lot left with less
+ * than DUST units is closed, and a sale is fully matched if less than DUST units of it are left over. Not thread safe
+ */
+
+final class LotQueue {
+    //half of the smallest step of four decimal places
+    static final double DUST = 0.00005;
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final CostBasisMethod method;
+    private double[] units = new double[INITIAL_CAPACITY];
+    private double[] unitCosts = new double[INITIAL_CAPACITY];
+    private int head;
+    private int size;
+    private double totalUnits;
+    private double totalCost;
+    //set by sell: units that could be matched and their cost
+    private double matchedUnits;
+    private double matchedCost;
+
+    LotQueue(CostBasisMethod method){
+        this.method = method;
+    }
+
+    void buy(double amount, double unitCost){
+        totalUnits += amount;
+        totalCost += amount * unitCost;
+        if (method == CostBasisMethod.AVERAGE){
+            if (size == 0){
+                size = 1;
+                head = 0;
+            }
+            units[0] = totalUnits;
+            unitCosts[0] = totalCost / totalUnits;
+            return;
+        }
+        if (size == units.length){
+            grow();
+        }
+        int tail = (head + size) & (units.length - 1);
+        units[tail] = amount;
+        unitCosts[tail] = unitCost;
+        size++;
+    }
+
+    /**
+     * Takes up to amount units off the lots in the order of the method; afterwards getMatchedUnits and getMatchedCost
+     * tell how many units were taken and what they cost, fewer than amount if not enough units were held
+     *
+     * @param amount double units sold
+     */
+
+    void sell(double amount){
+        matchedUnits = 0;
+        matchedCost = 0;
+        double left = amount;
+        while (left >= DUST && size > 0){
+            int lot = method == CostBasisMethod.LIFO ? (head + size - 1) & (units.length - 1) : head;
+            double taken = Math.min(left, units[lot]);
+            matchedUnits += taken;
+            matchedCost += taken * unitCosts[lot];
+            units[lot] -= taken;
+            left -= taken;
+            if (units[lot] < DUST){
+                size--;
+                if (method != CostBasisMethod.LIFO){
+                    head = (head + 1) & (units.length - 1);
+                }
+            }
+        }
+        totalUnits = size == 0 ? 0 : totalUnits - matchedUnits;
+        totalCost = size == 0 ? 0 : totalCost - matchedCost;
+    }
+
+    /**
+     * @param amount double units sold by the last sell
+     * @return boolean true if more than DUST units of amount could not be matched
+     */
+
+    boolean isOversold(double amount){
+        return amount - matchedUnits >= DUST;
+    }
+
+    double getMatchedUnits(){
+        return matchedUnits;
+    }
+
+    double getMatchedCost(){
+        return matchedCost;
+    }
+
+    double getUnits(){
+        return totalUnits;
+    }
+
+    double getCost(){
+        return totalCost;
+    }
+
+    /**
+     * @return int number of open lots
+     */
+
+    int size(){
+        return size;
+    }
+
+    private void grow(){
+        double[] grownUnits = new double[units.length * 2];
+        double[] grownCosts = new double[units.length * 2];
+        for (int i = 0; i < size; i++){
+            grownUnits[i] = units[(head + i) & (units.length - 1)];
+            grownCosts[i] = unitCosts[(head + i) & (units.length - 1)];
+        }
+        units = grownUnits;
+        unitCosts = grownCosts;
+        head = 0;
+    }
+
+    @Override
+    public String toString(){
+        double[] open = new double[size];
+        for (int i = 0; i < size; i++){
+            open[i] = units[(head + i) & (units.length - 1)];
+        }
+        return method + " lots " + Arrays.toString(open);
+    }
+}
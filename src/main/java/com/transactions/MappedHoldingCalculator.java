@@ -0,0 +1,28 @@
+package com.transactions;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HoldingCalculator reading the transaction file through a MappedTransactionReader instead of a BufferedReader, so that
+ * lines are tokenized straight from mapped bytes and account and asset names are shared between transactions. Results
+ * are the same as HoldingCalculatorImpl's
+ */
+
+public class MappedHoldingCalculator extends HoldingCalculatorImpl {
+
+    @Override
+    public Map<String, List<Holding>> calculateHoldings(File transactionFile, LocalDate date){
+        HoldingAccumulator accumulator = new HoldingAccumulator(this, date);
+        try {
+            new MappedTransactionReader().read(transactionFile, accumulator::accept);
+        } catch (IOException e){
+            throw new HoldingCalculationException("Error: cannot read transaction file [" + transactionFile.getName() +
+                    "], terminating", e);
+        }
+        return accumulator.finish();
+    }
+}
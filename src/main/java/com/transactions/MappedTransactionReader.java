@@ -0,0 +1,496 @@
+package com.transactions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads transaction files through memory mapped windows of a FileChannel and tokenizes Account,Date,TxnType,Units,
+ * Price,Asset lines directly from bytes: dates and decimals are parsed without creating intermediate Strings, account
+ * and asset names are interned through a SymbolTable. Any line the byte tokenizer does not fully understand is handed
+ * to a TransactionParser, so the transactions produced are exactly those HoldingCalculatorImpl.parseTransaction would
+ * produce, and invalid lines are rejected without exceptions. Not thread safe, use one reader per thread
+ */
+
+public class MappedTransactionReader {
+    static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+    private static final int STREAM_BUFFER_SIZE = 1024 * 1024;
+    //largest number of significant digits for which mantissa / 10^scale is exactly the double Double.valueOf returns
+    private static final int MAX_FAST_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = new double[MAX_FAST_DIGITS + 1];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++){
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final SymbolTable symbols;
+    private final int windowSize;
+    private final TransactionParser parser = new TransactionParser();
+
+    private byte[] line = new byte[256];
+    private final int[] fieldStart = new int[6];
+    private final int[] fieldEnd = new int[6];
+    private double parsedDecimal;
+    private int lastDateKey = -1;
+    private LocalDate lastDate;
+    private long linesRead;
+    private long bytesRead;
+    private RejectReason reason;
+
+    public MappedTransactionReader(){
+        this(new SymbolTable());
+    }
+
+    public MappedTransactionReader(SymbolTable symbols){
+        this(symbols, DEFAULT_WINDOW_SIZE);
+    }
+
+    MappedTransactionReader(SymbolTable symbols, int windowSize){
+        this.symbols = symbols;
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Reads every valid transaction in the file and passes it to consumer, in file order; invalid lines are skipped.
+     * Compressed files cannot be mapped and are read through TransactionInput instead
+     *
+     * @param transactionFile File file containing transactions
+     * @param consumer Consumer<Transaction> receives each validated transaction
+     * @throws IOException
+     */
+
+    public void read(File transactionFile, Consumer<Transaction> consumer) throws IOException {
+        if (TransactionInput.detect(transactionFile) != TransactionInput.Format.PLAIN){
+            try (InputStream in = TransactionInput.open(transactionFile)){
+                read(in, consumer);
+            }
+            return;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(transactionFile, "r");
+             FileChannel channel = file.getChannel()){
+            read(channel, 0, channel.size(), consumer);
+        }
+    }
+
+    /**
+     * Reads every valid transaction in the byte range [start, end) of channel; start is expected to be the start of a
+     * line and end either the end of the file or the start of a line
+     *
+     * @param channel FileChannel channel to read from
+     * @param start long offset of the first byte to read
+     * @param end long offset after the last byte to read
+     * @param consumer Consumer<Transaction> receives each validated transaction
+     * @throws IOException
+     */
+
+    public void read(FileChannel channel, long start, long end, Consumer<Transaction> consumer) throws IOException {
+        long position = start;
+        int size = windowSize;
+        while (position < end){
+            int length = (int) Math.min(size, end - position);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            int consumed = readWindow(window, length, position + length >= end, consumer);
+            if (consumed > 0){
+                position += consumed;
+                size = windowSize;
+            } else if (size < Integer.MAX_VALUE){
+                //a single line longer than the window, maps a larger one holding the whole line
+                size = (int) Math.min(Integer.MAX_VALUE, size * 2L);
+            } else {
+                //a line no window can hold, drops it and resumes after its line end
+                position = nextLineStart(channel, position + length, end);
+            }
+        }
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, long end) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(64 * 1024);
+        while (position < end){
+            chunk.clear().limit((int) Math.min(chunk.capacity(), end - position));
+            int read = channel.read(chunk, position);
+            if (read < 0){
+                return end;
+            }
+            for (int i = 0; i < read; i++){
+                byte b = chunk.get(i);
+                if (b == '\n' || b == '\r'){
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return end;
+    }
+
+    /**
+     * Reads every valid transaction from the stream and passes it to consumer, in stream order
+     *
+     * @param in InputStream stream of transaction lines
+     * @param consumer Consumer<Transaction> receives each validated transaction
+     * @throws IOException
+     */
+
+    public void read(InputStream in, Consumer<Transaction> consumer) throws IOException {
+        read(in, consumer, null);
+    }
+
+    /**
+     * Same as read(InputStream, Consumer), telling listener about every line read or rejected and about the time
+     * spent reading, parsing and, in consumer, aggregating. With a listener the lines of a buffer are all parsed before
+     * their transactions are passed on, so that the clock is read a few times per buffer rather than per line
+     *
+     * @param in InputStream stream of transaction lines
+     * @param consumer Consumer<Transaction> receives each validated transaction
+     * @param listener HoldingCalculationListener listener told about lines and phases, null for none
+     * @throws IOException
+     */
+
+    void read(InputStream in, Consumer<Transaction> consumer, HoldingCalculationListener listener) throws IOException {
+        List<Transaction> batch = listener == null ? null : new ArrayList<>();
+        long[] phaseNanos = new long[HoldingCalculationListener.Phase.values().length];
+        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        int length = 0;
+        int read;
+        long start = clock(listener);
+        while ((read = in.read(buffer, length, buffer.length - length)) >= 0){
+            long parsing = clock(listener);
+            bytesRead += read;
+            if (listener != null){
+                listener.bytesRead(read);
+            }
+            length += read;
+            int lineStart = 0;
+            for (int i = length - read; i < length; i++){
+                if (buffer[i] == '\n' || buffer[i] == '\r'){
+                    acceptLine(buffer, lineStart, i, consumer, batch, listener);
+                    lineStart = i + 1;
+                }
+            }
+            //keeps the partial last line, growing the buffer if it fills it
+            length -= lineStart;
+            System.arraycopy(buffer, lineStart, buffer, 0, length);
+            if (length == buffer.length){
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            start = flush(batch, consumer, listener, phaseNanos, start, parsing);
+        }
+        long parsing = clock(listener);
+        acceptLine(buffer, 0, length, consumer, batch, listener);
+        flush(batch, consumer, listener, phaseNanos, start, parsing);
+        if (listener != null){
+            for (HoldingCalculationListener.Phase phase : HoldingCalculationListener.Phase.values()){
+                listener.phaseCompleted(phase, phaseNanos[phase.ordinal()]);
+            }
+        }
+    }
+
+    /**
+     * Passes transactions parsed from a buffer on and adds up the time spent on it, returns the time it finished at
+     */
+
+    private static long flush(List<Transaction> batch, Consumer<Transaction> consumer,
+                              HoldingCalculationListener listener, long[] phaseNanos, long start, long parsing){
+        if (listener == null){
+            return 0;
+        }
+        long aggregating = System.nanoTime();
+        batch.forEach(consumer);
+        batch.clear();
+        long end = System.nanoTime();
+        phaseNanos[HoldingCalculationListener.Phase.READ.ordinal()] += parsing - start;
+        phaseNanos[HoldingCalculationListener.Phase.PARSE.ordinal()] += aggregating - parsing;
+        phaseNanos[HoldingCalculationListener.Phase.AGGREGATE.ordinal()] += end - aggregating;
+        return end;
+    }
+
+    private static long clock(HoldingCalculationListener listener){
+        return listener == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * @return long number of non-empty lines, valid or not, read so far by this reader
+     */
+
+    public long getLinesRead(){
+        return linesRead;
+    }
+
+    /**
+     * @return long number of bytes read so far from streams by this reader
+     */
+
+    public long getBytesRead(){
+        return bytesRead;
+    }
+
+    private void acceptLine(byte[] bytes, int from, int to, Consumer<Transaction> consumer, List<Transaction> batch,
+                            HoldingCalculationListener listener){
+        if (to == from){
+            return;
+        }
+        linesRead++;
+        Transaction t = parseLine(bytes, from, to);
+        if (listener == null){
+            if (t != null){
+                consumer.accept(t);
+            }
+            return;
+        }
+        listener.lineRead();
+        if (t == null){
+            listener.lineRejected(reason);
+        } else {
+            batch.add(t);
+        }
+    }
+
+    /**
+     * Parses all complete lines in window, returns number of bytes consumed; the trailing partial line is left for the
+     * next window unless this is the last one
+     */
+
+    private int readWindow(MappedByteBuffer window, int limit, boolean last, Consumer<Transaction> consumer){
+        int lineStart = 0;
+        for (int i = 0; i < limit; i++){
+            byte b = window.get(i);
+            if (b == '\n' || b == '\r'){
+                readLine(window, lineStart, i, consumer);
+                lineStart = i + 1;
+            }
+        }
+        if (last && lineStart < limit){
+            readLine(window, lineStart, limit, consumer);
+            return limit;
+        }
+        return lineStart;
+    }
+
+    private void readLine(MappedByteBuffer window, int from, int to, Consumer<Transaction> consumer){
+        int length = to - from;
+        if (length == 0){
+            return;
+        }
+        linesRead++;
+        if (line.length < length){
+            line = new byte[Math.max(length, line.length * 2)];
+        }
+        window.position(from);
+        window.get(line, 0, length);
+        Transaction t = parseLine(line, length);
+        if (t != null){
+            consumer.accept(t);
+        }
+    }
+
+    /**
+     * Tokenizes one line held in bytes[0, length), returns validated transaction or null if line is invalid
+     *
+     * @param bytes byte[] buffer holding the line, without line terminator
+     * @param length int number of bytes in the line
+     * @return Transaction validated transaction or null
+     */
+
+    Transaction parseLine(byte[] bytes, int length){
+        return parseLine(bytes, 0, length);
+    }
+
+    /**
+     * Tokenizes one line held in bytes[from, to), returns validated transaction or null if line is invalid
+     *
+     * @param bytes byte[] buffer holding the line
+     * @param from int index of the first byte of the line
+     * @param to int index after the last byte of the line, without line terminator
+     * @return Transaction validated transaction or null
+     */
+
+    public Transaction parseLine(byte[] bytes, int from, int to){
+        Transaction t = tokenize(bytes, from, to);
+        if (t == null){
+            t = parseSlowly(bytes, from, to);
+            reason = parser.getReason();
+            return t;
+        }
+        reason = t.check();
+        return reason == null ? t : null;
+    }
+
+    /**
+     * @return RejectReason reason the last line passed to parseLine was rejected for, null if it was accepted
+     */
+
+    public RejectReason getReason(){
+        return reason;
+    }
+
+    /**
+     * Fast path: returns transaction if every field is in its plain expected form, null otherwise
+     */
+
+    private Transaction tokenize(byte[] bytes, int from, int to){
+        int field = 0;
+        fieldStart[0] = from;
+        for (int i = from; i < to; i++){
+            if (bytes[i] == ','){
+                if (field == 5){
+                    return null;
+                }
+                fieldEnd[field] = i;
+                fieldStart[++field] = i + 1;
+            }
+        }
+        if (field != 5){
+            return null;
+        }
+        fieldEnd[5] = to;
+        for (int f = 0; f < 6; f++){
+            if (fieldStart[f] == fieldEnd[f]){
+                return null;
+            }
+        }
+        LocalDate date = parseDate(bytes, fieldStart[1], fieldEnd[1]);
+        if (date == null){
+            return null;
+        }
+        Transaction.txn txnType = parseTxnType(bytes, fieldStart[2], fieldEnd[2]);
+        if (txnType == null){
+            return null;
+        }
+        if (!parseDecimal(bytes, fieldStart[3], fieldEnd[3])){
+            return null;
+        }
+        double units = parsedDecimal;
+        if (!parseDecimal(bytes, fieldStart[4], fieldEnd[4])){
+            return null;
+        }
+        double price = parsedDecimal;
+        String account = symbols.intern(bytes, fieldStart[0], fieldEnd[0]);
+        String asset = symbols.intern(bytes, fieldStart[5], fieldEnd[5]);
+        return new Transaction(account, date, txnType, units, price, asset);
+    }
+
+    /**
+     * Slow path: hands the line to the String based parser, which decides on anything the tokenizer does not handle
+     */
+
+    private Transaction parseSlowly(byte[] bytes, int from, int to){
+        Transaction t = parser.parse(new String(bytes, from, to - from, StandardCharsets.UTF_8));
+        if (t != null){
+            t.account = symbols.intern(t.account);
+            t.asset = symbols.intern(t.asset);
+        }
+        return t;
+    }
+
+    /**
+     * Parses yyyyMMdd; returns null for anything that is not eight digits forming a date valid as written, leaving
+     * lenient resolution (e.g. 20170230) and errors to the slow path
+     */
+
+    private LocalDate parseDate(byte[] bytes, int from, int to){
+        if (to - from != 8){
+            return null;
+        }
+        int key = 0;
+        for (int i = from; i < to; i++){
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9){
+                return null;
+            }
+            key = key * 10 + digit;
+        }
+        if (key == lastDateKey){
+            return lastDate;
+        }
+        int year = key / 10000;
+        int month = key / 100 % 100;
+        int day = key % 100;
+        if (year == 0 || month < 1 || month > 12 || day < 1 || day > 28 && day > lengthOfMonth(year, month)){
+            return null;
+        }
+        lastDateKey = key;
+        lastDate = LocalDate.of(year, month, day);
+        return lastDate;
+    }
+
+    private static int lengthOfMonth(int year, int month){
+        switch (month){
+            case 2:
+                return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static Transaction.txn parseTxnType(byte[] bytes, int from, int to){
+        if (to - from != 3){
+            return null;
+        }
+        byte a = bytes[from];
+        byte b = bytes[from + 1];
+        byte c = bytes[from + 2];
+        if (a == 'B' && b == 'O' && c == 'T') return Transaction.txn.BOT;
+        if (a == 'S' && b == 'L' && c == 'D') return Transaction.txn.SLD;
+        if (a == 'W' && b == 'D' && c == 'R') return Transaction.txn.WDR;
+        if (a == 'D' && b == 'E' && c == 'P') return Transaction.txn.DEP;
+        if (a == 'D' && b == 'I' && c == 'V') return Transaction.txn.DIV;
+        return null;
+    }
+
+    /**
+     * Parses [-]digits[.digits] with at most 15 significant digits into parsedDecimal; both mantissa and power of ten
+     * are then exact doubles, so the single division is correctly rounded and equals Double.valueOf of the same text
+     */
+
+    private boolean parseDecimal(byte[] bytes, int from, int to){
+        boolean negative = bytes[from] == '-';
+        int i = negative ? from + 1 : from;
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean point = false;
+        for (; i < to; i++){
+            byte b = bytes[i];
+            if (b == '.' && !point){
+                point = true;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9){
+                return false;
+            }
+            if (mantissa != 0 || digit != 0){
+                digits++;
+            }
+            mantissa = mantissa * 10 + digit;
+            if (point){
+                scale++;
+            }
+            if (digits > MAX_FAST_DIGITS || scale > MAX_FAST_DIGITS){
+                return false;
+            }
+        }
+        if (i == from || (point && to - from == (negative ? 2 : 1)) || (negative && to - from == 1)){
+            return false;
+        }
+        double value = mantissa / POWERS_OF_TEN[scale];
+        parsedDecimal = negative ? -value : value;
+        return true;
+    }
+}
@@ -0,0 +1,110 @@
+package com.transactions;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Calculates holdings for several dates from a single read of the transaction file. Transactions of one account are
+ * collected, then, if they are in date order, folded once while a date cursor moves along the requested dates and a
+ * copy of the holdings is taken each time the cursor passes one of them. Accounts whose transactions are not in date
+ * order are folded once per requested date. Either way holdings for each date are the same as those returned by
+ * calculateHoldings(File, LocalDate) for that date
+ */
+
+public class MultiDateHoldingCalculator extends HoldingCalculatorImpl {
+
+    /**
+     * Reads in transaction file once and creates list of holdings for each account as of each of the given dates
+     *
+     * @param transactionFile File input file containing information about transactions
+     * @param dates Collection<LocalDate> dates to calculate holdings for, in any order, duplicates are calculated once
+     * @return SortedMap<LocalDate, Map<String, List<Holding>>> holdings for accounts (inner map) as of each date (key)
+     */
+
+    public SortedMap<LocalDate, Map<String, List<Holding>>> calculateHoldings(File transactionFile, Collection<LocalDate> dates){
+        //the cursor moves forward in time, whatever order or comparator the dates come with
+        TreeSet<LocalDate> sortedDates = new TreeSet<>();
+        sortedDates.addAll(dates);
+        LocalDate[] cursorDates = sortedDates.toArray(new LocalDate[0]);
+        List<Map<String, List<Holding>>> holdingsByDate = new ArrayList<>(cursorDates.length);
+        for (int i = 0; i < cursorDates.length; i++){
+            holdingsByDate.add(new HashMap<>());
+        }
+        List<Transaction> accountTransactions = new ArrayList<>();
+        try {
+            new MappedTransactionReader().read(transactionFile, t -> {
+                if (!accountTransactions.isEmpty() && !t.getAccount().equals(accountTransactions.get(0).getAccount())){
+                    handleAccount(accountTransactions, cursorDates, holdingsByDate);
+                    accountTransactions.clear();
+                }
+                accountTransactions.add(t);
+            });
+        } catch (IOException e){
+            throw new HoldingCalculationException("Error: cannot read transaction file [" + transactionFile.getName() +
+                    "], terminating", e);
+        }
+        if (!accountTransactions.isEmpty()){
+            handleAccount(accountTransactions, cursorDates, holdingsByDate);
+        }
+        SortedMap<LocalDate, Map<String, List<Holding>>> holdings = new TreeMap<>();
+        for (int i = 0; i < cursorDates.length; i++){
+            holdings.put(cursorDates[i], holdingsByDate.get(i));
+        }
+        return holdings;
+    }
+
+    private void handleAccount(List<Transaction> transactions, LocalDate[] dates, List<Map<String, List<Holding>>> holdingsByDate){
+        String account = transactions.get(0).getAccount();
+        if (!isInDateOrder(transactions)){
+            for (int i = 0; i < dates.length; i++){
+                holdingsByDate.get(i).put(account, handleTransactions(transactions, dates[i]));
+            }
+            return;
+        }
+        Map<String, Holding> holdingMap = new HashMap<>();
+        double cash = 0;
+        int cursor = 0;
+        for (Transaction t : transactions){
+            //takes holdings for every date the transaction falls after, before applying it
+            while (cursor < dates.length && t.getDate().isAfter(dates[cursor])){
+                holdingsByDate.get(cursor++).put(account, toHoldingList(copy(holdingMap), cash));
+            }
+            if (cursor == dates.length){
+                break;
+            }
+            cash = applyTransaction(holdingMap, t, cash, dates[dates.length - 1]);
+        }
+        while (cursor < dates.length){
+            holdingsByDate.get(cursor++).put(account, toHoldingList(copy(holdingMap), cash));
+        }
+    }
+
+    private static boolean isInDateOrder(List<Transaction> transactions){
+        for (int i = 1; i < transactions.size(); i++){
+            if (transactions.get(i).getDate().isBefore(transactions.get(i - 1).getDate())){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, Holding> copy(Map<String, Holding> holdingMap){
+        Map<String, Holding> copy = new HashMap<>();
+        for (Holding holding : holdingMap.values()){
+            Holding holdingCopy = new Holding();
+            holdingCopy.setAsset(holding.getAsset());
+            holdingCopy.setHoldings(holding.getHolding());
+            copy.put(holding.getAsset(), holdingCopy);
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,218 @@
+package com.transactions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * HoldingCalculator for transactions sharded over many files, plain or compressed. Shards are read concurrently, at
+ * most threads at a time, each into lists of transactions per account; transactions after the requested date are
+ * dropped while reading, as they cannot change holdings, though their account is kept. The transactions of an account
+ * are then put together from all shards, in shard order, and sorted by date, keeping that order for transactions of
+ * the same date, before being folded. Results therefore do not depend on thread timing, only on the order of the
+ * shards, which is the order of the list given or, for directories, the order of file names. All transactions up to
+ * the date, of every shard, are held in memory until they are folded, so the shards together have to fit in the heap;
+ * GroupingHoldingCalculator handles a single file of any size
+ */
+
+public class MultiFileHoldingCalculator extends HoldingCalculatorImpl {
+    private static final Comparator<Transaction> BY_DATE = Comparator.comparing(Transaction::getDate);
+
+    private final int threads;
+
+    public MultiFileHoldingCalculator(){
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threads int number of shards read, and accounts folded, at the same time
+     */
+
+    public MultiFileHoldingCalculator(int threads){
+        if (threads < 1){
+            throw new IllegalArgumentException("Error: threads expected to be positive, actual [" + threads + "]");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Calculates holdings from a single file, or from every file in it if transactionFile is a directory
+     */
+
+    @Override
+    public Map<String, List<Holding>> calculateHoldings(File transactionFile, LocalDate date){
+        if (transactionFile.isDirectory()){
+            return calculateHoldings(transactionFile.toPath(), "*", date);
+        }
+        return calculateHoldings(Collections.singletonList(transactionFile), date);
+    }
+
+    /**
+     * @param directory Path directory containing transaction files
+     * @param glob String pattern file names have to match, e.g. *.csv.gz
+     * @param date LocalDate date up to which calculate holdings
+     * @return Map<String, List<Holding>> records holdings (value) for accounts (key)
+     */
+
+    public Map<String, List<Holding>> calculateHoldings(Path directory, String glob, LocalDate date){
+        return calculateHoldings(listFiles(directory, glob), date);
+    }
+
+    /**
+     * @param transactionFiles List<File> shards of transactions, in the order transactions of the same account and date
+     *                         are applied
+     * @param date LocalDate date up to which calculate holdings
+     * @return Map<String, List<Holding>> records holdings (value) for accounts (key)
+     */
+
+    public Map<String, List<Holding>> calculateHoldings(List<File> transactionFiles, LocalDate date){
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Map<String, List<Transaction>>>> shards = new ArrayList<>();
+            for (File file : transactionFiles){
+                shards.add(executor.submit(() -> readShard(file, date)));
+            }
+            //merges in shard order; an account's lists are appended to, so later shards come after earlier ones
+            Map<String, List<Transaction>> accounts = new HashMap<>();
+            for (Future<Map<String, List<Transaction>>> shard : shards){
+                for (Map.Entry<String, List<Transaction>> entry : shard.get().entrySet()){
+                    List<Transaction> accountTransactions = accounts.get(entry.getKey());
+                    if (accountTransactions == null){
+                        accounts.put(entry.getKey(), entry.getValue());
+                    } else {
+                        accountTransactions.addAll(entry.getValue());
+                    }
+                }
+            }
+            return fold(accounts, date, executor);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new HoldingCalculationException("Error: interrupted while calculating holdings, terminating", e);
+        } catch (ExecutionException e){
+            if (e.getCause() instanceof HoldingCalculationException){
+                throw (HoldingCalculationException) e.getCause();
+            }
+            throw new HoldingCalculationException("Error: calculating holdings failed [" + e.getCause() + "], terminating",
+                    e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Lists files in directory whose names match glob, sorted by name. Hidden files, such as .DS_Store, AccountIndex
+     * sidecars and temporary files are never listed, as they do not hold transactions
+     *
+     * @param directory Path directory containing transaction files
+     * @param glob String pattern file names have to match
+     * @return List<File> matching regular files
+     */
+
+    public static List<File> listFiles(Path directory, String glob){
+        List<File> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)){
+            for (Path path : stream){
+                if (Files.isRegularFile(path) && !isAuxiliary(path.getFileName().toString())){
+                    files.add(path.toFile());
+                }
+            }
+        } catch (IOException e){
+            throw new HoldingCalculationException("Error: cannot list transaction files in [" + directory +
+                    "], terminating", e);
+        }
+        files.sort(Comparator.comparing(File::getName));
+        return files;
+    }
+
+    private static boolean isAuxiliary(String name){
+        return name.startsWith(".") || name.endsWith(AccountIndex.SIDECAR_EXTENSION) || name.endsWith(".tmp");
+    }
+
+    private Map<String, List<Transaction>> readShard(File file, LocalDate date){
+        Shard shard = new Shard(date);
+        MappedTransactionReader reader = new MappedTransactionReader();
+        try {
+            if (TransactionInput.detect(file) == TransactionInput.Format.PLAIN){
+                reader.read(file, shard);
+            } else {
+                //decompresses on this thread, keeping within the thread budget
+                try (InputStream in = TransactionInput.open(file, 1)){
+                    reader.read(in, shard);
+                }
+            }
+        } catch (IOException e){
+            throw new HoldingCalculationException("Error: cannot read transaction file [" + file.getName() +
+                    "], terminating", e);
+        }
+        return shard.accounts;
+    }
+
+    /**
+     * Folds accounts in date order, split into one slice per thread
+     */
+
+    private Map<String, List<Holding>> fold(Map<String, List<Transaction>> accounts, LocalDate date,
+                                            ExecutorService executor) throws InterruptedException, ExecutionException {
+        List<Map.Entry<String, List<Transaction>>> all = new ArrayList<>(accounts.entrySet());
+        List<Future<Map<String, List<Holding>>>> slices = new ArrayList<>();
+        int sliceSize = (all.size() + threads - 1) / threads;
+        for (int from = 0; from < all.size(); from += sliceSize){
+            List<Map.Entry<String, List<Transaction>>> slice = all.subList(from, Math.min(all.size(), from + sliceSize));
+            slices.add(executor.submit(() -> {
+                Map<String, List<Holding>> holdings = new HashMap<>();
+                for (Map.Entry<String, List<Transaction>> account : slice){
+                    account.getValue().sort(BY_DATE);
+                    holdings.put(account.getKey(), handleTransactions(account.getValue(), date));
+                }
+                return holdings;
+            }));
+        }
+        Map<String, List<Holding>> holdings = new HashMap<>(accounts.size() * 2);
+        for (Future<Map<String, List<Holding>>> slice : slices){
+            holdings.putAll(slice.get());
+        }
+        return holdings;
+    }
+
+    /**
+     * Collects transactions of one shard per account
+     */
+
+    private static class Shard implements Consumer<Transaction> {
+        private final LocalDate date;
+        private final Map<String, List<Transaction>> accounts = new HashMap<>();
+        private String currentAccount;
+        private List<Transaction> current;
+
+        Shard(LocalDate date){
+            this.date = date;
+        }
+
+        @Override
+        public void accept(Transaction t){
+            //transactions of an account mostly come together, saves a lookup per transaction
+            if (!t.getAccount().equals(currentAccount)){
+                currentAccount = t.getAccount();
+                current = accounts.computeIfAbsent(currentAccount, account -> new ArrayList<>());
+            }
+            if (!t.getDate().isAfter(date)){
+                current.add(t);
+            }
+        }
+    }
+}
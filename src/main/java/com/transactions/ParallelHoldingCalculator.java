@@ -0,0 +1,202 @@
+package com.transactions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * HoldingCalculator folding accounts on several threads. The transaction file is split into chunks at account
+ * boundaries, i.e. in front of the first valid transaction whose account differs from the one of the valid transaction
+ * before it, so no account is split between chunks. Every chunk is read and folded on a ForkJoinPool and the chunk
+ * results are merged in file order, which gives the same result as the sequential HoldingCalculatorImpl. Compressed
+ * files cannot be split at byte offsets and are folded on the calling thread
+ */
+
+public class ParallelHoldingCalculator extends HoldingCalculatorImpl {
+    //chunks per thread, more chunks than threads evens out accounts of very different sizes
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private final int parallelism;
+
+    public ParallelHoldingCalculator(){
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism int number of threads folding accounts
+     */
+
+    public ParallelHoldingCalculator(int parallelism){
+        if (parallelism < 1){
+            throw new IllegalArgumentException("Error: parallelism expected to be positive, actual [" + parallelism + "]");
+        }
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public Map<String, List<Holding>> calculateHoldings(File transactionFile, LocalDate date){
+        try {
+            if (TransactionInput.detect(transactionFile) != TransactionInput.Format.PLAIN){
+                HoldingAccumulator accumulator = new HoldingAccumulator(this, date);
+                new MappedTransactionReader().read(transactionFile, accumulator::accept);
+                return accumulator.finish();
+            }
+        } catch (IOException e){
+            throw new HoldingCalculationException("Error: cannot read transaction file [" + transactionFile.getName() +
+                    "], terminating", e);
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try (RandomAccessFile file = new RandomAccessFile(transactionFile, "r");
+             FileChannel channel = file.getChannel()){
+            List<Long> boundaries = splitAtAccounts(channel, parallelism * CHUNKS_PER_THREAD);
+            List<Future<Map<String, List<Holding>>>> chunks = new ArrayList<>();
+            for (int i = 0; i + 1 < boundaries.size(); i++){
+                long start = boundaries.get(i);
+                long end = boundaries.get(i + 1);
+                chunks.add(pool.submit(() -> calculateChunk(channel, start, end, date)));
+            }
+            //merges in file order so that an account appearing in several groups keeps the holdings of its last group,
+            // as in the sequential calculation
+            Map<String, List<Holding>> holdings = new HashMap<>();
+            for (Future<Map<String, List<Holding>>> chunk : chunks){
+                holdings.putAll(chunk.get());
+            }
+            return holdings;
+        } catch (IOException e){
+            throw new HoldingCalculationException("Error: cannot read transaction file [" + transactionFile.getName() +
+                    "], terminating", e);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new HoldingCalculationException("Error: interrupted while calculating holdings, terminating", e);
+        } catch (ExecutionException e){
+            if (e.getCause() instanceof HoldingCalculationException){
+                throw (HoldingCalculationException) e.getCause();
+            }
+            throw new HoldingCalculationException("Error: calculating holdings failed [" + e.getCause() + "], terminating",
+                    e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Map<String, List<Holding>> calculateChunk(FileChannel channel, long start, long end, LocalDate date)
+            throws IOException {
+        HoldingAccumulator accumulator = new HoldingAccumulator(this, date);
+        new MappedTransactionReader().read(channel, start, end, accumulator::accept);
+        return accumulator.finish();
+    }
+
+    /**
+     * Splits the file into about the given number of chunks, returns chunk boundaries starting with 0 and ending with
+     * the file size
+     */
+
+    static List<Long> splitAtAccounts(FileChannel channel, int chunks) throws IOException {
+        long size = channel.size();
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        long previous = 0;
+        for (int i = 1; i < chunks && previous < size; i++){
+            long boundary = nextAccountBoundary(channel, Math.max(previous, size * i / chunks), size);
+            if (boundary > previous && boundary < size){
+                boundaries.add(boundary);
+                previous = boundary;
+            }
+        }
+        boundaries.add(size);
+        return boundaries;
+    }
+
+    /**
+     * Returns offset of the first line after from holding a valid transaction whose account differs from the valid
+     * transaction before it, or size if there is none
+     */
+
+    private static long nextAccountBoundary(FileChannel channel, long from, long size) throws IOException {
+        LineCursor cursor = new LineCursor(channel, from, size);
+        if (from > 0){
+            cursor.nextLine();
+        }
+        String account = null;
+        while (cursor.position() < size){
+            long lineStart = cursor.position();
+            Transaction t;
+            try {
+                t = parseTransaction(cursor.nextLine());
+            } catch (InvalidTransactionException e){
+                continue;
+            }
+            if (account == null){
+                account = t.getAccount();
+            } else if (!account.equals(t.getAccount())){
+                return lineStart;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Reads lines from a FileChannel starting at a given offset, keeping track of the offset of the next line
+     */
+
+    private static class LineCursor {
+        private final FileChannel channel;
+        private final long size;
+        private final ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        private long bufferStart;
+        private byte[] line = new byte[256];
+
+        LineCursor(FileChannel channel, long from, long size){
+            this.channel = channel;
+            this.size = size;
+            this.bufferStart = from;
+            buffer.limit(0);
+        }
+
+        long position(){
+            return bufferStart + buffer.position();
+        }
+
+        String nextLine() throws IOException {
+            int length = 0;
+            while (position() < size){
+                if (!buffer.hasRemaining()){
+                    fill();
+                }
+                byte b = buffer.get();
+                if (b == '\n' || b == '\r'){
+                    break;
+                }
+                if (length == line.length){
+                    line = Arrays.copyOf(line, length * 2);
+                }
+                line[length++] = b;
+            }
+            return new String(line, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private void fill() throws IOException {
+            bufferStart += buffer.position();
+            buffer.clear();
+            while (buffer.position() < buffer.capacity() && bufferStart + buffer.position() < size){
+                if (channel.read(buffer, bufferStart + buffer.position()) < 0){
+                    break;
+                }
+            }
+            buffer.flip();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.transactions;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput and queue depth of the stages of a PipelinedHoldingCalculator run. Updated by the stages while the run is
+ * in progress, so it can be read from another thread to watch a run
+ */
+
+public class PipelineStats {
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong blocksRead = new AtomicLong();
+    private final AtomicLong readNanos = new AtomicLong();
+    private final AtomicLong transactionsParsed = new AtomicLong();
+    private final AtomicLong parseNanos = new AtomicLong();
+    private final AtomicLong transactionsAggregated = new AtomicLong();
+    private final AtomicLong aggregateNanos = new AtomicLong();
+    private final AtomicLong blockQueueDepth = new AtomicLong();
+    private final AtomicLong maxBlockQueueDepth = new AtomicLong();
+    private final AtomicLong batchQueueDepth = new AtomicLong();
+    private final AtomicLong maxBatchQueueDepth = new AtomicLong();
+
+    void blockRead(int bytes, long nanos, int queueDepth){
+        bytesRead.addAndGet(bytes);
+        blocksRead.incrementAndGet();
+        readNanos.addAndGet(nanos);
+        sample(blockQueueDepth, maxBlockQueueDepth, queueDepth);
+    }
+
+    void batchParsed(int transactions, long nanos, int queueDepth){
+        transactionsParsed.addAndGet(transactions);
+        parseNanos.addAndGet(nanos);
+        sample(batchQueueDepth, maxBatchQueueDepth, queueDepth);
+    }
+
+    void batchAggregated(int transactions, long nanos){
+        transactionsAggregated.addAndGet(transactions);
+        aggregateNanos.addAndGet(nanos);
+    }
+
+    private static void sample(AtomicLong depth, AtomicLong maxDepth, int queueDepth){
+        depth.set(queueDepth);
+        long max;
+        while (queueDepth > (max = maxDepth.get()) && !maxDepth.compareAndSet(max, queueDepth)){
+            //retry until max is at least queueDepth
+        }
+    }
+
+    public long getBytesRead(){
+        return bytesRead.get();
+    }
+
+    public long getBlocksRead(){
+        return blocksRead.get();
+    }
+
+    public long getTransactionsParsed(){
+        return transactionsParsed.get();
+    }
+
+    public long getTransactionsAggregated(){
+        return transactionsAggregated.get();
+    }
+
+    /**
+     * @return long nanoseconds the reader spent reading, summed over reads
+     */
+
+    public long getReadNanos(){
+        return readNanos.get();
+    }
+
+    /**
+     * @return long nanoseconds the parsers spent parsing, summed over all parser threads
+     */
+
+    public long getParseNanos(){
+        return parseNanos.get();
+    }
+
+    public long getAggregateNanos(){
+        return aggregateNanos.get();
+    }
+
+    /**
+     * @return long blocks waiting for a parser when last sampled
+     */
+
+    public long getBlockQueueDepth(){
+        return blockQueueDepth.get();
+    }
+
+    public long getMaxBlockQueueDepth(){
+        return maxBlockQueueDepth.get();
+    }
+
+    /**
+     * @return long parsed batches waiting for the aggregator when last sampled
+     */
+
+    public long getBatchQueueDepth(){
+        return batchQueueDepth.get();
+    }
+
+    public long getMaxBatchQueueDepth(){
+        return maxBatchQueueDepth.get();
+    }
+
+    @Override
+    public String toString(){
+        return "PipelineStats{" +
+                "bytesRead=" + getBytesRead() +
+                ", readMBps=" + rate(getBytesRead() / 1e6, getReadNanos()) +
+                ", transactionsParsed=" + getTransactionsParsed() +
+                ", parsedPerSecondPerThread=" + rate(getTransactionsParsed(), getParseNanos()) +
+                ", aggregatedPerSecond=" + rate(getTransactionsAggregated(), getAggregateNanos()) +
+                ", maxBlockQueueDepth=" + getMaxBlockQueueDepth() +
+                ", maxBatchQueueDepth=" + getMaxBatchQueueDepth() +
+                '}';
+    }
+
+    private static long rate(double amount, long nanos){
+        return nanos == 0 ? 0 : (long) (amount * 1e9 / nanos);
+    }
+}
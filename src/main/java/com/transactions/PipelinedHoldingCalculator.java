@@ -0,0 +1,258 @@
+package com.transactions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * HoldingCalculator overlapping I/O, parsing and aggregation. A reader thread reads the file in large blocks cut at line
+ * ends, a pool of parser threads turns blocks into batches of transactions and the calling thread folds the batches into
+ * holdings, taking them in block order so that transactions of an account are applied in file order. Stages are
+ * connected by bounded queues and at most queueCapacity blocks are in flight at any time, so a slow stage holds back the
+ * ones before it instead of letting memory grow. Compressed files are decompressed by the reader stage through
+ * TransactionInput, block gzip ones on threads of their own. Results are the same as HoldingCalculatorImpl's
+ */
+
+public class PipelinedHoldingCalculator extends HoldingCalculatorImpl {
+    public static final int DEFAULT_BLOCK_SIZE = 4 * 1024 * 1024;
+    public static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+    private final int parserThreads;
+    private final int blockSize;
+    private final int queueCapacity;
+    private volatile PipelineStats stats = new PipelineStats();
+
+    public PipelinedHoldingCalculator(){
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() - 2), DEFAULT_BLOCK_SIZE, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param parserThreads int number of threads parsing blocks
+     * @param blockSize int number of bytes read at a time
+     * @param queueCapacity int number of blocks that may be read but not yet aggregated
+     */
+
+    public PipelinedHoldingCalculator(int parserThreads, int blockSize, int queueCapacity){
+        if (parserThreads < 1 || blockSize < 1 || queueCapacity < 1){
+            throw new IllegalArgumentException("Error: parser threads, block size and queue capacity expected to be positive");
+        }
+        this.parserThreads = parserThreads;
+        this.blockSize = blockSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * @return PipelineStats stats of the calculation in progress, or of the last one
+     */
+
+    public PipelineStats getStats(){
+        return stats;
+    }
+
+    @Override
+    public Map<String, List<Holding>> calculateHoldings(File transactionFile, LocalDate date){
+        PipelineStats runStats = new PipelineStats();
+        stats = runStats;
+        BlockingQueue<Block> blocks = new ArrayBlockingQueue<>(queueCapacity);
+        //room for every block in flight plus the end of file and an error, so neither ever waits for space
+        BlockingQueue<Batch> batches = new ArrayBlockingQueue<>(queueCapacity + 2);
+        Semaphore inFlight = new Semaphore(queueCapacity);
+        ExecutorService executor = Executors.newFixedThreadPool(parserThreads + 1);
+        try {
+            executor.execute(() -> read(transactionFile, blocks, batches, inFlight, runStats));
+            for (int i = 0; i < parserThreads; i++){
+                executor.execute(() -> parse(blocks, batches, runStats));
+            }
+            return aggregate(batches, inFlight, date, runStats);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new HoldingCalculationException("Error: interrupted while calculating holdings, terminating", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Reader stage: reads blocks ending at a line end, numbered in file order; once the file is read, sends an end
+     * batch numbered after the last block to the aggregator and an end block to every parser
+     */
+
+    private void read(File transactionFile, BlockingQueue<Block> blocks, BlockingQueue<Batch> batches,
+                      Semaphore inFlight, PipelineStats runStats){
+        try {
+            long sequence = 0;
+            try (InputStream in = TransactionInput.open(transactionFile)){
+                byte[] carry = new byte[0];
+                while (true){
+                    long start = System.nanoTime();
+                    byte[] data = Arrays.copyOf(carry, carry.length + blockSize);
+                    int length = carry.length;
+                    int read = 0;
+                    //fills the block unless the end of the file is reached
+                    while (length < data.length && (read = in.read(data, length, data.length - length)) >= 0){
+                        length += read;
+                    }
+                    int end = length;
+                    if (read >= 0){
+                        end = lastLineEnd(data, carry.length, length);
+                        if (end < 0){
+                            //no line end in this block, keeps reading until the line is complete
+                            carry = Arrays.copyOf(data, length);
+                            continue;
+                        }
+                    }
+                    carry = Arrays.copyOfRange(data, end, length);
+                    if (end > 0){
+                        long readNanos = System.nanoTime() - start;
+                        inFlight.acquire();
+                        blocks.put(new Block(sequence++, data, end));
+                        runStats.blockRead(end, readNanos, blocks.size());
+                    }
+                    if (read < 0){
+                        break;
+                    }
+                }
+            }
+            batches.put(new Batch(sequence, null, null));
+        } catch (IOException e){
+            fail(batches, new HoldingCalculationException("Error: cannot read transaction file [" +
+                    transactionFile.getName() + "], terminating", e));
+        } catch (InterruptedException e){
+            return;
+        }
+        try {
+            for (int i = 0; i < parserThreads; i++){
+                blocks.put(Block.END);
+            }
+        } catch (InterruptedException e){
+            //run is being shut down
+        }
+    }
+
+    private static int lastLineEnd(byte[] data, int from, int to){
+        for (int i = to - 1; i >= from; i--){
+            if (data[i] == '\n' || data[i] == '\r'){
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parser stage: splits blocks into lines and parses them into batches of valid transactions
+     */
+
+    private void parse(BlockingQueue<Block> blocks, BlockingQueue<Batch> batches, PipelineStats runStats){
+        MappedTransactionReader reader = new MappedTransactionReader();
+        try {
+            Block block;
+            while ((block = blocks.take()) != Block.END){
+                long start = System.nanoTime();
+                List<Transaction> transactions = new ArrayList<>();
+                int lineStart = 0;
+                for (int i = 0; i <= block.length; i++){
+                    if (i == block.length || block.data[i] == '\n' || block.data[i] == '\r'){
+                        if (i > lineStart){
+                            Transaction t = reader.parseLine(block.data, lineStart, i);
+                            if (t != null){
+                                transactions.add(t);
+                            }
+                        }
+                        lineStart = i + 1;
+                    }
+                }
+                //records the batch before handing it over, so the run cannot complete with its stats still missing
+                runStats.batchParsed(transactions.size(), System.nanoTime() - start, batches.size() + 1);
+                batches.put(new Batch(block.sequence, transactions, null));
+            }
+        } catch (InterruptedException e){
+            //run is being shut down
+        } catch (RuntimeException e){
+            fail(batches, e);
+        }
+    }
+
+    /**
+     * Aggregator stage: folds batches in block order, holding back batches that arrive ahead of their turn
+     */
+
+    private Map<String, List<Holding>> aggregate(BlockingQueue<Batch> batches, Semaphore inFlight, LocalDate date,
+                                                 PipelineStats runStats) throws InterruptedException {
+        HoldingAccumulator accumulator = new HoldingAccumulator(this, date);
+        Map<Long, Batch> waiting = new HashMap<>();
+        long next = 0;
+        while (true){
+            Batch batch = waiting.remove(next);
+            if (batch == null){
+                batch = batches.take();
+                if (batch.error != null){
+                    throw batch.error;
+                }
+                if (batch.sequence != next){
+                    waiting.put(batch.sequence, batch);
+                    continue;
+                }
+            }
+            if (batch.transactions == null){
+                return accumulator.finish();
+            }
+            long start = System.nanoTime();
+            for (Transaction t : batch.transactions){
+                accumulator.accept(t);
+            }
+            runStats.batchAggregated(batch.transactions.size(), System.nanoTime() - start);
+            inFlight.release();
+            next++;
+        }
+    }
+
+    private static void fail(BlockingQueue<Batch> batches, RuntimeException error){
+        //the aggregator stops at the first error, later ones may be dropped
+        batches.offer(new Batch(-1, null, error));
+    }
+
+    /**
+     * Bytes of whole lines read from the file
+     */
+
+    private static class Block {
+        static final Block END = new Block(-1, null, 0);
+
+        final long sequence;
+        final byte[] data;
+        final int length;
+
+        Block(long sequence, byte[] data, int length){
+            this.sequence = sequence;
+            this.data = data;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Transactions parsed from a block; no transactions marks the end of the file, an error a failed stage
+     */
+
+    private static class Batch {
+        final long sequence;
+        final List<Transaction> transactions;
+        final RuntimeException error;
+
+        Batch(long sequence, List<Transaction> transactions, RuntimeException error){
+            this.sequence = sequence;
+            this.transactions = transactions;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.transactions;
+
+import java.util.Arrays;
+import java.util.function.ObjDoubleConsumer;
+
+/**
+ * Units held per asset for one account, in a single open addressing table of asset names and primitive doubles
+ * instead of a HashMap of Holding objects. Asset names interned by a SymbolTable act as asset ids: every transaction
+ * of the same asset carries the same String instance, so a lookup is one hash, cached in the String, and one reference
+ * comparison; names that are not interned are still found by equals. Holding objects are only created by
+ * HoldingCalculatorImpl.toHoldingList. Uses linear probing with backward shift deletion, so there are no tombstones.
+ * Not thread safe
+ */
+
+public final class PositionMap implements Positions {
+    private static final int INITIAL_CAPACITY = 8;
+    //a table grown by an account with many assets is given up when cleared, so that later accounts do not pay for it
+    private static final int MAX_RETAINED_CAPACITY = 256;
+
+    private String[] assets = new String[INITIAL_CAPACITY];
+    private double[] units = new double[INITIAL_CAPACITY];
+    private int size;
+
+    @Override
+    public boolean containsKey(String asset){
+        return assets[slot(asset)] != null;
+    }
+
+    /**
+     * @param asset String asset name
+     * @return double units held of asset, 0 if asset is not held
+     */
+
+    public double get(String asset){
+        int slot = slot(asset);
+        return assets[slot] == null ? 0 : units[slot];
+    }
+
+    public void put(String asset, double value){
+        int slot = slot(asset);
+        units[slot] = value;
+        if (assets[slot] == null){
+            assets[slot] = asset;
+            if (++size * 4 > assets.length * 3){
+                resize(assets.length * 2);
+            }
+        }
+    }
+
+    /**
+     * Adds amount to the units held of asset, starting from amount if asset is not held
+     *
+     * @param asset String asset name
+     * @param amount double units to add
+     */
+
+    @Override
+    public void add(String asset, double amount){
+        int slot = slot(asset);
+        if (assets[slot] == null){
+            put(asset, amount);
+        } else {
+            units[slot] += amount;
+        }
+    }
+
+    /**
+     * Subtracts amount from the units held of asset, removing asset once exactly nothing of it is held; asset is
+     * expected to be held
+     *
+     * @param asset String asset name
+     * @param amount double units to subtract
+     */
+
+    @Override
+    public void subtract(String asset, double amount){
+        int slot = slot(asset);
+        units[slot] -= amount;
+        if (Double.compare(units[slot], 0.0) == 0){
+            removeSlot(slot);
+        }
+    }
+
+    public void remove(String asset){
+        int slot = slot(asset);
+        if (assets[slot] != null){
+            removeSlot(slot);
+        }
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public void clear(){
+        if (assets.length > MAX_RETAINED_CAPACITY){
+            assets = new String[INITIAL_CAPACITY];
+            units = new double[INITIAL_CAPACITY];
+        } else {
+            Arrays.fill(assets, null);
+        }
+        size = 0;
+    }
+
+    /**
+     * Passes every asset held and its units to consumer, in no particular order
+     *
+     * @param consumer ObjDoubleConsumer<String> receives asset names and units
+     */
+
+    public void forEach(ObjDoubleConsumer<String> consumer){
+        for (int i = 0; i < assets.length; i++){
+            if (assets[i] != null){
+                consumer.accept(assets[i], units[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns slot holding asset, or the empty slot where it would be put
+     */
+
+    private int slot(String asset){
+        int mask = assets.length - 1;
+        int hash = asset.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        String key;
+        while ((key = assets[slot]) != null){
+            if (key == asset || (key.hashCode() == hash && key.equals(asset))){
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Empties slot, moving back later entries of the same probe run that would otherwise no longer be found
+     */
+
+    private void removeSlot(int slot){
+        int mask = assets.length - 1;
+        assets[slot] = null;
+        size--;
+        int next = (slot + 1) & mask;
+        while (assets[next] != null){
+            int hash = assets[next].hashCode();
+            int home = (hash ^ (hash >>> 16)) & mask;
+            //moves the entry into the gap unless its home slot lies cyclically after the gap, up to its position
+            if (((next - home) & mask) >= ((next - slot) & mask)){
+                assets[slot] = assets[next];
+                units[slot] = units[next];
+                assets[next] = null;
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    private void resize(int capacity){
+        String[] oldAssets = assets;
+        double[] oldUnits = units;
+        assets = new String[capacity];
+        units = new double[capacity];
+        for (int i = 0; i < oldAssets.length; i++){
+            if (oldAssets[i] != null){
+                int slot = slot(oldAssets[i]);
+                assets[slot] = oldAssets[i];
+                units[slot] = oldUnits[i];
+            }
+        }
+    }
+}
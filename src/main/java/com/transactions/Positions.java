@@ -0,0 +1,24 @@
+package com.transactions;
+
+/**
+ * Units held per asset for one account, as the transaction rules of HoldingCalculatorImpl.applyTransaction change
+ * them; implemented by PositionMap and by a view of a map of Holding objects, so that the rules are written once
+ */
+
+interface Positions {
+
+    boolean containsKey(String asset);
+
+    /**
+     * Adds amount to the units held of asset, starting from amount if asset is not held
+     */
+
+    void add(String asset, double amount);
+
+    /**
+     * Subtracts amount from the units held of asset, removing asset once exactly nothing of it is held; asset is
+     * expected to be held
+     */
+
+    void subtract(String asset, double amount);
+}
@@ -0,0 +1,63 @@
+package com.transactions;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Number of transaction lines rejected for each RejectReason. Not thread safe
+ */
+
+public class RejectCounters {
+    private final long[] counts = new long[RejectReason.values().length];
+
+    public void increment(RejectReason reason){
+        counts[reason.ordinal()]++;
+    }
+
+    public long get(RejectReason reason){
+        return counts[reason.ordinal()];
+    }
+
+    /**
+     * @return long number of lines rejected for any reason
+     */
+
+    public long total(){
+        long total = 0;
+        for (long count : counts){
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Adds counts of other to these counts
+     *
+     * @param other RejectCounters counts to add
+     */
+
+    public void add(RejectCounters other){
+        for (int i = 0; i < counts.length; i++){
+            counts[i] += other.counts[i];
+        }
+    }
+
+    /**
+     * @return Map<RejectReason, Long> count for each reason with at least one rejected line
+     */
+
+    public Map<RejectReason, Long> toMap(){
+        Map<RejectReason, Long> map = new EnumMap<>(RejectReason.class);
+        for (RejectReason reason : RejectReason.values()){
+            if (counts[reason.ordinal()] > 0){
+                map.put(reason, counts[reason.ordinal()]);
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public String toString(){
+        return "RejectCounters" + toMap();
+    }
+}
@@ -0,0 +1,18 @@
+package com.transactions;
+
+/**
+ * Reasons for which a transaction line is rejected, in the order in which Transaction checks them
+ */
+
+public enum RejectReason {
+    FIELD_COUNT,
+    DATE,
+    TXN_TYPE,
+    UNITS,
+    PRICE,
+    CASH_ASSET_EXPECTED,
+    NOT_POSITIVE,
+    EMPTY_ACCOUNT,
+    EMPTY_ASSET,
+    CASH_PRICE
+}
@@ -0,0 +1,103 @@
+package com.transactions;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Replays the whole history of every account in one pass, producing a HoldingTimeSeries of end of day positions and
+ * cash. Transactions are grouped by account, wherever they appear in the file, as GroupingHoldingCalculator groups
+ * them, and applied in date order, those of the same date in file order, with the rules of applyTransaction; after the
+ * last transaction of each day the assets it touched and the cash balance are recorded. For files with accounts
+ * grouped and in date order, holdings of the series at any date are the same as calculateHoldings for that date.
+ * Memory holds at most maxTransactionsInMemory transactions while grouping, then the transactions of one account at a
+ * time while replaying, besides the series built
+ */
+
+public class ReplayHoldingCalculator extends GroupingHoldingCalculator {
+    private static final Comparator<Transaction> BY_DATE = Comparator.comparing(Transaction::getDate);
+
+    public ReplayHoldingCalculator(){
+        super();
+    }
+
+    /**
+     * @param maxTransactionsInMemory int number of transactions held in memory before spilling a run to disk
+     * @param spillDirectory File directory to write runs to, they are deleted once merged
+     */
+
+    public ReplayHoldingCalculator(int maxTransactionsInMemory, File spillDirectory){
+        super(maxTransactionsInMemory, spillDirectory);
+    }
+
+    /**
+     * @param transactionFile File plain or compressed file containing transactions
+     * @return HoldingTimeSeries daily holdings of every account over its whole history
+     */
+
+    public HoldingTimeSeries replay(File transactionFile){
+        Replayer replayer = new Replayer();
+        try {
+            group(transactionFile, replayer::accept);
+        } catch (IOException e){
+            throw new HoldingCalculationException("Error: cannot read transaction file [" + transactionFile.getName() +
+                    "], terminating", e);
+        }
+        replayer.replayAccount();
+        return replayer.builder.build();
+    }
+
+    /**
+     * Collects the transactions of one account, replaying them once the next account starts
+     */
+
+    private class Replayer {
+        private final HoldingTimeSeries.Builder builder = new HoldingTimeSeries.Builder();
+        private final PositionMap positions = new PositionMap();
+        private final Set<String> touched = new LinkedHashSet<>();
+        private final List<Transaction> transactions = new ArrayList<>();
+
+        void accept(Transaction t){
+            if (!transactions.isEmpty() && !transactions.get(0).getAccount().equals(t.getAccount())){
+                replayAccount();
+            }
+            transactions.add(t);
+        }
+
+        void replayAccount(){
+            if (transactions.isEmpty()){
+                return;
+            }
+            transactions.sort(BY_DATE);
+            builder.startAccount(transactions.get(0).getAccount());
+            positions.clear();
+            double cash = 0;
+            for (int i = 0; i < transactions.size(); i++){
+                Transaction t = transactions.get(i);
+                cash = applyTransaction(positions, t, cash, LocalDate.MAX);
+                if (!t.getAsset().equals("CASH")){
+                    touched.add(t.getAsset());
+                }
+                if (i + 1 == transactions.size() || !transactions.get(i + 1).getDate().equals(t.getDate())){
+                    long day = t.getDate().toEpochDay();
+                    for (String asset : touched){
+                        if (positions.containsKey(asset)){
+                            builder.record(asset, day, positions.get(asset));
+                        } else {
+                            builder.recordNotHeld(asset, day);
+                        }
+                    }
+                    builder.record("CASH", day, cash);
+                    touched.clear();
+                }
+            }
+            builder.endAccount();
+            transactions.clear();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.transactions;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Interns account and asset names read as raw bytes, so that every occurrence of the same name in a transaction file is
+ * backed by one String instance and a new String is only created the first time a name is seen. Uses open addressing
+ * with linear probing over the UTF-8 bytes of the name. Not thread safe
+ */
+
+public class SymbolTable {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private byte[][] keys;
+    private String[] values;
+    private int[] hashes;
+    private int size;
+
+    public SymbolTable(){
+        keys = new byte[INITIAL_CAPACITY][];
+        values = new String[INITIAL_CAPACITY];
+        hashes = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Returns the String for the UTF-8 encoded name held in bytes[from, to), creating it on first sight
+     *
+     * @param bytes byte[] buffer holding the name
+     * @param from int index of first byte of the name
+     * @param to int index after the last byte of the name
+     * @return String interned name
+     */
+
+    public String intern(byte[] bytes, int from, int to){
+        int hash = hash(bytes, from, to);
+        int mask = keys.length - 1;
+        int slot = hash & mask;
+        while (keys[slot] != null){
+            if (hashes[slot] == hash && equals(keys[slot], bytes, from, to)){
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        byte[] key = Arrays.copyOfRange(bytes, from, to);
+        String value = new String(key, StandardCharsets.UTF_8);
+        keys[slot] = key;
+        values[slot] = value;
+        hashes[slot] = hash;
+        if (++size * 2 > keys.length){
+            resize();
+        }
+        return value;
+    }
+
+    /**
+     * Returns the interned instance of name
+     *
+     * @param name String name to intern
+     * @return String interned name
+     */
+
+    public String intern(String name){
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        return intern(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @return int number of distinct names interned
+     */
+
+    public int size(){
+        return size;
+    }
+
+    private void resize(){
+        byte[][] oldKeys = keys;
+        String[] oldValues = values;
+        int[] oldHashes = hashes;
+        keys = new byte[oldKeys.length * 2][];
+        values = new String[oldKeys.length * 2];
+        hashes = new int[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++){
+            if (oldKeys[i] == null){
+                continue;
+            }
+            int slot = oldHashes[i] & mask;
+            while (keys[slot] != null){
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+            hashes[slot] = oldHashes[i];
+        }
+    }
+
+    private static int hash(byte[] bytes, int from, int to){
+        //FNV-1a, followed by a final mix so that names differing only in the last characters spread across slots
+        int hash = 0x811C9DC5;
+        for (int i = from; i < to; i++){
+            hash = (hash ^ bytes[i]) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equals(byte[] key, byte[] bytes, int from, int to){
+        if (key.length != to - from){
+            return false;
+        }
+        for (int i = 0; i < key.length; i++){
+            if (key[i] != bytes[from + i]){
+                return false;
+            }
+        }
+        return true;
+    }
+}
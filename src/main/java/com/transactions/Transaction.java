@@ -19,6 +19,15 @@ public class Transaction {
     String asset;
 
 
+    Transaction(String account, LocalDate date, txn txnType, double units, double price, String asset){
+        this.account = account;
+        this.date = date;
+        this.txnType = txnType;
+        this.units = units;
+        this.price = price;
+        this.asset = asset;
+    }
+
     Transaction(String[] elements) throws InvalidTransactionException {
         if(elements.length != 6){
             //exception caught in next level (to skip line)
@@ -53,24 +62,48 @@ public class Transaction {
     }
 
     public void validateTransaction() throws InvalidTransactionException {
-        if((this.txnType.equals(txn.WDR) || this.txnType.equals(txn.DEP)) && !this.asset.equals("CASH")){
-            throw new InvalidTransactionException("Error: for deposit and withdrawal transaction type asset is expected to be CASH, actual asset: [" + this.asset + "]");
+        RejectReason reason = check();
+        if (reason == null){
+            return;
+        }
+        switch (reason){
+            case CASH_ASSET_EXPECTED:
+                throw new InvalidTransactionException("Error: for deposit and withdrawal transaction type asset is expected to be CASH, actual asset: [" + this.asset + "]");
+            case NOT_POSITIVE:
+                throw new InvalidTransactionException("Error: units and price expected to be positive");
+            case EMPTY_ACCOUNT:
+                throw new InvalidTransactionException("Error: account name expected to be non empty");
+            case EMPTY_ASSET:
+                throw new InvalidTransactionException("Error: Asset not specified");
+            default:
+                throw new InvalidTransactionException("Error: for cash transactions the price is expected to be 1, actual price [ " + this.price + "]");
+        }
+    }
+
+    /**
+     * Checks the same rules as validateTransaction without throwing, for callers rejecting many lines
+     *
+     * @return RejectReason first rule the transaction breaks, null if it is valid
+     */
+
+    public RejectReason check(){
+        if((this.txnType == txn.WDR || this.txnType == txn.DEP) && !this.asset.equals("CASH")){
+            return RejectReason.CASH_ASSET_EXPECTED;
         }
         if(this.units <= 0 || this.price <= 0){
-            throw new InvalidTransactionException("Error: units and price expected to be positive");
+            return RejectReason.NOT_POSITIVE;
         }
         //check that account not ''
         if(this.account.isEmpty()){
-            throw new InvalidTransactionException("Error: account name expected to be non empty");
+            return RejectReason.EMPTY_ACCOUNT;
         }
-
         if(this.asset.isEmpty()){
-            throw new InvalidTransactionException("Error: Asset not specified");
+            return RejectReason.EMPTY_ASSET;
         }
         if (this.asset.equals("CASH")&& this.price!= 1.0){
-            throw new InvalidTransactionException("Error: for cash transactions the price is expected to be 1, actual price [ " + this.price + "]");
+            return RejectReason.CASH_PRICE;
         }
-
+        return null;
     }
 
 
@@ -0,0 +1,104 @@
+package com.transactions;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens transaction files for reading whatever their compression, told apart by their first bytes: plain text,
+ * gzip, including files of several concatenated members, and block gzip (BGZF, as written by bgzip), whose members
+ * record their own length and are decompressed in parallel by a BlockGzipInputStream. Zstandard files are recognised
+ * but not supported, as no decoder is available without an extra dependency
+ */
+
+public final class TransactionInput {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    enum Format {
+        PLAIN, GZIP, BLOCK_GZIP, ZSTD
+    }
+
+    private TransactionInput(){
+    }
+
+    /**
+     * Opens file with one block decompressing thread per available processor
+     *
+     * @param transactionFile File plain or compressed file containing transactions
+     * @return InputStream stream of the uncompressed content
+     * @throws IOException if file cannot be read or its compression is not supported
+     */
+
+    public static InputStream open(File transactionFile) throws IOException {
+        return open(transactionFile, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param transactionFile File plain or compressed file containing transactions
+     * @param parallelism int number of threads decompressing block gzip files
+     * @return InputStream stream of the uncompressed content
+     * @throws IOException if file cannot be read or its compression is not supported
+     */
+
+    public static InputStream open(File transactionFile, int parallelism) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(transactionFile), BUFFER_SIZE);
+        try {
+            switch (detect(in)){
+                case GZIP:
+                    return new GZIPInputStream(in, BUFFER_SIZE);
+                case BLOCK_GZIP:
+                    return new BlockGzipInputStream(in, parallelism);
+                case ZSTD:
+                    throw new IOException("Error: zstd compressed transaction file [" + transactionFile.getName() +
+                            "] not supported, decompress it or recompress it with gzip");
+                default:
+                    return in;
+            }
+        } catch (IOException | RuntimeException e){
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param transactionFile File file containing transactions
+     * @return Format format of the file
+     * @throws IOException
+     */
+
+    static Format detect(File transactionFile) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(transactionFile), BlockGzipInputStream.HEADER_SIZE)){
+            return detect(in);
+        }
+    }
+
+    /**
+     * Tells format of the stream from its first bytes, leaving the stream at its start
+     *
+     * @param in InputStream stream supporting mark
+     * @return Format format of the stream
+     * @throws IOException
+     */
+
+    static Format detect(InputStream in) throws IOException {
+        byte[] header = new byte[BlockGzipInputStream.HEADER_SIZE];
+        in.mark(header.length);
+        int length = 0;
+        int read;
+        while (length < header.length && (read = in.read(header, length, header.length - length)) > 0){
+            length += read;
+        }
+        in.reset();
+        if (length >= 4 && (header[0] & 0xff) == 0x28 && (header[1] & 0xff) == 0xb5 && (header[2] & 0xff) == 0x2f &&
+                (header[3] & 0xff) == 0xfd){
+            return Format.ZSTD;
+        }
+        if (length >= 3 && (header[0] & 0xff) == 0x1f && (header[1] & 0xff) == 0x8b && header[2] == 8){
+            return BlockGzipInputStream.blockSize(header, length) > 0 ? Format.BLOCK_GZIP : Format.GZIP;
+        }
+        return Format.PLAIN;
+    }
+}
@@ -0,0 +1,181 @@
+package com.transactions;
+
+import java.time.LocalDate;
+
+/**
+ * Parses and validates transaction lines like HoldingCalculatorImpl.parseTransaction, accepting and rejecting exactly
+ * the same lines, but reports a rejected line by returning null and leaving its RejectReason in getReason instead of
+ * throwing. Fields that are clearly valid or clearly invalid are decided without any exception being thrown; only
+ * unusual input the JDK parsers accept in forms not checked here (e.g. signed or over long years, hexadecimal or
+ * exponent numbers) goes through them. Not thread safe
+ */
+
+public class TransactionParser {
+    private static final Transaction.txn[] TXN_TYPES = Transaction.txn.values();
+    private static final int FIELDS = 6;
+    //characters that may appear in text Double.valueOf accepts, any other character makes the text invalid
+    private static final String DOUBLE_CHARACTERS = "0123456789.+-eExXpPabcdefABCDEFNIinty";
+
+    private final String[] fields = new String[FIELDS];
+    private RejectReason reason;
+    private double parsedDouble;
+
+    /**
+     * @param transactionLine String line expected to have format Account,Date,TxnType,Units,Price,Asset
+     * @return Transaction validated transaction, or null if line is invalid
+     */
+
+    public Transaction parse(String transactionLine){
+        reason = null;
+        if (!split(transactionLine)){
+            reason = RejectReason.FIELD_COUNT;
+            return null;
+        }
+        LocalDate date = parseDate(fields[1]);
+        if (date == null){
+            reason = RejectReason.DATE;
+            return null;
+        }
+        Transaction.txn txnType = parseTxnType(fields[2]);
+        if (txnType == null){
+            reason = RejectReason.TXN_TYPE;
+            return null;
+        }
+        if (!parseDouble(fields[3])){
+            reason = RejectReason.UNITS;
+            return null;
+        }
+        double units = parsedDouble;
+        if (!parseDouble(fields[4])){
+            reason = RejectReason.PRICE;
+            return null;
+        }
+        double price = parsedDouble;
+        Transaction t = new Transaction(fields[0], date, txnType, units, price, fields[5]);
+        reason = t.check();
+        return reason == null ? t : null;
+    }
+
+    /**
+     * @return RejectReason reason the last line passed to parse was rejected for, null if it was accepted
+     */
+
+    public RejectReason getReason(){
+        return reason;
+    }
+
+    /**
+     * Splits line at commas into fields, returns false unless there are exactly six; like String.split, trailing
+     * empty fields are dropped before counting
+     */
+
+    private boolean split(String line){
+        int end = line.length();
+        while (end > 0 && line.charAt(end - 1) == ','){
+            end--;
+        }
+        int count = 0;
+        int start = 0;
+        while (true){
+            int comma = line.indexOf(',', start);
+            if (comma < 0 || comma >= end){
+                if (count == FIELDS){
+                    return false;
+                }
+                fields[count++] = line.substring(start, end);
+                return count == FIELDS;
+            }
+            if (count == FIELDS - 1){
+                return false;
+            }
+            fields[count++] = line.substring(start, comma);
+            start = comma + 1;
+        }
+    }
+
+    /**
+     * Parses yyyyMMdd as LocalDate.parse with Transaction.formatter does, including its resolution of days past the
+     * end of the month to the last day; returns null if the date is invalid
+     */
+
+    static LocalDate parseDate(String text){
+        boolean digits = true;
+        for (int i = 0; i < text.length(); i++){
+            char c = text.charAt(i);
+            if (c == '+' || c == '-'){
+                return parseDateWithFormatter(text);
+            }
+            if (c < '0' || c > '9'){
+                digits = false;
+            }
+        }
+        if (!digits || text.length() < 8){
+            return null;
+        }
+        if (text.length() > 8){
+            return parseDateWithFormatter(text);
+        }
+        int year = Integer.parseInt(text.substring(0, 4));
+        int month = Integer.parseInt(text.substring(4, 6));
+        int day = Integer.parseInt(text.substring(6, 8));
+        if (year == 0 || month < 1 || month > 12 || day < 1 || day > 31){
+            return null;
+        }
+        LocalDate first = LocalDate.of(year, month, 1);
+        return first.withDayOfMonth(Math.min(day, first.lengthOfMonth()));
+    }
+
+    private static LocalDate parseDateWithFormatter(String text){
+        try {
+            return LocalDate.parse(text, Transaction.formatter);
+        } catch (Exception e){
+            return null;
+        }
+    }
+
+    static Transaction.txn parseTxnType(String text){
+        for (Transaction.txn txnType : TXN_TYPES){
+            if (txnType.name().equals(text)){
+                return txnType;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses text as Double.valueOf does into parsedDouble; returns false if text is invalid
+     */
+
+    private boolean parseDouble(String text){
+        boolean plain = true;
+        boolean point = false;
+        boolean digit = false;
+        for (int i = 0; i < text.length(); i++){
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9'){
+                digit = true;
+            } else if (c == '.' && !point){
+                point = true;
+            } else if (!(i == 0 && (c == '-' || c == '+'))){
+                plain = false;
+                //Double.valueOf ignores leading and trailing control characters and spaces
+                if (c > ' ' && DOUBLE_CHARACTERS.indexOf(c) < 0){
+                    return false;
+                }
+            }
+        }
+        if (plain){
+            if (!digit){
+                return false;
+            }
+            parsedDouble = Double.parseDouble(text);
+            return true;
+        }
+        try {
+            parsedDouble = Double.parseDouble(text);
+            return true;
+        } catch (NumberFormatException e){
+            return false;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.transactions;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDate;
+
+/**
+ * Columnar in-memory store of transactions: account and asset as dictionary ids, date as epoch day, txn type as its
+ * ordinal and units and price as doubles, 29 bytes per transaction in total. Each column is a ByteBuffer, allocated
+ * either on the heap or, for off heap storage, as a direct buffer outside of it. Transactions are kept in the order
+ * they are added. Not thread safe for writing
+ */
+
+public class TransactionStore {
+    private static final int INITIAL_CAPACITY = 1024;
+    //widest column holds 8 bytes per transaction and a ByteBuffer is indexed by int
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE / 8;
+    private static final Transaction.txn[] TXN_TYPES = Transaction.txn.values();
+
+    private final boolean offHeap;
+    private final Dictionary accounts = new Dictionary();
+    private final Dictionary assets = new Dictionary();
+
+    private ByteBuffer accountColumn;
+    private ByteBuffer assetColumn;
+    private ByteBuffer dateColumn;
+    private ByteBuffer typeColumn;
+    private ByteBuffer unitsColumn;
+    private ByteBuffer priceColumn;
+    private int capacity;
+    private int size;
+
+    public TransactionStore(){
+        this(false);
+    }
+
+    /**
+     * @param offHeap boolean true to keep columns in direct buffers outside of the heap
+     */
+
+    public TransactionStore(boolean offHeap){
+        this.offHeap = offHeap;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Loads every valid transaction in a transaction file into a new store
+     *
+     * @param transactionFile File file containing transactions
+     * @param offHeap boolean true to keep columns outside of the heap
+     * @return TransactionStore store holding transactions in file order
+     * @throws IOException
+     */
+
+    public static TransactionStore load(File transactionFile, boolean offHeap) throws IOException {
+        TransactionStore store = new TransactionStore(offHeap);
+        new MappedTransactionReader().read(transactionFile, store::add);
+        return store;
+    }
+
+    /**
+     * Appends transaction to the store
+     *
+     * @param t Transaction validated transaction
+     */
+
+    public void add(Transaction t){
+        if (size == capacity){
+            if (capacity == MAX_CAPACITY){
+                throw new HoldingCalculationException("Error: transaction store full at [" + size + "] transactions");
+            }
+            allocate((int) Math.min((long) capacity * 2, MAX_CAPACITY));
+        }
+        accountColumn.putInt(size * 4, accounts.encode(t.getAccount()));
+        assetColumn.putInt(size * 4, assets.encode(t.getAsset()));
+        dateColumn.putInt(size * 4, (int) t.getDate().toEpochDay());
+        typeColumn.put(size, (byte) t.getTxnType().ordinal());
+        unitsColumn.putDouble(size * 8, t.getUnits());
+        priceColumn.putDouble(size * 8, t.getPrice());
+        size++;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public int account(int row){
+        return accountColumn.getInt(row * 4);
+    }
+
+    public int asset(int row){
+        return assetColumn.getInt(row * 4);
+    }
+
+    public int epochDay(int row){
+        return dateColumn.getInt(row * 4);
+    }
+
+    public Transaction.txn txnType(int row){
+        return TXN_TYPES[typeColumn.get(row)];
+    }
+
+    public double units(int row){
+        return unitsColumn.getDouble(row * 8);
+    }
+
+    public double price(int row){
+        return priceColumn.getDouble(row * 8);
+    }
+
+    public Dictionary getAccounts(){
+        return accounts;
+    }
+
+    public Dictionary getAssets(){
+        return assets;
+    }
+
+    /**
+     * Rebuilds transaction stored in a row, for inspection; computations should read the columns directly
+     *
+     * @param row int index of transaction in order of adding
+     * @return Transaction transaction stored in row
+     */
+
+    public Transaction get(int row){
+        return new Transaction(accounts.decode(account(row)), LocalDate.ofEpochDay(epochDay(row)), txnType(row),
+                units(row), price(row), assets.decode(asset(row)));
+    }
+
+    private void allocate(int newCapacity){
+        accountColumn = grow(accountColumn, newCapacity * 4);
+        assetColumn = grow(assetColumn, newCapacity * 4);
+        dateColumn = grow(dateColumn, newCapacity * 4);
+        typeColumn = grow(typeColumn, newCapacity);
+        unitsColumn = grow(unitsColumn, newCapacity * 8);
+        priceColumn = grow(priceColumn, newCapacity * 8);
+        capacity = newCapacity;
+    }
+
+    private ByteBuffer grow(ByteBuffer column, int bytes){
+        ByteBuffer grown = offHeap ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes);
+        grown.order(ByteOrder.nativeOrder());
+        if (column != null){
+            column.clear();
+            grown.put(column);
+            grown.clear();
+        }
+        return grown;
+    }
+}
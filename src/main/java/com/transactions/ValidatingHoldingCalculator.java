@@ -0,0 +1,84 @@
+package com.transactions;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HoldingCalculator rejecting invalid lines through a TransactionParser instead of exceptions, counting rejected lines
+ * per RejectReason and, if a quarantine file is given, writing each of them there in UTF-8 as
+ * lineNumber&lt;TAB&gt;reason&lt;TAB&gt;line, line numbers starting at 1. Results are the same as HoldingCalculatorImpl's
+ */
+
+public class ValidatingHoldingCalculator extends HoldingCalculatorImpl {
+    private static final int QUARANTINE_BUFFER_SIZE = 64 * 1024;
+
+    private final File quarantineFile;
+    private RejectCounters rejects = new RejectCounters();
+
+    public ValidatingHoldingCalculator(){
+        this(null);
+    }
+
+    /**
+     * @param quarantineFile File file to write rejected lines to, overwritten on every calculation, null for none
+     */
+
+    public ValidatingHoldingCalculator(File quarantineFile){
+        this.quarantineFile = quarantineFile;
+    }
+
+    @Override
+    public Map<String, List<Holding>> calculateHoldings(File transactionFile, LocalDate date){
+        RejectCounters counters = new RejectCounters();
+        HoldingAccumulator accumulator = new HoldingAccumulator(this, date);
+        TransactionParser parser = new TransactionParser();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(TransactionInput.open(transactionFile),
+                StandardCharsets.UTF_8));
+             Writer quarantine = quarantineFile == null ? null :
+                     new BufferedWriter(new OutputStreamWriter(new FileOutputStream(quarantineFile), StandardCharsets.UTF_8),
+                             QUARANTINE_BUFFER_SIZE)){
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null){
+                lineNumber++;
+                Transaction t = parser.parse(line);
+                if (t != null){
+                    accumulator.accept(t);
+                    continue;
+                }
+                counters.increment(parser.getReason());
+                if (quarantine != null){
+                    quarantine.write(Long.toString(lineNumber));
+                    quarantine.write('\t');
+                    quarantine.write(parser.getReason().name());
+                    quarantine.write('\t');
+                    quarantine.write(line);
+                    quarantine.write('\n');
+                }
+            }
+        } catch (IOException e){
+            throw new HoldingCalculationException("Error: cannot read transaction file [" + transactionFile.getName() +
+                    "] or write quarantine file, terminating", e);
+        }
+        rejects = counters;
+        return accumulator.finish();
+    }
+
+    /**
+     * @return RejectCounters lines rejected per reason by the last calculation
+     */
+
+    public RejectCounters getRejects(){
+        return rejects;
+    }
+}
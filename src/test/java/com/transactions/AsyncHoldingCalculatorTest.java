@@ -0,0 +1,93 @@
+package com.transactions;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncHoldingCalculatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final LocalDate DATE = LocalDate.of(2017, 9, 30);
+
+    @Test
+    public void calculateHoldingsAsync_shouldStreamAccountsAndReportProgress() throws IOException {
+        File file = folder.newFile("transactions.txt");
+        TestTransactions.writeTransactions(file, 200, 30);
+        Map<String, List<Holding>> expected = new HoldingCalculatorImpl().calculateHoldings(file, DATE);
+
+        Map<String, List<Holding>> streamed = new ConcurrentHashMap<>();
+        HoldingRun run = new AsyncHoldingCalculator().calculateHoldingsAsync(file, DATE, streamed::put);
+        Map<String, List<Holding>> actual = run.getResult().join();
+
+        TestTransactions.assertSameHoldings(expected, actual);
+        TestTransactions.assertSameHoldings(expected, streamed);
+        assertEquals(file.length(), run.getBytesRead());
+        assertEquals(file.length(), run.getFileSize());
+        assertEquals(200 * 30 + 1, run.getLinesRead());
+    }
+
+    @Test
+    public void cancel_shouldStopRunAndReleaseWorker() throws Exception {
+        File file = folder.newFile("transactions.txt");
+        TestTransactions.writeTransactions(file, 5000, 30);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        AsyncHoldingCalculator calculator = new AsyncHoldingCalculator(executor);
+        HoldingRun[] started = new HoldingRun[1];
+        int[] accounts = new int[1];
+        HoldingRun run;
+        synchronized (started){
+            run = calculator.calculateHoldingsAsync(file, DATE, (account, holdings) -> {
+                synchronized (started){
+                    if (++accounts[0] == 10){
+                        started[0].cancel();
+                    }
+                }
+            });
+            started[0] = run;
+        }
+        try {
+            run.getResult().join();
+            fail("Expected run to be cancelled");
+        } catch (CancellationException e){
+            assertTrue(run.isCancelled());
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(10, accounts[0]);
+        assertTrue(run.getBytesRead() < file.length());
+    }
+
+    @Test
+    public void getResult_shouldFailForMissingFile() {
+        HoldingRun run = new AsyncHoldingCalculator().calculateHoldingsAsync(new File("does-not-exist.txt"), DATE);
+        try {
+            run.getResult().join();
+            fail("Expected run to fail");
+        } catch (CompletionException e){
+            assertTrue(e.getCause() instanceof HoldingCalculationException);
+        }
+    }
+
+    @Test(expected = HoldingCalculationException.class)
+    public void calculateHoldings_shouldThrowHoldingCalculationExceptionForMissingFile() {
+        new AsyncHoldingCalculator().calculateHoldings(new File("does-not-exist.txt"), DATE);
+    }
+}
@@ -0,0 +1,204 @@
+package com.transactions;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CachingHoldingCalculatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final LocalDate DATE = LocalDate.of(2017, 12, 31);
+
+    @Test
+    public void calculateHoldings_shouldReturnCachedResultForUnchangedFile() throws IOException {
+        File file = folder.newFile();
+        TestTransactions.writeTransactions(file, 50, 10);
+        CountingCalculator delegate = new CountingCalculator();
+        CachingHoldingCalculator cache = new CachingHoldingCalculator(delegate);
+
+        Map<String, List<Holding>> first = cache.calculateHoldings(file, DATE);
+        assertSame(first, cache.calculateHoldings(file, DATE));
+        cache.calculateHoldings(file, LocalDate.of(2017, 6, 30));
+
+        assertEquals(2, delegate.calls);
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void calculateHoldings_shouldFoldOnlyAppendedLines() throws IOException {
+        File file = folder.newFile();
+        TestTransactions.writeTransactions(file, 50, 10);
+        CountingCalculator delegate = new CountingCalculator();
+        CachingHoldingCalculator cache = new CachingHoldingCalculator(delegate);
+        cache.calculateHoldings(file, DATE);
+
+        //continues the last account, starts new ones and brings back an earlier one, which replaces its holdings
+        append(file, "NEAA0049,20170301,DEP,1000,1,CASH", "NEAA0049,20170302,BOT,5,2,VUKE", "junk",
+                "NEAZ0001,20170101,DEP,10,1,CASH", "NEAA0003,20170101,BOT,1,1,GILS");
+        Map<String, List<Holding>> resumed = cache.calculateHoldings(file, DATE);
+
+        TestTransactions.assertSameHoldings(new HoldingCalculatorImpl().calculateHoldings(file, DATE), resumed);
+        assertEquals(1, delegate.calls);
+        assertEquals(1, cache.getAppends());
+    }
+
+    @Test
+    public void calculateHoldings_shouldRecalculateRewrittenFile() throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), Arrays.asList("NEAA0000,20170101,BOT,10,1,VUKE"), StandardCharsets.UTF_8);
+        CountingCalculator delegate = new CountingCalculator();
+        CachingHoldingCalculator cache = new CachingHoldingCalculator(delegate);
+        cache.calculateHoldings(file, DATE);
+
+        Files.write(file.toPath(), Arrays.asList("NEAA0000,20170101,BOT,20,1,VUKE"), StandardCharsets.UTF_8);
+        Map<String, List<Holding>> holdings = cache.calculateHoldings(file, DATE);
+
+        assertEquals(20, HoldingCalculatorImplTest.asMap(holdings.get("NEAA0000")).get("VUKE"), HoldingCalculatorImplTest.delta);
+        assertEquals(2, delegate.calls);
+    }
+
+    @Test
+    public void calculateHoldings_shouldRecalculateAppendsForGroupingDelegate() throws IOException {
+        File file = folder.newFile();
+        TestTransactions.writeTransactions(file, 20, 10);
+        CachingHoldingCalculator cache = new CachingHoldingCalculator(new GroupingHoldingCalculator());
+        cache.calculateHoldings(file, DATE);
+        append(file, "NEAA0003,20170101,BOT,1,1,GILS");
+        TestTransactions.assertSameHoldings(new GroupingHoldingCalculator().calculateHoldings(file, DATE),
+                cache.calculateHoldings(file, DATE));
+        assertEquals(2, cache.getMisses());
+        assertEquals(0, cache.getAppends());
+    }
+
+    @Test
+    public void calculateHoldings_shouldEvictLeastRecentlyUsed() throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), Arrays.asList("NEAA0000,20170101,BOT,10,1,VUKE"), StandardCharsets.UTF_8);
+        //every result weighs three: one account with VUKE and CASH
+        CachingHoldingCalculator cache = new CachingHoldingCalculator(new HoldingCalculatorImpl(), 6, null);
+        cache.calculateHoldings(file, LocalDate.of(2017, 1, 1));
+        cache.calculateHoldings(file, LocalDate.of(2017, 1, 2));
+        cache.calculateHoldings(file, LocalDate.of(2017, 1, 1));
+        cache.calculateHoldings(file, LocalDate.of(2017, 1, 3));
+
+        assertEquals(1, cache.getEvictions());
+        assertEquals(6, cache.getWeight());
+        cache.calculateHoldings(file, LocalDate.of(2017, 1, 1));
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    public void calculateHoldings_shouldReadPersistedEntries() throws IOException {
+        File file = folder.newFile();
+        TestTransactions.writeTransactions(file, 30, 10);
+        Path directory = folder.getRoot().toPath().resolve("cache");
+        Map<String, List<Holding>> expected = new CachingHoldingCalculator(new HoldingCalculatorImpl(),
+                CachingHoldingCalculator.DEFAULT_MAX_WEIGHT, directory).calculateHoldings(file, DATE);
+
+        CountingCalculator delegate = new CountingCalculator();
+        CachingHoldingCalculator restarted = new CachingHoldingCalculator(delegate,
+                CachingHoldingCalculator.DEFAULT_MAX_WEIGHT, directory);
+        TestTransactions.assertSameHoldings(expected, restarted.calculateHoldings(file, DATE));
+        assertEquals(0, delegate.calls);
+        assertEquals(1, restarted.getHits());
+    }
+
+    @Test
+    public void calculateHoldings_shouldRecalculateAppendsForValidatingDelegate() throws IOException {
+        File file = folder.newFile();
+        TestTransactions.writeTransactions(file, 20, 10);
+        ValidatingHoldingCalculator delegate = new ValidatingHoldingCalculator();
+        CachingHoldingCalculator cache = new CachingHoldingCalculator(delegate);
+        cache.calculateHoldings(file, DATE);
+        long rejected = delegate.getRejects().total();
+        append(file, "NEAA0019,20170301,DEP,1000,1,CASH", "junk");
+        cache.calculateHoldings(file, DATE);
+        assertEquals(0, cache.getAppends());
+        assertEquals(rejected + 1, delegate.getRejects().total());
+    }
+
+    @Test
+    public void calculateHoldings_shouldNotPersistEntriesHeavierThanMaxWeight() throws IOException {
+        File file = folder.newFile();
+        TestTransactions.writeTransactions(file, 30, 10);
+        Path directory = folder.getRoot().toPath().resolve("cache");
+        CachingHoldingCalculator cache = new CachingHoldingCalculator(new HoldingCalculatorImpl(), 2, directory);
+        cache.calculateHoldings(file, DATE);
+        assertEquals(0, cache.size());
+        try (Stream<Path> files = Files.list(directory)){
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void calculateHoldings_shouldKeepFilesOfCachedEntriesOnlyWhenEvictingConcurrently() throws Exception {
+        File file = folder.newFile();
+        TestTransactions.writeTransactions(file, 30, 10);
+        Path directory = folder.getRoot().toPath().resolve("cache");
+        long entryWeight = new CachingHoldingCalculator(new HoldingCalculatorImpl()).calculateHoldings(file, DATE).size();
+        CachingHoldingCalculator cache = new CachingHoldingCalculator(new HoldingCalculatorImpl(), entryWeight * 10, directory);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> calls = new ArrayList<>();
+            for (int i = 0; i < 200; i++){
+                LocalDate date = DATE.minusDays(i % 40);
+                calls.add(executor.submit(() -> cache.calculateHoldings(file, date)));
+            }
+            for (Future<?> call : calls){
+                call.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(cache.getEvictions() > 0);
+        try (Stream<Path> files = Files.list(directory)){
+            List<String> names = files.map(path -> path.getFileName().toString()).collect(Collectors.toList());
+            assertEquals(names.toString(), 2 * cache.size(), names.size());
+            for (String name : names){
+                assertFalse(name, name.endsWith(".tmp"));
+            }
+        }
+    }
+
+    private static void append(File file, String... lines) throws IOException {
+        long lastModified = file.lastModified();
+        Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        file.setLastModified(lastModified + 2000);
+    }
+
+    private static class CountingCalculator extends HoldingCalculatorImpl {
+        int calls;
+
+        @Override
+        public Map<String, List<Holding>> calculateHoldings(File transactionFile, LocalDate date){
+            calls++;
+            return super.calculateHoldings(transactionFile, date);
+        }
+    }
+}
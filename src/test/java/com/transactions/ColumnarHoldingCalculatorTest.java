@@ -0,0 +1,39 @@
+package com.transactions;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class ColumnarHoldingCalculatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void load_shouldKeepTransactionsInFileOrder() throws IOException, InvalidTransactionException {
+        TransactionStore store = TransactionStore.load(HoldingCalculatorImplTest.testFile(), false);
+        assertEquals(10, store.size());
+        assertEquals(3, store.getAccounts().size());
+        assertEquals(HoldingCalculatorImpl.parseTransaction("NEAA0000,20170102,BOT,100,10.5,VUKE"), store.get(1));
+        assertEquals(HoldingCalculatorImpl.parseTransaction("NEAC0002,20170102,SLD,10,2,VUKE"), store.get(9));
+    }
+
+    @Test
+    public void calculateHoldings_shouldMatchHoldingCalculatorImpl() throws IOException {
+        File file = folder.newFile("transactions.txt");
+        TestTransactions.writeTransactions(file, 300, 40);
+        for (LocalDate date : new LocalDate[]{LocalDate.of(2017, 3, 31), LocalDate.of(2017, 12, 31)}) {
+            Map<String, List<Holding>> expected = new HoldingCalculatorImpl().calculateHoldings(file, date);
+            TestTransactions.assertSameHoldings(expected, new ColumnarHoldingCalculator().calculateHoldings(file, date));
+            TestTransactions.assertSameHoldings(expected, new ColumnarHoldingCalculator(true).calculateHoldings(file, date));
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.transactions;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CostBasisHoldingCalculatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final LocalDate DATE = LocalDate.of(2017, 12, 31);
+
+    @Test
+    public void calculate_shouldMatchHoldingsOfHoldingCalculatorImpl() throws IOException {
+        File file = folder.newFile();
+        TestTransactions.writeTransactions(file, 50, 40);
+        for (CostBasisMethod method : CostBasisMethod.values()){
+            TestTransactions.assertSameHoldings(new HoldingCalculatorImpl().calculateHoldings(file, DATE),
+                    new CostBasisHoldingCalculator(method).calculateHoldings(file, DATE));
+        }
+    }
+
+    @Test
+    public void calculate_shouldMatchSalesInOrderOfMethod() throws IOException {
+        File file = lotFile();
+
+        CostBasisReport.Position fifo = position(new CostBasisHoldingCalculator(CostBasisMethod.FIFO).calculate(file, DATE));
+        //15 sold at 4: 10 from the lot at 1, 5 from the lot at 2
+        assertEquals(5, fifo.getUnits(), HoldingCalculatorImplTest.delta);
+        assertEquals(10, fifo.getCostBasis(), HoldingCalculatorImplTest.delta);
+        assertEquals(40, fifo.getRealizedPnl(), HoldingCalculatorImplTest.delta);
+        assertEquals(10, fifo.getUnrealizedPnl(), HoldingCalculatorImplTest.delta);
+
+        CostBasisReport.Position lifo = position(new CostBasisHoldingCalculator(CostBasisMethod.LIFO).calculate(file, DATE));
+        //10 from the lot at 2, 5 from the lot at 1
+        assertEquals(5, lifo.getUnits(), HoldingCalculatorImplTest.delta);
+        assertEquals(5, lifo.getCostBasis(), HoldingCalculatorImplTest.delta);
+        assertEquals(35, lifo.getRealizedPnl(), HoldingCalculatorImplTest.delta);
+
+        CostBasisReport.Position average = position(new CostBasisHoldingCalculator(CostBasisMethod.AVERAGE).calculate(file, DATE));
+        //20 units at an average of 1.5
+        assertEquals(5, average.getUnits(), HoldingCalculatorImplTest.delta);
+        assertEquals(7.5, average.getCostBasis(), HoldingCalculatorImplTest.delta);
+        assertEquals(37.5, average.getRealizedPnl(), HoldingCalculatorImplTest.delta);
+        assertEquals(4, average.getLastPrice(), HoldingCalculatorImplTest.delta);
+    }
+
+    @Test
+    public void calculate_shouldReportOversells() throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), Arrays.asList(
+                "NEAA0000,20170102,BOT,10,1,VUKE",
+                "NEAA0000,20170103,SLD,15,2,VUKE",
+                "NEAA0000,20170104,SLD,3,2,IWRD",
+                "NEAA0000,20180104,SLD,99,2,VUKE"), StandardCharsets.UTF_8);
+        CostBasisReport report = new CostBasisHoldingCalculator().calculate(file, DATE);
+
+        List<CostBasisReport.Oversell> oversells = report.getOversells();
+        assertEquals(2, oversells.size());
+        assertEquals("VUKE", oversells.get(0).getAsset());
+        assertEquals(15, oversells.get(0).getUnitsSold(), HoldingCalculatorImplTest.delta);
+        assertEquals(10, oversells.get(0).getUnitsAvailable(), HoldingCalculatorImplTest.delta);
+        assertEquals(LocalDate.of(2017, 1, 3), oversells.get(0).getDate());
+        assertEquals("IWRD", oversells.get(1).getAsset());
+        assertEquals(0, oversells.get(1).getUnitsAvailable(), HoldingCalculatorImplTest.delta);
+        //the sale of IWRD, never bought, creates no position
+        assertEquals(1, report.getPositions().get("NEAA0000").size());
+
+        //only the 10 units held were matched, the lots do not go short
+        CostBasisReport.Position vuke = report.getPositions().get("NEAA0000").get(0);
+        assertEquals(0, vuke.getUnits(), HoldingCalculatorImplTest.delta);
+        assertEquals(10, vuke.getRealizedPnl(), HoldingCalculatorImplTest.delta);
+        //holdings apply the sale whole, as HoldingCalculatorImpl does
+        assertEquals(-5, HoldingCalculatorImplTest.asMap(report.getHoldings().get("NEAA0000")).get("VUKE"),
+                HoldingCalculatorImplTest.delta);
+    }
+
+    @Test
+    public void lotQueue_shouldCloseFractionalLotsWithoutDust(){
+        for (CostBasisMethod method : CostBasisMethod.values()){
+            LotQueue lots = new LotQueue(method);
+            lots.buy(0.7, 1);
+            lots.buy(0.1, 2);
+            lots.sell(0.8);
+            assertFalse(method.toString(), lots.isOversold(0.8));
+            assertEquals(method.toString(), 0, lots.size());
+            assertEquals(0, lots.getUnits(), 0);
+
+            lots.buy(0.1, 1);
+            lots.buy(0.2, 2);
+            lots.sell(0.15);
+            assertEquals(method.toString(), 0.15, lots.getUnits(), HoldingCalculatorImplTest.delta);
+            assertEquals(method.toString(), method == CostBasisMethod.FIFO ? 1 : method == CostBasisMethod.LIFO ? 2 : 1,
+                    lots.size());
+            lots.sell(0.15);
+            assertFalse(method.toString(), lots.isOversold(0.15));
+            assertEquals(method.toString(), 0, lots.size());
+            assertEquals(0, lots.getUnits(), 0);
+            assertEquals(0, lots.getCost(), 0);
+        }
+    }
+
+    @Test
+    public void calculate_shouldNotReportFractionalSalesOfEverythingHeldAsOversells() throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), Arrays.asList(
+                "NEAA0000,20170102,BOT,0.7,10,VUKE",
+                "NEAA0000,20170103,BOT,0.1,12,VUKE",
+                "NEAA0000,20170104,SLD,0.8,11,VUKE",
+                "NEAA0000,20170105,BOT,0.1,5,GILS",
+                "NEAA0000,20170106,BOT,0.2,6,GILS",
+                "NEAA0000,20170107,SLD,0.3,7,GILS"), StandardCharsets.UTF_8);
+        for (CostBasisMethod method : CostBasisMethod.values()){
+            CostBasisReport report = new CostBasisHoldingCalculator(method).calculate(file, DATE);
+            assertTrue(method.toString(), report.getOversells().isEmpty());
+            for (CostBasisReport.Position position : report.getPositions().get("NEAA0000")){
+                assertEquals(position.getAsset(), 0, position.getUnits(), 0);
+            }
+        }
+    }
+
+    @Test
+    public void lotQueue_toStringShouldListLotsFromHeadOnceWrapped(){
+        LotQueue lots = new LotQueue(CostBasisMethod.FIFO);
+        for (int i = 1; i <= 4; i++){
+            lots.buy(i, 1);
+        }
+        lots.sell(3);
+        lots.buy(5, 1);
+        lots.buy(6, 1);
+        assertEquals("FIFO lots [3.0, 4.0, 5.0, 6.0]", lots.toString());
+    }
+
+    @Test
+    public void lotQueue_shouldKeepManyPartialFillsInOrder(){
+        LotQueue fifo = new LotQueue(CostBasisMethod.FIFO);
+        LotQueue lifo = new LotQueue(CostBasisMethod.LIFO);
+        for (int i = 1; i <= 1000; i++){
+            fifo.buy(1, i);
+            lifo.buy(1, i);
+            if (i % 2 == 0){
+                fifo.sell(0.5);
+                lifo.sell(0.5);
+            }
+        }
+        assertEquals(750, fifo.getUnits(), HoldingCalculatorImplTest.delta);
+        //the first 250 lots are sold out
+        assertEquals(750, fifo.size());
+        fifo.sell(1);
+        assertEquals(251, fifo.getMatchedCost(), HoldingCalculatorImplTest.delta);
+        lifo.sell(1);
+        //half of the lot at 1000 was sold when it was bought, the rest comes from the lot at 999
+        assertEquals(999.5, lifo.getMatchedCost(), HoldingCalculatorImplTest.delta);
+        lifo.sell(1000);
+        assertEquals(749, lifo.getMatchedUnits(), HoldingCalculatorImplTest.delta);
+        assertEquals(0, lifo.size());
+        assertTrue(lifo.getCost() == 0);
+    }
+
+    private File lotFile() throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), Arrays.asList(
+                "NEAA0000,20170102,DEP,1,1,CASH",
+                "NEAA0000,20170103,BOT,10,1,VUKE",
+                "NEAA0000,20170104,BOT,10,2,VUKE",
+                "NEAA0000,20170105,DIV,1,3,VUKE",
+                "NEAA0000,20170106,SLD,15,4,VUKE"), StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static CostBasisReport.Position position(CostBasisReport report){
+        List<CostBasisReport.Position> positions = report.getPositions().get("NEAA0000");
+        assertEquals(1, positions.size());
+        return positions.get(0);
+    }
+}
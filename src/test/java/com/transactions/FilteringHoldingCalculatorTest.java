@@ -0,0 +1,145 @@
+package com.transactions;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FilteringHoldingCalculatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final LocalDate DATE = LocalDate.of(2017, 12, 31);
+
+    private static final AccountFilter[] FILTERS = {
+            AccountFilter.of("NEAA0003", "NEAA0042", "NEAA9999"),
+            AccountFilter.prefix("NEAA001"),
+            AccountFilter.range("NEAA0020", "NEAA0025"),
+            AccountFilter.parse("NEAA000*, NEAA0077").or(AccountFilter.range("NEAA0090", "NEAB")),
+            AccountFilter.parse("NEAB0001,NEAC*")
+    };
+
+    @Test
+    public void calculateHoldings_shouldMatchHoldingCalculatorImplForMatchingAccounts() throws IOException {
+        File file = folder.newFile("transactions.csv");
+        TestTransactions.writeTransactions(file, 100, 30);
+        assertSameFiltered(file);
+        assertTrue(Files.exists(AccountIndex.sidecar(file)));
+        assertEquals(100, AccountIndex.load(file).size());
+    }
+
+    @Test
+    public void calculateHoldings_shouldReplaceHoldingsOfAccountsAppearingAgain() throws IOException {
+        File file = folder.newFile("transactions.csv");
+        Files.write(file.toPath(), Arrays.asList(
+                "junk",
+                "NEAB0001,20170102,BOT,10,1,VUKE",
+                "NEAC0002,junk",
+                "NEAB0001,20170103,BOT,5,1,VUKE",
+                "NEAC0002,20170103,BOT,7,1,VUKE",
+                "NEAB0001,20170104,BOT,1,1,IWRD",
+                "NEAB0001,20170105,BOT,2,1,IWRD",
+                "NEAC0002,20170106,BOT,3,1,VUKE",
+                "NEAB0001,20170107,BOT,4,1,IWRD"), StandardCharsets.UTF_8);
+        assertSameFiltered(file);
+        Map<String, List<Holding>> holdings = new FilteringHoldingCalculator(AccountFilter.of("NEAB0001"))
+                .calculateHoldings(file, DATE);
+        assertEquals(4, HoldingCalculatorImplTest.asMap(holdings.get("NEAB0001")).get("IWRD"),
+                HoldingCalculatorImplTest.delta);
+        assertFalse(HoldingCalculatorImplTest.asMap(holdings.get("NEAB0001")).containsKey("VUKE"));
+        //the junk line neither starts nor ends a group
+        assertEquals(5, AccountIndex.load(file).size());
+    }
+
+    @Test
+    public void calculateHoldings_shouldScanCompressedFiles() throws IOException {
+        File plain = folder.newFile();
+        TestTransactions.writeTransactions(plain, 100, 30);
+        File compressed = folder.newFile("transactions.csv.gz");
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(compressed))){
+            out.write(Files.readAllBytes(plain.toPath()));
+        }
+        assertSameFiltered(compressed);
+    }
+
+    @Test
+    public void load_shouldRebuildIndexOnceFileChanged() throws IOException {
+        File file = folder.newFile("transactions.csv");
+        TestTransactions.writeTransactions(file, 10, 5);
+        assertEquals(10, AccountIndex.load(file).size());
+        Files.write(file.toPath(), Arrays.asList("NEAB0001,20170102,DEP,1,1,CASH"), StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+        file.setLastModified(file.lastModified() + 2000);
+        AccountIndex index = AccountIndex.load(file);
+        assertEquals(11, index.size());
+        assertEquals("NEAB0001", index.getAccount(10));
+        assertEquals(file.length(), index.getEnd(10));
+        Map<String, List<Holding>> holdings = new FilteringHoldingCalculator(AccountFilter.of("NEAB0001"))
+                .calculateHoldings(file, DATE);
+        assertEquals(1, HoldingCalculatorImplTest.asMap(holdings.get("NEAB0001")).get("CASH"),
+                HoldingCalculatorImplTest.delta);
+    }
+
+    @Test
+    public void matches_shouldCompareFirstFieldBytes(){
+        AccountFilter filter = AccountFilter.parse("NEAA*,NEAB0001");
+        byte[] line = "NEAB0001,20170102,DEP,1,1,CASH".getBytes(StandardCharsets.UTF_8);
+        assertTrue(filter.matches(line, 0, 8));
+        assertFalse(filter.matches(line, 0, 7));
+        assertTrue(filter.matches("NEAA"));
+        assertFalse(filter.matches("NEA"));
+        assertTrue(AccountFilter.range("B", "D").matches("C9"));
+        assertFalse(AccountFilter.range("B", "D").matches("D"));
+        //ordered by UTF-8 bytes, where a supplementary character comes after any other
+        assertTrue(AccountFilter.range("\uFFFD", "\uD83D\uDE00").matches("\uFFFD1"));
+    }
+
+    @Test
+    public void calculateHoldings_shouldSkipSidecarsInDirectories() throws IOException {
+        File directory = folder.newFolder();
+        File file = new File(directory, "transactions.csv");
+        TestTransactions.writeTransactions(file, 20, 5);
+        Map<String, List<Holding>> expected = new HoldingCalculatorImpl().calculateHoldings(file, DATE);
+        new FilteringHoldingCalculator(AccountFilter.prefix("NEAA")).calculateHoldings(file, DATE);
+        assertTrue(Files.exists(AccountIndex.sidecar(file)));
+        Files.write(AccountIndex.sidecar(file).resolveSibling(file.getName() + AccountIndex.SIDECAR_EXTENSION + ".tmp"),
+                Arrays.asList("NEAB0001,20170102,DEP,1,1,CASH"), StandardCharsets.UTF_8);
+        assertEquals(1, MultiFileHoldingCalculator.listFiles(directory.toPath(), "*").size());
+        TestTransactions.assertSameHoldings(expected,
+                new MultiFileHoldingCalculator(2).calculateHoldings(directory, DATE));
+    }
+
+    private static void assertSameFiltered(File file){
+        Map<String, List<Holding>> all = new HoldingCalculatorImpl().calculateHoldings(file, DATE);
+        for (AccountFilter filter : FILTERS){
+            Map<String, List<Holding>> expected = new HashMap<>();
+            for (Map.Entry<String, List<Holding>> account : all.entrySet()){
+                if (filter.matches(account.getKey())){
+                    expected.put(account.getKey(), account.getValue());
+                }
+            }
+            TestTransactions.assertSameHoldings(expected,
+                    new FilteringHoldingCalculator(filter).calculateHoldings(file, DATE));
+            TestTransactions.assertSameHoldings(expected,
+                    new FilteringHoldingCalculator(filter, false).calculateHoldings(file, DATE));
+        }
+    }
+}
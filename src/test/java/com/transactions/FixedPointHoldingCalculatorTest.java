@@ -0,0 +1,108 @@
+package com.transactions;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class FixedPointHoldingCalculatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void calculateHoldings_shouldMatchHoldingCalculatorImpl() {
+        LocalDate date = LocalDate.of(2017, 12, 31);
+        Map<String, List<Holding>> expected = new HoldingCalculatorImpl().calculateHoldings(HoldingCalculatorImplTest.testFile(), date);
+        Map<String, List<Holding>> actual = new FixedPointHoldingCalculator().calculateHoldings(HoldingCalculatorImplTest.testFile(), date);
+        TestTransactions.assertSameHoldings(expected, actual);
+        for (Holding holding : actual.get("NEAB0001")) {
+            if (holding.getAsset().equals("CASH")) {
+                assertEquals(new BigDecimal("-25.4997"), holding.getExactHolding());
+            }
+        }
+    }
+
+    @Test
+    public void calculateHoldings_shouldNotDriftOverManyTransactions() throws IOException {
+        File file = folder.newFile("transactions.txt");
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            lines.append("NEAA0000,20170101,BOT,1,0.1,VUKE\n");
+        }
+        Files.write(file.toPath(), lines.toString().getBytes());
+        List<Holding> holdings = new FixedPointHoldingCalculator().calculateHoldings(file, LocalDate.of(2017, 1, 1)).get("NEAA0000");
+        for (Holding holding : holdings) {
+            if (holding.getAsset().equals("CASH")) {
+                assertEquals(new BigDecimal("-100.0000"), holding.getExactHolding());
+            }
+        }
+    }
+
+    @Test
+    public void toFixed_shouldRoundToFourPlaces() {
+        assertEquals(1002310L, FixedPoint.toFixed(100.231));
+        assertEquals(123457L, FixedPoint.toFixed(12.34565));
+        assertEquals(Arrays.asList(1L, -1L), Arrays.asList(FixedPoint.toFixed(0.00005), FixedPoint.toFixed(-0.00005)));
+    }
+
+    @Test
+    public void calculateHoldings_shouldRoundNotionalOnceLikeHoldingCalculatorImpl() throws IOException {
+        File file = folder.newFile("transactions.txt");
+        Files.write(file.toPath(), Arrays.asList(
+                "NEAA0000,20170101,BOT,0.12345,10000,VUKE",
+                "NEAA0000,20170101,SLD,0.0001,1.23456789,VUKE",
+                "NEAA0000,20170101,BOT,3.33335,0.5,VUSA"));
+        LocalDate date = LocalDate.of(2017, 1, 1);
+        double expected = HoldingCalculatorImplTest.asMap(new HoldingCalculatorImpl().calculateHoldings(file, date)
+                .get("NEAA0000")).get("CASH");
+        double actual = HoldingCalculatorImplTest.asMap(new FixedPointHoldingCalculator().calculateHoldings(file, date)
+                .get("NEAA0000")).get("CASH");
+        assertEquals(expected, actual, 0);
+    }
+
+    @Test
+    public void toFixed_shouldMatchRoundToFourPlaces() {
+        HoldingCalculatorImpl calculator = new HoldingCalculatorImpl();
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            double value = (random.nextInt(2_000_000) - 1_000_000) / 100_000.0 * (1 + random.nextInt(1000)) / 7;
+            assertEquals(Double.toString(value), FixedPoint.toFixed(calculator.roundToFourPlaces(value)),
+                    FixedPoint.toFixed(value));
+        }
+        assertEquals(2L, FixedPoint.toFixed(0.00015));
+        assertEquals(-2L, FixedPoint.toFixed(-0.00015));
+    }
+
+    @Test
+    public void toFixed_shouldMatchBigDecimalWhereUlpExceedsFixedPointStep() {
+        assertEquals(new BigDecimal("873742731534.2840"), FixedPoint.toBigDecimal(FixedPoint.toFixed(8.73742731534284E11)));
+        Random random = new Random(11);
+        for (int i = 0; i < 200_000; i++) {
+            //magnitudes from 2^36 to 2^42, around 2^39 where doubles become sparser than 0.0001
+            double value = (random.nextBoolean() ? 1 : -1) * Math.scalb(1 + random.nextDouble(), 36 + random.nextInt(6));
+            long expected = new BigDecimal(Double.toString(value)).setScale(4, RoundingMode.HALF_UP).unscaledValue()
+                    .longValueExact();
+            assertEquals(Double.toString(value), expected, FixedPoint.toFixed(value));
+        }
+    }
+
+    @Test(expected = HoldingCalculationException.class)
+    public void calculateHoldings_shouldThrowExceptionOnOverflow() throws IOException {
+        File file = folder.newFile("overflow.txt");
+        Files.write(file.toPath(), "NEAA0000,20170101,BOT,100000000000,100000000000,VUKE\n".getBytes());
+        new FixedPointHoldingCalculator().calculateHoldings(file, LocalDate.of(2017, 1, 1));
+    }
+}
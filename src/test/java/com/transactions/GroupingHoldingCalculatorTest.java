@@ -0,0 +1,109 @@
+package com.transactions;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class GroupingHoldingCalculatorTest {
+
+    private static final LocalDate DATE = LocalDate.of(2017, 12, 31);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void calculateHoldings_shouldGroupInterleavedAccountsInMemory() throws IOException {
+        File grouped = folder.newFile("grouped.txt");
+        TestTransactions.writeTransactions(grouped, 100, 20);
+        File interleaved = interleave(grouped);
+        TestTransactions.assertSameHoldings(new HoldingCalculatorImpl().calculateHoldings(grouped, DATE),
+                new GroupingHoldingCalculator().calculateHoldings(interleaved, DATE));
+    }
+
+    @Test
+    public void calculateHoldings_shouldGroupInterleavedAccountsThroughSpilledRuns() throws IOException {
+        File grouped = folder.newFile("grouped.txt");
+        TestTransactions.writeTransactions(grouped, 100, 20);
+        File interleaved = interleave(grouped);
+        File spillDirectory = folder.newFolder("spill");
+        TestTransactions.assertSameHoldings(new HoldingCalculatorImpl().calculateHoldings(grouped, DATE),
+                new GroupingHoldingCalculator(97, spillDirectory).calculateHoldings(interleaved, DATE));
+        assertEquals(0, spillDirectory.list().length);
+    }
+
+    @Test
+    public void calculateHoldings_shouldMergeRunsInPassesWhenOverFanIn() throws IOException {
+        File grouped = folder.newFile("grouped.txt");
+        TestTransactions.writeTransactions(grouped, 100, 20);
+        File interleaved = interleave(grouped);
+        File spillDirectory = folder.newFolder("spill");
+        //about 17 runs merged three at a time take three passes
+        TestTransactions.assertSameHoldings(new HoldingCalculatorImpl().calculateHoldings(grouped, DATE),
+                new GroupingHoldingCalculator(97, spillDirectory, 3).calculateHoldings(interleaved, DATE));
+        assertEquals(0, spillDirectory.list().length);
+    }
+
+    @Test
+    public void calculateHoldings_shouldFoldReappearingAccountAsOneGroupInFileOrder() throws IOException {
+        File file = folder.newFile("transactions.txt");
+        Files.write(file.toPath(), Arrays.asList(
+                "NEAA0000,20170102,SLD,1,5,VUSA",
+                "NEAA0000,20170103,BOT,2,5,VUSA",
+                "NEAA0001,20170103,BOT,3,1,GILS",
+                "NEAA0000,junk",
+                "NEAA0000,20170104,SLD,1,4,VUSA",
+                "NEAA0001,20170104,SLD,3,2,GILS"));
+        File spillDirectory = folder.newFolder("spill");
+        for (GroupingHoldingCalculator calculator : Arrays.asList(new GroupingHoldingCalculator(),
+                new GroupingHoldingCalculator(2, spillDirectory))) {
+            Map<String, List<Holding>> holdings = calculator.calculateHoldings(file, DATE);
+
+            //the first SLD comes before anything is held and is ignored, the last one sells half of what was bought
+            Map<String, Double> neaa0000 = HoldingCalculatorImplTest.asMap(holdings.get("NEAA0000"));
+            assertEquals(2, neaa0000.size());
+            assertEquals(1, neaa0000.get("VUSA"), HoldingCalculatorImplTest.delta);
+            assertEquals(-6, neaa0000.get("CASH"), HoldingCalculatorImplTest.delta);
+            Map<String, Double> neaa0001 = HoldingCalculatorImplTest.asMap(holdings.get("NEAA0001"));
+            assertEquals(1, neaa0001.size());
+            assertEquals(3, neaa0001.get("CASH"), HoldingCalculatorImplTest.delta);
+        }
+        assertEquals(0, spillDirectory.list().length);
+    }
+
+    /**
+     * Writes lines of grouped file with accounts interleaved at random, keeping the order of lines within an account
+     */
+
+    private File interleave(File grouped) throws IOException {
+        Map<String, List<String>> accounts = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(grouped.toPath())) {
+            accounts.computeIfAbsent(line.split(",")[0], account -> new ArrayList<>()).add(line);
+        }
+        List<List<String>> remaining = new ArrayList<>(accounts.values());
+        List<String> lines = new ArrayList<>();
+        Random random = new Random(7);
+        while (!remaining.isEmpty()) {
+            int i = random.nextInt(remaining.size());
+            lines.add(remaining.get(i).remove(0));
+            if (remaining.get(i).isEmpty()) {
+                remaining.remove(i);
+            }
+        }
+        File interleaved = folder.newFile("interleaved.txt");
+        Files.write(interleaved.toPath(), lines);
+        return interleaved;
+    }
+}
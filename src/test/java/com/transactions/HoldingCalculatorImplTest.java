@@ -1,6 +1,10 @@
 package com.transactions;
 
+import java.io.File;
 import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.Test;
 
@@ -19,7 +23,7 @@ public class HoldingCalculatorImplTest {
         assertEquals(t.getDate(),LocalDate.parse("20100228", Transaction.formatter));
         assertEquals(t.getPrice(), (double) Double.valueOf("23"),delta);
         assertEquals(t.getUnits(), (double) Double.valueOf("100.231"),delta);
-        assertEquals(t.getTxnType(), Transaction.txn.valueOf("TEST"));
+        assertEquals(t.getTxnType(), Transaction.txn.valueOf("BOT"));
     }
 
     @Test(expected = InvalidTransactionException.class)
@@ -36,4 +40,51 @@ public class HoldingCalculatorImplTest {
 
     }
 
+    @Test
+    public void calculateHoldings_shouldFoldEveryAccountInFile() {
+        HoldingCalculatorImpl calculator = new HoldingCalculatorImpl();
+        Map<String, List<Holding>> holdings = calculator.calculateHoldings(testFile(), LocalDate.of(2017, 12, 31));
+        assertEquals(3, holdings.size());
+
+        Map<String, Double> neaa = asMap(holdings.get("NEAA0000"));
+        assertEquals(2, neaa.size());
+        assertEquals(60, neaa.get("VUKE"), delta);
+        assertEquals(-555.5, neaa.get("CASH"), delta);
+
+        Map<String, Double> neab = asMap(holdings.get("NEAB0001"));
+        assertEquals(2, neab.size());
+        assertEquals(10.5, neab.get("VUSA"), delta);
+        assertEquals(-25.4997, neab.get("CASH"), delta);
+
+        Map<String, Double> neac = asMap(holdings.get("NEAC0002"));
+        assertEquals(1, neac.size());
+        assertEquals(10, neac.get("CASH"), delta);
+    }
+
+    @Test
+    public void calculateHoldings_shouldIgnoreTransactionsAfterDate() {
+        HoldingCalculatorImpl calculator = new HoldingCalculatorImpl();
+        Map<String, List<Holding>> holdings = calculator.calculateHoldings(testFile(), LocalDate.of(2017, 1, 1));
+        Map<String, Double> neaa = asMap(holdings.get("NEAA0000"));
+        assertEquals(1, neaa.size());
+        assertEquals(1, neaa.get("CASH"), delta);
+    }
+
+    @Test(expected = HoldingCalculationException.class)
+    public void calculateHoldings_shouldThrowExceptionWhenFileMissing() {
+        new HoldingCalculatorImpl().calculateHoldings(new File("does-not-exist.txt"), LocalDate.of(2017, 1, 1));
+    }
+
+    static File testFile() {
+        return new File(HoldingCalculatorImplTest.class.getResource("/transactions.txt").getFile());
+    }
+
+    static Map<String, Double> asMap(List<Holding> holdings) {
+        Map<String, Double> map = new HashMap<>();
+        for (Holding holding : holdings) {
+            map.put(holding.getAsset(), holding.getHolding());
+        }
+        return map;
+    }
+
 }
@@ -0,0 +1,119 @@
+package com.transactions;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HoldingMetricsTest {
+
+    private static final LocalDate DATE = LocalDate.of(2017, 12, 31);
+
+    @Test
+    public void calculateHoldings_shouldReportLinesTransactionsAndAccounts() {
+        HoldingCalculatorImpl calculator = new HoldingCalculatorImpl();
+        HoldingMetrics metrics = new HoldingMetrics();
+        calculator.setListener(metrics);
+        calculator.calculateHoldings(HoldingCalculatorImplTest.testFile(), DATE);
+
+        assertEquals(1, metrics.getRuns());
+        assertEquals(12, metrics.getLinesRead());
+        assertEquals(2, metrics.getLinesRejected());
+        assertEquals(2, metrics.getLinesRejected(RejectReason.DATE));
+        assertEquals(4, metrics.getTransactions(Transaction.txn.BOT));
+        assertEquals(3, metrics.getTransactions(Transaction.txn.SLD));
+        assertEquals(1, metrics.getTransactions(Transaction.txn.DEP));
+        assertEquals(1, metrics.getTransactions(Transaction.txn.WDR));
+        assertEquals(1, metrics.getTransactions(Transaction.txn.DIV));
+        assertEquals(3, metrics.getAccountsProcessed());
+        assertEquals(HoldingCalculatorImplTest.testFile().length(), metrics.getBytesRead());
+        assertTrue(metrics.getLastRunBytesPerSecond() > 0);
+
+        long histogramTotal = 0;
+        for (long count : metrics.getAccountLatencyHistogram().values()){
+            histogramTotal += count;
+        }
+        assertEquals(3, histogramTotal);
+        assertTrue(metrics.getReadNanos() > 0);
+        assertTrue(metrics.getParseNanos() > 0);
+        assertTrue(metrics.getAggregateNanos() > 0);
+    }
+
+    @Test
+    public void calculateHoldings_shouldShareMetricsBetweenConcurrentRuns() throws Exception {
+        HoldingMetrics metrics = new HoldingMetrics();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> runs = new ArrayList<>();
+            for (int i = 0; i < 8; i++){
+                runs.add(executor.submit(() -> {
+                    HoldingCalculatorImpl calculator = new HoldingCalculatorImpl();
+                    calculator.setListener(metrics);
+                    calculator.calculateHoldings(HoldingCalculatorImplTest.testFile(), DATE);
+                }));
+            }
+            for (Future<?> run : runs){
+                run.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(8, metrics.getRuns());
+        assertEquals(8 * 12, metrics.getLinesRead());
+        assertEquals(8 * HoldingCalculatorImplTest.testFile().length(), metrics.getBytesRead());
+        assertTrue(metrics.getLastRunBytesPerSecond() > 0);
+    }
+
+    @Test
+    public void calculateHoldings_shouldGiveSameHoldingsWithListener() {
+        HoldingCalculatorImpl calculator = new HoldingCalculatorImpl();
+        Map<String, List<Holding>> expected = calculator.calculateHoldings(HoldingCalculatorImplTest.testFile(), DATE);
+        calculator.setListener(new HoldingCalculationListener(){});
+        Map<String, List<Holding>> actual = calculator.calculateHoldings(HoldingCalculatorImplTest.testFile(), DATE);
+        TestTransactions.assertSameHoldings(expected, actual);
+    }
+
+    @Test
+    public void calculateHoldings_shouldReportFailedRun() {
+        HoldingCalculatorImpl calculator = new HoldingCalculatorImpl();
+        HoldingMetrics metrics = new HoldingMetrics();
+        calculator.setListener(metrics);
+        try {
+            calculator.calculateHoldings(new File("does-not-exist.txt"), DATE);
+        } catch (HoldingCalculationException e){
+            assertTrue(e.getCause() instanceof java.io.IOException);
+        }
+        assertEquals(1, metrics.getFailedRuns());
+        assertEquals(0, metrics.getRuns());
+    }
+
+    @Test
+    public void register_shouldExposeMetricsThroughJmx() throws Exception {
+        HoldingMetrics metrics = new HoldingMetrics();
+        ObjectName name = metrics.register("test");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            HoldingCalculatorImpl calculator = new HoldingCalculatorImpl();
+            calculator.setListener(metrics);
+            calculator.calculateHoldings(HoldingCalculatorImplTest.testFile(), DATE);
+            assertEquals(12L, server.getAttribute(name, "LinesRead"));
+            assertEquals(3L, server.getAttribute(name, "AccountsProcessed"));
+            server.invoke(name, "reset", null, null);
+            assertEquals(0L, server.getAttribute(name, "LinesRead"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.transactions;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HoldingServiceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void poll_shouldApplyCompleteAppendedLinesOnly() throws IOException {
+        Path file = folder.newFile().toPath();
+        append(file, "NEAA0000,20170102,BOT,10,2,VUKE\nNEAA0000,20170103,SLD,4,");
+        try (HoldingService service = new HoldingService(file, null)){
+            assertEquals(1, service.poll());
+            assertEquals(10, holding(service, "NEAA0000", "VUKE"), HoldingCalculatorImplTest.delta);
+            assertNull(service.getHoldings("NEAB0001"));
+
+            append(file, "3,VUKE\nNEAB0001,20170104,DEP,1,1,CASH\n");
+            assertEquals(2, service.poll());
+            assertEquals(0, service.poll());
+            assertEquals(6, holding(service, "NEAA0000", "VUKE"), HoldingCalculatorImplTest.delta);
+            assertEquals(-8, holding(service, "NEAA0000", "CASH"), HoldingCalculatorImplTest.delta);
+            assertEquals(1, holding(service, "NEAB0001", "CASH"), HoldingCalculatorImplTest.delta);
+            assertEquals(3, service.getTransactionsApplied());
+        }
+    }
+
+    @Test
+    public void poll_shouldMatchHoldingCalculatorImpl() throws IOException {
+        File file = folder.newFile();
+        TestTransactions.writeTransactions(file, 100, 20);
+        try (HoldingService service = new HoldingService(file.toPath(), null)){
+            service.poll();
+            Map<String, List<Holding>> expected = new HoldingCalculatorImpl().calculateHoldings(file, LocalDate.MAX);
+            assertEquals(expected.keySet(), service.getAccounts());
+            for (Map.Entry<String, List<Holding>> account : expected.entrySet()){
+                assertEquals(HoldingCalculatorImplTest.asMap(account.getValue()),
+                        HoldingCalculatorImplTest.asMap(service.getHoldings(account.getKey())));
+            }
+        }
+    }
+
+    @Test
+    public void restart_shouldCarryOnFromCheckpoint() throws IOException {
+        Path file = folder.newFile().toPath();
+        Path state = folder.newFolder().toPath();
+        append(file, "NEAA0000,20170102,BOT,10,2,VUKE\n");
+        try (HoldingService service = new HoldingService(file, state)){
+            service.poll();
+        }
+        append(file, "NEAA0000,20170103,BOT,5,2,VUKE\n");
+        try (HoldingService service = new HoldingService(file, state)){
+            assertEquals(10, holding(service, "NEAA0000", "VUKE"), HoldingCalculatorImplTest.delta);
+            assertEquals(1, service.poll());
+            assertEquals(15, holding(service, "NEAA0000", "VUKE"), HoldingCalculatorImplTest.delta);
+            service.checkpoint();
+        }
+        //only the latest snapshot is kept
+        assertEquals(2, state.toFile().list().length);
+    }
+
+    @Test
+    public void poll_shouldTailEveryFileOfDirectory() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        append(directory.resolve("20170102.csv"), "NEAA0000,20170102,DEP,1,1,CASH\n");
+        try (HoldingService service = new HoldingService(directory, "*.csv", null)){
+            assertEquals(1, service.poll());
+            append(directory.resolve("20170103.csv"), "NEAA0000,20170103,DEP,1,1,CASH\n");
+            append(directory.resolve("20170102.csv"), "NEAA0000,20170102,DEP,1,1,CASH\n");
+            append(directory.resolve("notes.txt"), "NEAA0000,20170102,DEP,1,1,CASH\n");
+            assertEquals(2, service.poll());
+            assertEquals(3, holding(service, "NEAA0000", "CASH"), HoldingCalculatorImplTest.delta);
+        }
+    }
+
+    @Test
+    public void poll_shouldFailWhenFileShrinks() throws IOException {
+        Path file = folder.newFile().toPath();
+        append(file, "NEAA0000,20170102,DEP,1,1,CASH\n");
+        try (HoldingService service = new HoldingService(file, null)){
+            service.poll();
+            Files.write(file, new byte[0]);
+            try {
+                service.poll();
+                fail("expected shrunk file to stop the service");
+            } catch (HoldingCalculationException e){
+                assertTrue(service.getFailure() != null);
+            }
+            //holdings stay readable
+            assertEquals(1, holding(service, "NEAA0000", "CASH"), HoldingCalculatorImplTest.delta);
+        }
+    }
+
+    @Test
+    public void start_shouldApplyAppendsInTheBackground() throws Exception {
+        Path file = folder.newFile().toPath();
+        try (HoldingService service = new HoldingService(file, null)){
+            service.start(50, HoldingService.DEFAULT_CHECKPOINT_MILLIS);
+            append(file, "NEAA0000,20170102,BOT,10,2,VUKE\n");
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (service.getTransactionsApplied() < 1 && System.currentTimeMillis() < deadline){
+                Thread.sleep(10);
+            }
+            assertEquals(10, holding(service, "NEAA0000", "VUKE"), HoldingCalculatorImplTest.delta);
+        }
+    }
+
+    private static void append(Path file, String lines) throws IOException {
+        Files.write(file, lines.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static double holding(HoldingService service, String account, String asset){
+        return HoldingCalculatorImplTest.asMap(service.getHoldings(account)).get(asset);
+    }
+}
@@ -0,0 +1,107 @@
+package com.transactions;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class HoldingSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void read_shouldRestoreWrittenHoldings() throws IOException {
+        File file = folder.newFile("transactions.txt");
+        TestTransactions.writeTransactions(file, 500, 20);
+        LocalDate date = LocalDate.of(2017, 12, 31);
+        Map<String, List<Holding>> holdings = new HoldingCalculatorImpl().calculateHoldings(file, date);
+        Path path = folder.getRoot().toPath().resolve("holdings.snapshot");
+
+        new HoldingSnapshot(holdings, date).write(path);
+        HoldingSnapshot snapshot = HoldingSnapshot.read(path);
+
+        assertEquals(date, snapshot.getAsOf());
+        TestTransactions.assertSameHoldings(holdings, snapshot.getHoldings());
+    }
+
+    @Test
+    public void read_shouldRestoreExactHoldings() throws IOException {
+        LocalDate date = LocalDate.of(2017, 12, 31);
+        Map<String, List<Holding>> holdings = new FixedPointHoldingCalculator().calculateHoldings(HoldingCalculatorImplTest.testFile(), date);
+        Path path = folder.getRoot().toPath().resolve("holdings.snapshot");
+
+        new HoldingSnapshot(holdings, null).write(path);
+        HoldingSnapshot snapshot = HoldingSnapshot.read(path);
+
+        assertEquals(null, snapshot.getAsOf());
+        for (Holding holding : snapshot.getHoldings().get("NEAB0001")) {
+            if (holding.getAsset().equals("CASH")) {
+                assertEquals(new BigDecimal("-25.4997"), holding.getExactHolding());
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void read_shouldThrowExceptionWhenCorrupted() throws IOException {
+        Map<String, List<Holding>> holdings = new HoldingCalculatorImpl().calculateHoldings(HoldingCalculatorImplTest.testFile(), LocalDate.of(2017, 12, 31));
+        Path path = folder.getRoot().toPath().resolve("holdings.snapshot");
+        new HoldingSnapshot(holdings, null).write(path);
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(file.length() - 12);
+            file.write(0x7F);
+        }
+        HoldingSnapshot.read(path);
+    }
+
+    @Test
+    public void read_shouldThrowIOExceptionForAnyCorruptByte() throws IOException {
+        Map<String, List<Holding>> holdings = new FixedPointHoldingCalculator().calculateHoldings(HoldingCalculatorImplTest.testFile(), LocalDate.of(2017, 12, 31));
+        Path path = folder.getRoot().toPath().resolve("holdings.snapshot");
+        new HoldingSnapshot(holdings, null).write(path);
+        byte[] bytes = Files.readAllBytes(path);
+        for (int i = 0; i < bytes.length; i++) {
+            for (int value : new int[]{0x00, 0x7F, 0xFF}) {
+                byte[] corrupt = bytes.clone();
+                if (corrupt[i] == (byte) value) {
+                    continue;
+                }
+                corrupt[i] = (byte) value;
+                try {
+                    HoldingSnapshot.read(Channels.newChannel(new ByteArrayInputStream(corrupt)));
+                    fail("expected corrupt byte at [" + i + "] to be detected");
+                } catch (IOException e) {
+                    //expected
+                }
+            }
+        }
+    }
+
+    @Test
+    public void restore_shouldContinueFromCheckpoint() {
+        LocalDate date = LocalDate.of(2017, 12, 31);
+        IncrementalHoldingCalculator calculator = new IncrementalHoldingCalculator(null);
+        calculator.apply(HoldingCalculatorImplTest.testFile(), date);
+        Path path = folder.getRoot().toPath().resolve("checkpoint");
+
+        calculator.checkpoint(path);
+        IncrementalHoldingCalculator restored = IncrementalHoldingCalculator.restore(path);
+
+        assertEquals(date, restored.getAsOf());
+        TestTransactions.assertSameHoldings(calculator.getHoldings(), restored.getHoldings());
+    }
+}
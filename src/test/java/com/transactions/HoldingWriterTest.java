@@ -0,0 +1,121 @@
+package com.transactions;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class HoldingWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void write_shouldFormatDecimalsAsDoubleToString() throws IOException {
+        Random random = new Random(7);
+        List<Double> values = new ArrayList<>(Arrays.asList(0.0, -0.0, 1.0, -1.0, 0.001, 0.0009, 9999999.9999, 1e7,
+                -555.5, -25.4997, 0.1, 1234.5678, 1e-10, 123456789.123, Double.MAX_VALUE, Double.NaN));
+        HoldingCalculatorImpl calculator = new HoldingCalculatorImpl();
+        for (int i = 0; i < 10000; i++){
+            double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12) - 3);
+            values.add(calculator.roundToFourPlaces(value));
+            values.add(value);
+        }
+        StringBuilder expected = new StringBuilder("Account\tAsset\tHolding\n");
+        Map<String, List<Holding>> holdings = new LinkedHashMap<>();
+        for (int i = 0; i < values.size(); i++){
+            holdings.put("A" + i, Collections.singletonList(holding("CASH", values.get(i))));
+            expected.append("A").append(i).append("\tCASH\t").append(Double.toString(values.get(i))).append('\n');
+        }
+        assertEquals(expected.toString(), write(holdings, HoldingFormat.TSV, 64));
+    }
+
+    @Test
+    public void write_shouldWriteTextAsPrintHoldingsDid() throws IOException {
+        Map<String, List<Holding>> holdings = new LinkedHashMap<>();
+        holdings.put("NEAA0000", Arrays.asList(holding("VUKE", 60), holding("CASH", -555.5)));
+        holdings.put("NEAC0002", Collections.singletonList(holding("CASH", 10)));
+        assertEquals("NEAA0000\nVUKE\t60.0\nCASH\t-555.5\n\nNEAC0002\nCASH\t10.0\n\n",
+                write(holdings, HoldingFormat.TEXT, HoldingWriter.DEFAULT_BUFFER_SIZE));
+    }
+
+    @Test
+    public void write_shouldQuoteAndEscapeNames() throws IOException {
+        Map<String, List<Holding>> holdings = new LinkedHashMap<>();
+        holdings.put("NE,\"AA\"", Arrays.asList(holding("VU\\KE", 1.5), holding("CASH\u00e9", 2)));
+        assertEquals("Account,Asset,Holding\n\"NE,\"\"AA\"\"\",VU\\KE,1.5\n\"NE,\"\"AA\"\"\",CASH\u00e9,2.0\n",
+                write(holdings, HoldingFormat.CSV, 64));
+        assertEquals("{\"account\":\"NE,\\\"AA\\\"\",\"holdings\":[{\"asset\":\"VU\\\\KE\",\"holding\":1.5}," +
+                        "{\"asset\":\"CASH\u00e9\",\"holding\":2.0}]}\n",
+                write(holdings, HoldingFormat.JSONL, 64));
+    }
+
+    @Test
+    public void write_shouldRoundTripBinary() throws IOException {
+        Map<String, List<Holding>> holdings = calculatedHoldings();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (HoldingWriter writer = new HoldingWriter(out, HoldingFormat.BINARY, 100)){
+            writer.write(holdings);
+        }
+        Map<String, List<Holding>> read = HoldingWriter.readBinary(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(new ArrayList<>(holdings.keySet()), new ArrayList<>(read.keySet()));
+        TestTransactions.assertSameHoldings(holdings, read);
+    }
+
+    @Test
+    public void writePartitioned_shouldSplitAccountsIntoOrderedRanges() throws IOException {
+        Map<String, List<Holding>> holdings = calculatedHoldings();
+        Path directory = folder.getRoot().toPath().resolve("parts");
+        List<Path> parts = HoldingWriter.writePartitioned(holdings, directory, HoldingFormat.BINARY, 4, 2);
+        assertEquals(4, parts.size());
+        Map<String, List<Holding>> read = new LinkedHashMap<>();
+        for (Path part : parts){
+            try (InputStream in = Files.newInputStream(part)){
+                read.putAll(HoldingWriter.readBinary(in));
+            }
+        }
+        List<String> sorted = new ArrayList<>(holdings.keySet());
+        Collections.sort(sorted);
+        assertEquals(sorted, new ArrayList<>(read.keySet()));
+        TestTransactions.assertSameHoldings(holdings, read);
+    }
+
+    private Map<String, List<Holding>> calculatedHoldings() throws IOException {
+        java.io.File file = folder.newFile();
+        TestTransactions.writeTransactions(file, 5000, 5);
+        return new HoldingCalculatorImpl().calculateHoldings(file, LocalDate.of(2017, 12, 31));
+    }
+
+    private static String write(Map<String, List<Holding>> holdings, HoldingFormat format, int bufferSize)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (HoldingWriter writer = new HoldingWriter(out, format, bufferSize)){
+            writer.write(holdings);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static Holding holding(String asset, double value){
+        Holding holding = new Holding();
+        holding.setAsset(asset);
+        holding.setHoldings(value);
+        return holding;
+    }
+}
@@ -0,0 +1,151 @@
+package com.transactions;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IncrementalHoldingCalculatorTest {
+
+    private static final LocalDate HISTORY_DATE = LocalDate.of(2017, 12, 31);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void apply_shouldUpdateHoldingsFromSnapshot() throws IOException {
+        Map<String, List<Holding>> snapshot = new HoldingCalculatorImpl().calculateHoldings(HoldingCalculatorImplTest.testFile(), HISTORY_DATE);
+        IncrementalHoldingCalculator calculator = new IncrementalHoldingCalculator(snapshot, HISTORY_DATE);
+
+        assertEquals(2, calculator.apply(delta("delta1.txt",
+                "NEAA0000,20180102,SLD,60,12,VUKE",
+                "NEAD0003,20180102,DEP,100,1,CASH"), LocalDate.of(2018, 1, 2)));
+        calculator.apply(delta("delta2.txt",
+                "NEAD0003,20180103,BOT,2,5,VUSA",
+                "NEAD0003,20180110,BOT,2,5,VUSA"), LocalDate.of(2018, 1, 3));
+
+        assertEquals(LocalDate.of(2018, 1, 3), calculator.getAsOf());
+        Map<String, List<Holding>> holdings = calculator.getHoldings();
+        assertEquals(4, holdings.size());
+        Map<String, Double> neaa = HoldingCalculatorImplTest.asMap(holdings.get("NEAA0000"));
+        assertEquals(1, neaa.size());
+        assertEquals(164.5, neaa.get("CASH"), HoldingCalculatorImplTest.delta);
+        Map<String, Double> nead = HoldingCalculatorImplTest.asMap(calculator.getHoldings("NEAD0003"));
+        assertEquals(2, nead.get("VUSA"), HoldingCalculatorImplTest.delta);
+        assertEquals(-9, nead.get("CASH"), HoldingCalculatorImplTest.delta);
+        TestTransactions.assertSameHoldings(
+                new HoldingCalculatorImpl().calculateHoldings(HoldingCalculatorImplTest.testFile(), HISTORY_DATE), snapshot);
+
+        //the line dated 2018-01-10 was kept pending, not dropped
+        assertEquals(1, calculator.getPending().size());
+        assertEquals(1, calculator.apply(delta("delta3.txt"), LocalDate.of(2018, 1, 10)));
+        assertTrue(calculator.getPending().isEmpty());
+        nead = HoldingCalculatorImplTest.asMap(calculator.getHoldings("NEAD0003"));
+        assertEquals(4, nead.get("VUSA"), HoldingCalculatorImplTest.delta);
+        assertEquals(-19, nead.get("CASH"), HoldingCalculatorImplTest.delta);
+    }
+
+    @Test
+    public void checkpoint_shouldKeepPendingTransactions() throws IOException {
+        IncrementalHoldingCalculator calculator = new IncrementalHoldingCalculator(null);
+        calculator.apply(delta("delta.txt",
+                "NEAA0000,20180102,DEP,100,1,CASH",
+                "NEAA0000,20180105,BOT,2,5,VUSA"), LocalDate.of(2018, 1, 2));
+        Path checkpoint = folder.getRoot().toPath().resolve("checkpoint.hlds");
+        calculator.checkpoint(checkpoint);
+
+        IncrementalHoldingCalculator restored = IncrementalHoldingCalculator.restore(checkpoint);
+        assertEquals(1, restored.getPending().size());
+        restored.apply(delta("empty.txt"), LocalDate.of(2018, 1, 5));
+        Map<String, Double> neaa = HoldingCalculatorImplTest.asMap(restored.getHoldings("NEAA0000"));
+        assertEquals(2, neaa.get("VUSA"), HoldingCalculatorImplTest.delta);
+        assertEquals(-9, neaa.get("CASH"), HoldingCalculatorImplTest.delta);
+    }
+
+    @Test
+    public void getHoldings_shouldReplaceAssetNamedCashWithCashBalance() throws IOException {
+        IncrementalHoldingCalculator calculator = new IncrementalHoldingCalculator(null);
+        calculator.apply(delta("delta.txt",
+                "NEAA0000,20180102,DEP,100,1,CASH",
+                "NEAA0000,20180102,BOT,2,1,CASH"), LocalDate.of(2018, 1, 2));
+        List<Holding> holdings = calculator.getHoldings("NEAA0000");
+        assertEquals(1, holdings.size());
+        assertEquals(-1, holdings.get(0).getHolding(), HoldingCalculatorImplTest.delta);
+        assertEquals(HoldingCalculatorImplTest.asMap(new HoldingCalculatorImpl().calculateHoldings(
+                folder.getRoot().toPath().resolve("delta.txt").toFile(), LocalDate.of(2018, 1, 2)).get("NEAA0000")),
+                HoldingCalculatorImplTest.asMap(holdings));
+    }
+
+    @Test
+    public void apply_shouldMatchFullCalculationWhenStartingEmpty() {
+        IncrementalHoldingCalculator calculator = new IncrementalHoldingCalculator(null);
+        calculator.applyAll(Arrays.asList(HoldingCalculatorImplTest.testFile()), HISTORY_DATE);
+        TestTransactions.assertSameHoldings(
+                new HoldingCalculatorImpl().calculateHoldings(HoldingCalculatorImplTest.testFile(), HISTORY_DATE), calculator.getHoldings());
+    }
+
+    @Test(expected = HoldingCalculationException.class)
+    public void apply_shouldThrowExceptionWhenMovingBackInTime() throws IOException {
+        new IncrementalHoldingCalculator(HISTORY_DATE).apply(delta("delta.txt"), LocalDate.of(2017, 1, 1));
+    }
+
+    @Test
+    public void apply_shouldLeaveStateUnchangedWhenDeltaFileFailsPartway() throws IOException {
+        IncrementalHoldingCalculator calculator = new IncrementalHoldingCalculator(null);
+        calculator.apply(delta("delta1.txt",
+                "NEAA0000,20180102,DEP,100,1,CASH",
+                "NEAA0000,20180105,BOT,2,5,VUSA"), LocalDate.of(2018, 1, 2));
+
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 1000; i++){
+            lines.append("NEAA0000,20180103,BOT,1,1,VUKE").append('\n');
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)){
+            out.write(lines.toString().getBytes(StandardCharsets.US_ASCII));
+        }
+        byte[] gzip = bytes.toByteArray();
+        File truncated = folder.newFile("delta2.txt.gz");
+        Files.write(truncated.toPath(), Arrays.copyOf(gzip, gzip.length - 12));
+        try {
+            calculator.apply(truncated, LocalDate.of(2018, 1, 5));
+            fail("truncated delta file was applied");
+        } catch (HoldingCalculationException e){
+            assertTrue(e.getCause() instanceof IOException);
+        }
+
+        assertEquals(LocalDate.of(2018, 1, 2), calculator.getAsOf());
+        assertEquals(1, calculator.getPending().size());
+        Map<String, Double> neaa = HoldingCalculatorImplTest.asMap(calculator.getHoldings("NEAA0000"));
+        assertEquals(1, neaa.size());
+        assertEquals(1, neaa.get("CASH"), HoldingCalculatorImplTest.delta);
+
+        Files.write(truncated.toPath(), gzip);
+        calculator.apply(truncated, LocalDate.of(2018, 1, 5));
+        neaa = HoldingCalculatorImplTest.asMap(calculator.getHoldings("NEAA0000"));
+        assertEquals(1000, neaa.get("VUKE"), HoldingCalculatorImplTest.delta);
+        assertEquals(2, neaa.get("VUSA"), HoldingCalculatorImplTest.delta);
+        assertEquals(-1009, neaa.get("CASH"), HoldingCalculatorImplTest.delta);
+    }
+
+    private File delta(String name, String... lines) throws IOException {
+        File file = folder.newFile(name);
+        Files.write(file.toPath(), Arrays.asList(lines));
+        return file;
+    }
+}
@@ -0,0 +1,109 @@
+package com.transactions;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class MappedTransactionReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String[] LINES = {
+            "NEAA0000,20170101,BOT,100.231,23,TEST",
+            "NEAA0000,20170101,DEP,100,1,CASH",
+            "NEAA0000,20160229,SLD,0.0001,1234567.8912,VUKE",
+            "NEAA0000,20170230,BOT,1,1,VUKE",
+            "NEAA0000,20170101,BOT,+1,1e2,VUKE",
+            "NEAA0000,20170101,BOT,1.,.5,VUKE",
+            "NEAA0000,20170101,BOT,0.12345678901234567,3,VUKE",
+            "NEAA0000,20170101,BOT,-1,3,VUKE",
+            "NEAA0000,20170101,BOT,1,3,VUKE,",
+            "NEAA0000,20170101,BOT,1,3,",
+            "NEAA0000,2017011,BOT,1,3,VUKE",
+            "NEAA0000,20170101,BUY,1,3,VUKE",
+            "NEAA0000,20170101,BOT,1..2,3,VUKE",
+            "Account,Date,TxnType,Units,Price,Asset",
+    };
+
+    @Test
+    public void parseLine_shouldMatchStringParser() {
+        MappedTransactionReader reader = new MappedTransactionReader();
+        for (String line : LINES) {
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            Transaction expected;
+            try {
+                expected = HoldingCalculatorImpl.parseTransaction(line);
+            } catch (InvalidTransactionException e) {
+                expected = null;
+            }
+            assertEquals(line, expected, reader.parseLine(bytes, bytes.length));
+        }
+    }
+
+    @Test
+    public void parseLine_shouldRejectInvalidLine() {
+        byte[] bytes = "NEAA0000,20170101,WDR,100,1,VISA".getBytes(StandardCharsets.UTF_8);
+        assertNull(new MappedTransactionReader().parseLine(bytes, bytes.length));
+    }
+
+    @Test
+    public void read_shouldMatchStringParserAcrossWindowBoundaries() throws IOException {
+        File file = HoldingCalculatorImplTest.testFile();
+        List<Transaction> expected = new ArrayList<>();
+        for (String line : HoldingCalculatorImpl.readTransactionFile(file)) {
+            try {
+                expected.add(HoldingCalculatorImpl.parseTransaction(line));
+            } catch (InvalidTransactionException e) {
+                //skipped by reader as well
+            }
+        }
+        List<Transaction> actual = new ArrayList<>();
+        new MappedTransactionReader(new SymbolTable(), 50).read(file, actual::add);
+        assertEquals(expected, actual);
+        assertSame(actual.get(0).getAccount(), actual.get(1).getAccount());
+    }
+
+    @Test
+    public void read_shouldGrowWindowForLinesLongerThanIt() throws IOException {
+        File file = folder.newFile();
+        StringBuilder longAccount = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            longAccount.append("NEAA");
+        }
+        Files.write(file.toPath(), Arrays.asList(
+                "NEAA0000,20170102,DEP,1,1,CASH",
+                longAccount + ",20170102,DEP,1,1,CASH",
+                "NEAB0001,20170102,DEP,1,1,CASH"), StandardCharsets.UTF_8);
+        List<Transaction> actual = new ArrayList<>();
+        new MappedTransactionReader(new SymbolTable(), 50).read(file, actual::add);
+        assertEquals(3, actual.size());
+        assertEquals(longAccount.toString(), actual.get(1).getAccount());
+        assertEquals("NEAB0001", actual.get(2).getAccount());
+    }
+
+    @Test
+    public void calculateHoldings_shouldMatchHoldingCalculatorImpl() {
+        LocalDate date = LocalDate.of(2017, 12, 31);
+        Map<String, List<Holding>> expected = new HoldingCalculatorImpl().calculateHoldings(HoldingCalculatorImplTest.testFile(), date);
+        Map<String, List<Holding>> actual = new MappedHoldingCalculator().calculateHoldings(HoldingCalculatorImplTest.testFile(), date);
+        assertEquals(expected.keySet(), actual.keySet());
+        for (String account : expected.keySet()) {
+            assertEquals(HoldingCalculatorImplTest.asMap(expected.get(account)), HoldingCalculatorImplTest.asMap(actual.get(account)));
+        }
+    }
+}
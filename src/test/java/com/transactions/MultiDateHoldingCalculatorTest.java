@@ -0,0 +1,89 @@
+package com.transactions;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class MultiDateHoldingCalculatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void calculateHoldings_shouldMatchOneCalculationPerDate() throws IOException {
+        //12 transactions per account are in date order, 30 wrap around the year and are not
+        for (int transactionsPerAccount : new int[]{12, 30}) {
+            File file = folder.newFile("transactions" + transactionsPerAccount + ".txt");
+            TestTransactions.writeTransactions(file, 100, transactionsPerAccount);
+            TreeSet<LocalDate> dates = new TreeSet<>();
+            for (int month = 1; month <= 12; month++) {
+                dates.add(LocalDate.of(2017, month, 1).plusMonths(1).minusDays(1));
+            }
+            dates.add(LocalDate.of(2016, 12, 31));
+
+            SortedMap<LocalDate, Map<String, List<Holding>>> holdings = new MultiDateHoldingCalculator().calculateHoldings(file, dates);
+
+            assertEquals(dates, holdings.keySet());
+            for (LocalDate date : dates) {
+                TestTransactions.assertSameHoldings(new HoldingCalculatorImpl().calculateHoldings(file, date), holdings.get(date));
+            }
+        }
+    }
+
+    @Test
+    public void calculateHoldings_shouldSortDatesWhateverTheirOrder() throws IOException {
+        File file = folder.newFile("transactions.txt");
+        TestTransactions.writeTransactions(file, 20, 12);
+        LocalDate june = LocalDate.of(2017, 6, 30);
+        LocalDate march = LocalDate.of(2017, 3, 31);
+        LocalDate september = LocalDate.of(2017, 9, 30);
+        TreeSet<LocalDate> descending = new TreeSet<>(Comparator.reverseOrder());
+        descending.addAll(Arrays.asList(june, march, september));
+
+        for (Collection<LocalDate> dates : Arrays.<Collection<LocalDate>>asList(descending,
+                Arrays.asList(june, march, september, march, june))) {
+            SortedMap<LocalDate, Map<String, List<Holding>>> holdings = new MultiDateHoldingCalculator().calculateHoldings(file, dates);
+
+            assertEquals(Arrays.asList(march, june, september), new ArrayList<>(holdings.keySet()));
+            for (LocalDate date : holdings.keySet()) {
+                TestTransactions.assertSameHoldings(new HoldingCalculatorImpl().calculateHoldings(file, date), holdings.get(date));
+            }
+        }
+    }
+
+    @Test
+    public void calculateHoldings_shouldReturnEmptyHoldingsBeforeFirstTransaction() throws IOException {
+        File file = folder.newFile("transactions.txt");
+        Files.write(file.toPath(), Arrays.asList(
+                "NEAA0000,20170102,DEP,100,1,CASH",
+                "NEAA0000,20170105,BOT,2,5,VUSA"));
+        LocalDate before = LocalDate.of(2017, 1, 1);
+        LocalDate after = LocalDate.of(2017, 1, 5);
+
+        SortedMap<LocalDate, Map<String, List<Holding>>> holdings = new MultiDateHoldingCalculator().calculateHoldings(file,
+                Arrays.asList(after, before));
+
+        Map<String, Double> neaa = HoldingCalculatorImplTest.asMap(holdings.get(before).get("NEAA0000"));
+        assertEquals(HoldingCalculatorImplTest.asMap(new HoldingCalculatorImpl().calculateHoldings(file, before).get("NEAA0000")), neaa);
+        assertFalse(neaa.containsKey("VUSA"));
+        neaa = HoldingCalculatorImplTest.asMap(holdings.get(after).get("NEAA0000"));
+        assertEquals(2, neaa.get("VUSA"), HoldingCalculatorImplTest.delta);
+        assertEquals(-9, neaa.get("CASH"), HoldingCalculatorImplTest.delta);
+    }
+}
@@ -0,0 +1,123 @@
+package com.transactions;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MultiFileHoldingCalculatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final LocalDate DATE = LocalDate.of(2017, 10, 31);
+
+    @Test
+    public void calculateHoldings_shouldMergeAccountsSplitOverShardsInDateOrder() throws IOException {
+        List<String> lines = sortedLines();
+        File single = folder.newFile("single.txt");
+        Files.write(single.toPath(), lines, StandardCharsets.UTF_8);
+        Map<String, List<Holding>> expected = new HoldingCalculatorImpl().calculateHoldings(single, DATE);
+
+        //shards by month, so every account is spread over all of them; listed latest first
+        File directory = folder.newFolder("shards");
+        List<File> shards = new ArrayList<>();
+        for (int shard = 2; shard >= 0; shard--){
+            List<String> shardLines = new ArrayList<>();
+            for (String line : lines){
+                int month = Integer.parseInt(line.substring(13, 15));
+                if ((month - 1) / 4 == shard){
+                    shardLines.add(line);
+                }
+            }
+            File file = new File(directory, "shard" + shard + ".csv");
+            Files.write(file.toPath(), shardLines, StandardCharsets.UTF_8);
+            shards.add(file);
+        }
+
+        Map<String, List<Holding>> actual = new MultiFileHoldingCalculator(2).calculateHoldings(shards, DATE);
+        assertEquals(80, actual.size());
+        TestTransactions.assertSameHoldings(expected, actual);
+        TestTransactions.assertSameHoldings(expected,
+                new MultiFileHoldingCalculator(3).calculateHoldings(directory, DATE));
+    }
+
+    @Test
+    public void calculateHoldings_shouldReadMatchingCompressedShards() throws IOException {
+        List<String> lines = sortedLines();
+        File single = folder.newFile("single.txt");
+        Files.write(single.toPath(), lines, StandardCharsets.UTF_8);
+        Map<String, List<Holding>> expected = new HoldingCalculatorImpl().calculateHoldings(single, DATE);
+
+        File directory = folder.newFolder("shards");
+        int half = lines.size() / 2;
+        while (lines.get(half).startsWith(lines.get(half - 1).substring(0, 8))){
+            half++;
+        }
+        Files.write(new File(directory, "a.csv").toPath(), lines.subList(0, half), StandardCharsets.UTF_8);
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(new File(directory, "b.csv.gz").toPath()))){
+            for (String line : lines.subList(half, lines.size())){
+                out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        Files.write(new File(directory, "ignored.txt").toPath(), Arrays.asList("NEAX0000,20170101,DEP,5,1,CASH"));
+
+        Files.write(new File(directory, ".DS_Store").toPath(), Arrays.asList("NEAX0001,20170101,DEP,5,1,CASH"));
+
+        assertEquals(2, MultiFileHoldingCalculator.listFiles(directory.toPath(), "*.{csv,csv.gz}").size());
+        assertEquals(3, MultiFileHoldingCalculator.listFiles(directory.toPath(), "*").size());
+        Map<String, List<Holding>> actual = new MultiFileHoldingCalculator(2)
+                .calculateHoldings(directory.toPath(), "*.{csv,csv.gz}", DATE);
+        TestTransactions.assertSameHoldings(expected, actual);
+    }
+
+    @Test
+    public void calculateHoldings_shouldKeepAccountsWithOnlyLaterTransactions() throws IOException {
+        File file = folder.newFile("late.csv");
+        Files.write(file.toPath(), Arrays.asList("NEAA0000,20180101,DEP,5,1,CASH"), StandardCharsets.UTF_8);
+        Map<String, List<Holding>> holdings = new MultiFileHoldingCalculator(1).calculateHoldings(file, DATE);
+        assertTrue(holdings.containsKey("NEAA0000"));
+        assertEquals(0, holdings.get("NEAA0000").get(0).getHolding(), HoldingCalculatorImplTest.delta);
+    }
+
+    @Test(expected = HoldingCalculationException.class)
+    public void calculateHoldings_shouldFailOnMissingShard() {
+        new MultiFileHoldingCalculator(2).calculateHoldings(Arrays.asList(new File("does-not-exist.csv")), DATE);
+    }
+
+    /**
+     * Generated valid transactions, grouped by account and sorted by date within each account
+     */
+
+    private List<String> sortedLines() throws IOException {
+        File generated = folder.newFile();
+        TestTransactions.writeTransactions(generated, 80, 30);
+        Map<String, List<String>> byAccount = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(generated.toPath(), StandardCharsets.UTF_8)){
+            if (line.split(",").length == 6 && !line.startsWith("Account")){
+                byAccount.computeIfAbsent(line.substring(0, 8), account -> new ArrayList<>()).add(line);
+            }
+        }
+        List<String> lines = new ArrayList<>();
+        for (List<String> accountLines : byAccount.values()){
+            accountLines.sort((a, b) -> a.substring(9, 17).compareTo(b.substring(9, 17)));
+            lines.addAll(accountLines);
+        }
+        return lines;
+    }
+}
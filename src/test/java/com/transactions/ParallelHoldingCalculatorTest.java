@@ -0,0 +1,75 @@
+package com.transactions;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class ParallelHoldingCalculatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void calculateHoldings_shouldMatchSequentialCalculation() throws IOException {
+        File file = folder.newFile("transactions.txt");
+        TestTransactions.writeTransactions(file, 200, 30);
+        LocalDate date = LocalDate.of(2017, 6, 30);
+        Map<String, List<Holding>> expected = new HoldingCalculatorImpl().calculateHoldings(file, date);
+        Map<String, List<Holding>> actual = new ParallelHoldingCalculator(4).calculateHoldings(file, date);
+        assertEquals(200, actual.size());
+        TestTransactions.assertSameHoldings(expected, actual);
+    }
+
+    @Test
+    public void calculateHoldings_shouldHandleSingleAccountFile() {
+        LocalDate date = LocalDate.of(2017, 12, 31);
+        Map<String, List<Holding>> expected = new HoldingCalculatorImpl().calculateHoldings(HoldingCalculatorImplTest.testFile(), date);
+        Map<String, List<Holding>> actual = new ParallelHoldingCalculator(8).calculateHoldings(HoldingCalculatorImplTest.testFile(), date);
+        TestTransactions.assertSameHoldings(expected, actual);
+    }
+
+    @Test
+    public void calculateHoldings_shouldLetLaterGroupOfReappearingAccountWinAcrossChunks() throws IOException {
+        File file = folder.newFile("transactions.txt");
+        Files.write(file.toPath(), Arrays.asList(
+                "Account,Date,TxnType,Units,Price,Asset",
+                "NEAA0000,20170102,BOT,2,5,VUSA",
+                "NEAA0000,20170103,BOT,1,5,VUSA",
+                "NEAA0001,20170103,BOT,3,1,GILS",
+                "NEAA0001,junk",
+                "NEAA0001,20170104,BOT,1,1,GILS",
+                "NEAA0000,20170104,BOT,7,1,VUKE",
+                "NEAA0000,20170105,BOT,1,1,VUKE"));
+        try (FileChannel channel = FileChannel.open(file.toPath())){
+            //one chunk per account group
+            assertEquals(4, ParallelHoldingCalculator.splitAtAccounts(channel, 32).size());
+        }
+        LocalDate date = LocalDate.of(2017, 6, 30);
+        Map<String, List<Holding>> actual = new ParallelHoldingCalculator(8).calculateHoldings(file, date);
+
+        TestTransactions.assertSameHoldings(new HoldingCalculatorImpl().calculateHoldings(file, date), actual);
+        Map<String, Double> neaa0000 = HoldingCalculatorImplTest.asMap(actual.get("NEAA0000"));
+        assertEquals(2, neaa0000.size());
+        assertEquals(8, neaa0000.get("VUKE"), HoldingCalculatorImplTest.delta);
+        assertEquals(-8, neaa0000.get("CASH"), HoldingCalculatorImplTest.delta);
+        Map<String, Double> neaa0001 = HoldingCalculatorImplTest.asMap(actual.get("NEAA0001"));
+        assertEquals(4, neaa0001.get("GILS"), HoldingCalculatorImplTest.delta);
+        assertEquals(-4, neaa0001.get("CASH"), HoldingCalculatorImplTest.delta);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_shouldRejectNonPositiveParallelism() {
+        new ParallelHoldingCalculator(0);
+    }
+}
@@ -0,0 +1,49 @@
+package com.transactions;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedHoldingCalculatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void calculateHoldings_shouldMatchSequentialCalculation() throws IOException {
+        File file = folder.newFile("transactions.txt");
+        TestTransactions.writeTransactions(file, 300, 30);
+        LocalDate date = LocalDate.of(2017, 9, 30);
+        //small blocks and queues so that many blocks are in flight and arrive out of order
+        PipelinedHoldingCalculator calculator = new PipelinedHoldingCalculator(3, 1000, 4);
+
+        TestTransactions.assertSameHoldings(new HoldingCalculatorImpl().calculateHoldings(file, date),
+                calculator.calculateHoldings(file, date));
+
+        PipelineStats stats = calculator.getStats();
+        assertEquals(file.length(), stats.getBytesRead());
+        assertEquals(stats.getTransactionsParsed(), stats.getTransactionsAggregated());
+        assertTrue(stats.getBlocksRead() > 100);
+        assertTrue(stats.getMaxBlockQueueDepth() <= 4);
+    }
+
+    @Test
+    public void calculateHoldings_shouldHandleLinesLongerThanBlock() {
+        LocalDate date = LocalDate.of(2017, 12, 31);
+        TestTransactions.assertSameHoldings(
+                new HoldingCalculatorImpl().calculateHoldings(HoldingCalculatorImplTest.testFile(), date),
+                new PipelinedHoldingCalculator(2, 7, 2).calculateHoldings(HoldingCalculatorImplTest.testFile(), date));
+    }
+
+    @Test(expected = HoldingCalculationException.class)
+    public void calculateHoldings_shouldThrowExceptionWhenFileMissing() {
+        new PipelinedHoldingCalculator().calculateHoldings(new File("does-not-exist.txt"), LocalDate.of(2017, 1, 1));
+    }
+}
@@ -0,0 +1,74 @@
+package com.transactions;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PositionMapTest {
+
+    @Test
+    public void operations_shouldMatchHashMap() {
+        Random random = new Random(11);
+        PositionMap positions = new PositionMap();
+        Map<String, Double> expected = new HashMap<>();
+        for (int i = 0; i < 200000; i++){
+            //new String instances, so that lookups of names not interned are covered as well
+            String asset = new String("A" + random.nextInt(300));
+            double amount = random.nextInt(5);
+            switch (random.nextInt(4)){
+                case 0:
+                case 1:
+                    positions.add(asset, amount);
+                    expected.merge(asset, amount, Double::sum);
+                    break;
+                case 2:
+                    if (expected.containsKey(asset)){
+                        positions.subtract(asset, amount);
+                        double left = expected.get(asset) - amount;
+                        if (Double.compare(left, 0.0) == 0){
+                            expected.remove(asset);
+                        } else {
+                            expected.put(asset, left);
+                        }
+                    }
+                    break;
+                default:
+                    positions.remove(asset);
+                    expected.remove(asset);
+            }
+            assertEquals(expected.containsKey(asset), positions.containsKey(asset));
+            if (i % 20000 == 0){
+                assertSame(expected, positions);
+            }
+        }
+        assertSame(expected, positions);
+    }
+
+    @Test
+    public void clear_shouldEmptyMapAndAllowReuse() {
+        PositionMap positions = new PositionMap();
+        for (int i = 0; i < 1000; i++){
+            positions.put("A" + i, i);
+        }
+        positions.clear();
+        assertEquals(0, positions.size());
+        assertFalse(positions.containsKey("A1"));
+        positions.add("VUKE", 2);
+        positions.add("VUKE", 3);
+        assertEquals(5, positions.get("VUKE"), HoldingCalculatorImplTest.delta);
+        assertTrue(positions.containsKey("VUKE"));
+    }
+
+    private static void assertSame(Map<String, Double> expected, PositionMap positions){
+        assertEquals(expected.size(), positions.size());
+        Map<String, Double> actual = new HashMap<>();
+        positions.forEach(actual::put);
+        assertEquals(expected, actual);
+    }
+}
@@ -0,0 +1,114 @@
+package com.transactions;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReplayHoldingCalculatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replay_shouldMatchCalculateHoldingsOnEveryDate() throws IOException {
+        File file = sortedFile(100, 30);
+        ReplayHoldingCalculator calculator = new ReplayHoldingCalculator();
+        HoldingTimeSeries series = calculator.replay(file);
+        assertEquals(100, series.getAccounts().size());
+        for (LocalDate date = LocalDate.of(2016, 12, 31); date.isBefore(LocalDate.of(2018, 1, 2)); date = date.plusDays(9)){
+            TestTransactions.assertSameHoldings(calculator.calculateHoldings(file, date),
+                    series.holdingsAt(date));
+        }
+    }
+
+    @Test
+    public void daily_shouldRepeatEndOfDayValues() throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), Arrays.asList(
+                "NEAA0000,20170102,DEP,1,1,CASH",
+                "NEAA0000,20170103,BOT,10,2.5,VUKE",
+                "NEAA0000,20170103,BOT,5,2.5,VUKE",
+                "NEAA0000,20170106,SLD,15,3,VUKE",
+                "NEAA0000,20170104,DIV,1,4,VUKE"), StandardCharsets.UTF_8);
+        HoldingTimeSeries series = new ReplayHoldingCalculator().replay(file);
+
+        LocalDate from = LocalDate.of(2017, 1, 1);
+        LocalDate to = LocalDate.of(2017, 1, 7);
+        assertArrayEquals(new double[]{0, 0, 15, 15, 15, 0, 0}, series.daily("NEAA0000", "VUKE", from, to),
+                HoldingCalculatorImplTest.delta);
+        assertArrayEquals(new double[]{0, 1, -36.5, -32.5, -32.5, 12.5, 12.5},
+                series.daily("NEAA0000", "CASH", from, to), HoldingCalculatorImplTest.delta);
+        assertEquals(-32.5, series.valueAt("NEAA0000", "CASH", LocalDate.of(2017, 1, 5)), HoldingCalculatorImplTest.delta);
+        assertEquals(0, series.valueAt("NEAB0001", "CASH", to), HoldingCalculatorImplTest.delta);
+        assertTrue(series.getAssets("NEAA0000").contains("VUKE"));
+        //one change per day a value changed: VUKE on 3rd and 6th, CASH on 2nd, 3rd, 4th and 6th
+        assertEquals(6, series.getChangeCount());
+    }
+
+    @Test
+    public void holdingsAt_shouldKeepOversoldPositionBroughtBackToZero() throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), Arrays.asList(
+                "NEAA0000,20170102,BOT,10,1,VUKE",
+                "NEAA0000,20170103,SLD,15,1,VUKE",
+                "NEAA0000,20170104,BOT,5,1,VUKE",
+                "NEAA0000,20170105,SLD,5,1,GILS"), StandardCharsets.UTF_8);
+        ReplayHoldingCalculator calculator = new ReplayHoldingCalculator();
+        HoldingTimeSeries series = calculator.replay(file);
+        for (LocalDate date = LocalDate.of(2017, 1, 1); date.isBefore(LocalDate.of(2017, 1, 7)); date = date.plusDays(1)){
+            TestTransactions.assertSameHoldings(new HoldingCalculatorImpl().calculateHoldings(file, date),
+                    series.holdingsAt(date));
+        }
+        assertTrue(HoldingCalculatorImplTest.asMap(series.holdingsAt(LocalDate.of(2017, 1, 4)).get("NEAA0000"))
+                .containsKey("VUKE"));
+    }
+
+    @Test
+    public void replay_shouldGroupAccountsSpilledToDisk() throws IOException {
+        File file = sortedFile(50, 20);
+        HoldingTimeSeries inMemory = new ReplayHoldingCalculator().replay(file);
+        HoldingTimeSeries spilled = new ReplayHoldingCalculator(97, folder.newFolder()).replay(file);
+        assertEquals(inMemory.getChangeCount(), spilled.getChangeCount());
+        for (LocalDate date = LocalDate.of(2016, 12, 31); date.isBefore(LocalDate.of(2018, 1, 2)); date = date.plusDays(30)){
+            TestTransactions.assertSameHoldings(inMemory.holdingsAt(date), spilled.holdingsAt(date));
+        }
+    }
+
+    /**
+     * Generated transactions, grouped by account and sorted by date within each account
+     */
+
+    private File sortedFile(int accounts, int perAccount) throws IOException {
+        File generated = folder.newFile();
+        TestTransactions.writeTransactions(generated, accounts, perAccount);
+        Map<String, List<String>> byAccount = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(generated.toPath(), StandardCharsets.UTF_8)){
+            if (line.split(",").length == 6 && !line.startsWith("Account")){
+                byAccount.computeIfAbsent(line.substring(0, 8), account -> new ArrayList<>()).add(line);
+            }
+        }
+        List<String> lines = new ArrayList<>();
+        for (List<String> accountLines : byAccount.values()){
+            accountLines.sort((a, b) -> a.substring(9, 17).compareTo(b.substring(9, 17)));
+            lines.addAll(accountLines);
+        }
+        File file = folder.newFile();
+        Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+        return file;
+    }
+}
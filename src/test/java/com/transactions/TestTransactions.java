@@ -0,0 +1,58 @@
+package com.transactions;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Generated transaction files and holdings comparisons shared by the calculator tests
+ */
+
+final class TestTransactions {
+
+    private TestTransactions(){
+    }
+
+    /**
+     * Writes a file of accounts grouped together, with random BOT, SLD, DEP, WDR and DIV transactions and some junk
+     */
+
+    static void writeTransactions(File file, int accounts, int transactionsPerAccount) throws IOException {
+        Random random = new Random(42);
+        String[] assets = {"VUKE", "VUSA", "GILS", "IUKP"};
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write("Account,Date,TxnType,Units,Price,Asset\n");
+            for (int a = 0; a < accounts; a++) {
+                String account = String.format("NEAA%04d", a);
+                for (int t = 0; t < transactionsPerAccount; t++) {
+                    String date = String.format("2017%02d%02d", 1 + t % 12, 1 + random.nextInt(28));
+                    String asset = assets[random.nextInt(assets.length)];
+                    String units = (1 + random.nextInt(1000)) / 10.0 + "";
+                    String price = (1 + random.nextInt(100000)) / 1000.0 + "";
+                    switch (random.nextInt(6)) {
+                        case 0: writer.write(account + "," + date + ",SLD," + units + "," + price + "," + asset); break;
+                        case 1: writer.write(account + "," + date + ",DEP," + units + ",1,CASH"); break;
+                        case 2: writer.write(account + "," + date + ",WDR," + units + ",1,CASH"); break;
+                        case 3: writer.write(account + "," + date + ",DIV,1," + price + "," + asset); break;
+                        case 4: writer.write(account + ",junk\n"); continue;
+                        default: writer.write(account + "," + date + ",BOT," + units + "," + price + "," + asset);
+                    }
+                    writer.write("\n");
+                }
+            }
+        }
+    }
+
+    static void assertSameHoldings(Map<String, List<Holding>> expected, Map<String, List<Holding>> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (String account : expected.keySet()) {
+            assertEquals(account, HoldingCalculatorImplTest.asMap(expected.get(account)), HoldingCalculatorImplTest.asMap(actual.get(account)));
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.transactions;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TransactionInputTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final LocalDate DATE = LocalDate.of(2017, 6, 30);
+
+    @Test
+    public void open_shouldDetectFormats() throws IOException {
+        File plain = plainFile();
+        assertEquals(TransactionInput.Format.PLAIN, TransactionInput.detect(plain));
+        assertEquals(TransactionInput.Format.GZIP, TransactionInput.detect(gzipFile(plain)));
+        assertEquals(TransactionInput.Format.BLOCK_GZIP, TransactionInput.detect(blockGzipFile(plain, 4096)));
+    }
+
+    @Test
+    public void open_shouldDecompressMultiMemberGzip() throws IOException {
+        File plain = plainFile();
+        assertArrayEquals(Files.readAllBytes(plain.toPath()), readAll(gzipFile(plain)));
+    }
+
+    @Test
+    public void open_shouldDecompressBlockGzipInOrder() throws IOException {
+        File plain = plainFile();
+        File compressed = blockGzipFile(plain, 1000);
+        try (InputStream in = TransactionInput.open(compressed, 3)){
+            assertArrayEquals(Files.readAllBytes(plain.toPath()), toBytes(in));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void open_shouldRejectZstd() throws IOException {
+        File file = folder.newFile("transactions.zst");
+        Files.write(file.toPath(), new byte[]{0x28, (byte) 0xb5, 0x2f, (byte) 0xfd, 0, 0, 0, 0});
+        TransactionInput.open(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void open_shouldRejectCorruptBlock() throws IOException {
+        File compressed = blockGzipFile(plainFile(), 1000);
+        byte[] bytes = Files.readAllBytes(compressed.toPath());
+        bytes[40] ^= 0x55;
+        Files.write(compressed.toPath(), bytes);
+        readAll(compressed);
+    }
+
+    @Test
+    public void open_shouldRejectBlockRecordingOversizedContent() throws IOException {
+        File compressed = blockGzipFile(plainFile(), 1000);
+        byte[] bytes = Files.readAllBytes(compressed.toPath());
+        int size = ((bytes[16] & 0xff) | (bytes[17] & 0xff) << 8) + 1;
+        //ISIZE of the first member, the last 4 bytes of its trailer
+        bytes[size - 1] = (byte) 0x7f;
+        Files.write(compressed.toPath(), bytes);
+        try {
+            readAll(compressed);
+            fail("oversized block was read");
+        } catch (IOException e){
+            assertTrue(e.getMessage(), e.getMessage().contains("uncompressed bytes"));
+        }
+    }
+
+    @Test
+    public void calculateHoldings_shouldGiveSameResultForCompressedFiles() throws IOException {
+        File plain = plainFile();
+        Map<String, List<Holding>> expected = new HoldingCalculatorImpl().calculateHoldings(plain, DATE);
+        for (File file : Arrays.asList(gzipFile(plain), blockGzipFile(plain, 2000))){
+            TestTransactions.assertSameHoldings(expected, new HoldingCalculatorImpl().calculateHoldings(file, DATE));
+            TestTransactions.assertSameHoldings(expected, new MappedHoldingCalculator().calculateHoldings(file, DATE));
+            TestTransactions.assertSameHoldings(expected, new ParallelHoldingCalculator(4).calculateHoldings(file, DATE));
+            TestTransactions.assertSameHoldings(expected,
+                    new PipelinedHoldingCalculator(2, 1024, 4).calculateHoldings(file, DATE));
+        }
+    }
+
+    private File plainFile() throws IOException {
+        File file = folder.newFile();
+        TestTransactions.writeTransactions(file, 100, 30);
+        return file;
+    }
+
+    /**
+     * Writes file as two concatenated gzip members
+     */
+
+    private File gzipFile(File plain) throws IOException {
+        byte[] content = Files.readAllBytes(plain.toPath());
+        File file = folder.newFile();
+        try (OutputStream out = new FileOutputStream(file)){
+            int half = content.length / 2;
+            GZIPOutputStream first = new GZIPOutputStream(out);
+            first.write(content, 0, half);
+            first.finish();
+            GZIPOutputStream second = new GZIPOutputStream(out);
+            second.write(content, half, content.length - half);
+            second.finish();
+        }
+        return file;
+    }
+
+    /**
+     * Writes file as block gzip, blockSize uncompressed bytes per member, ending with an empty member as bgzip does
+     */
+
+    static File blockGzipFile(File plain, int blockSize) throws IOException {
+        byte[] content = Files.readAllBytes(plain.toPath());
+        File file = new File(plain.getPath() + ".bgz");
+        try (OutputStream out = new FileOutputStream(file)){
+            for (int offset = 0; offset < content.length; offset += blockSize){
+                writeBlock(out, content, offset, Math.min(blockSize, content.length - offset));
+            }
+            writeBlock(out, content, 0, 0);
+        }
+        return file;
+    }
+
+    private static void writeBlock(OutputStream out, byte[] content, int offset, int length) throws IOException {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(content, offset, length);
+        deflater.finish();
+        byte[] buffer = new byte[length + 1024];
+        int compressed = deflater.deflate(buffer);
+        deflater.end();
+        int size = 18 + compressed + 8;
+        out.write(new byte[]{0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0, 'B', 'C', 2, 0,
+                (byte) (size - 1), (byte) ((size - 1) >> 8)});
+        out.write(buffer, 0, compressed);
+        CRC32 crc = new CRC32();
+        crc.update(content, offset, length);
+        writeInt(out, (int) crc.getValue());
+        writeInt(out, length);
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(new byte[]{(byte) value, (byte) (value >> 8), (byte) (value >> 16), (byte) (value >> 24)});
+    }
+
+    private static byte[] readAll(File file) throws IOException {
+        try (InputStream in = TransactionInput.open(file)){
+            return toBytes(in);
+        }
+    }
+
+    private static byte[] toBytes(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[777];
+        int read;
+        while ((read = in.read(buffer)) >= 0){
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,104 @@
+package com.transactions;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TransactionParserTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String[] LINES = {
+            "NEAA0000,20170101,BOT,100.231,23,TEST",
+            "NEAA0000,20170101,DEP,100,1,CASH",
+            "NEAA0000,20170230,BOT,1,1,VUKE",
+            "NEAA0000,20170431,BOT,1,1,VUKE",
+            "NEAA0000,20171301,BOT,1,1,VUKE",
+            "NEAA0000,20170132,BOT,1,1,VUKE",
+            "NEAA0000,00000101,BOT,1,1,VUKE",
+            "NEAA0000,+20170101,BOT,1,1,VUKE",
+            "NEAA0000,120170101,BOT,1,1,VUKE",
+            "NEAA0000,2017-01-01,BOT,1,1,VUKE",
+            "NEAA0000,20170101,BUY,1,1,VUKE",
+            "NEAA0000,20170101,bot,1,1,VUKE",
+            "NEAA0000,20170101,BOT,+1,1e2,VUKE",
+            "NEAA0000,20170101,BOT, 1 ,0x1p3,VUKE",
+            "NEAA0000,20170101,BOT,1d,1F,VUKE",
+            "NEAA0000,20170101,BOT,Infinity,1,VUKE",
+            "NEAA0000,20170101,BOT,NaN,1,VUKE",
+            "NEAA0000,20170101,BOT,1..2,1,VUKE",
+            "NEAA0000,20170101,BOT,-,1,VUKE",
+            "NEAA0000,20170101,BOT,.,1,VUKE",
+            "NEAA0000,20170101,BOT,ten,1,VUKE",
+            "NEAA0000,20170101,BOT,1,,VUKE",
+            "NEAA0000,20170101,BOT,1,3,VUKE,",
+            "NEAA0000,20170101,BOT,1,3,VUKE,,",
+            "NEAA0000,20170101,BOT,1,3,VUKE,X",
+            "NEAA0000,20170101,BOT,1,3,",
+            "NEAA0000,20170101,WDR,1,1,VISA",
+            "NEAA0000,20170101,BOT,-1,3,VUKE",
+            ",20170101,BOT,1,3,VUKE",
+            "NEAA0000,20170101,DIV,1,2,CASH",
+            "Account,Date,TxnType,Units,Price,Asset",
+            ",,,,,",
+            "",
+    };
+
+    @Test
+    public void parse_shouldMatchParseTransaction() {
+        TransactionParser parser = new TransactionParser();
+        for (String line : LINES) {
+            Transaction expected;
+            try {
+                expected = HoldingCalculatorImpl.parseTransaction(line);
+            } catch (InvalidTransactionException e) {
+                expected = null;
+            }
+            assertEquals(line, expected, parser.parse(line));
+            assertEquals(line, expected == null, parser.getReason() != null);
+        }
+    }
+
+    @Test
+    public void parse_shouldReportReason() {
+        TransactionParser parser = new TransactionParser();
+        assertNull(parser.parse("Account,Date,TxnType,Units,Price,Asset"));
+        assertEquals(RejectReason.DATE, parser.getReason());
+        assertNull(parser.parse("NEAA0000,20170101,BOT,1,3,"));
+        assertEquals(RejectReason.FIELD_COUNT, parser.getReason());
+        assertNull(parser.parse("NEAA0000,20170101,SEL,1,3,VUKE"));
+        assertEquals(RejectReason.TXN_TYPE, parser.getReason());
+        assertNull(parser.parse("NEAA0000,20170101,BOT,1,x,VUKE"));
+        assertEquals(RejectReason.PRICE, parser.getReason());
+        assertNull(parser.parse("NEAA0000,20170101,DIV,1,2,CASH"));
+        assertEquals(RejectReason.CASH_PRICE, parser.getReason());
+    }
+
+    @Test
+    public void calculateHoldings_shouldCountAndQuarantineRejectedLines() throws IOException {
+        File quarantine = folder.newFile("quarantine.txt");
+        ValidatingHoldingCalculator calculator = new ValidatingHoldingCalculator(quarantine);
+        LocalDate date = LocalDate.of(2017, 12, 31);
+
+        TestTransactions.assertSameHoldings(
+                new HoldingCalculatorImpl().calculateHoldings(HoldingCalculatorImplTest.testFile(), date),
+                calculator.calculateHoldings(HoldingCalculatorImplTest.testFile(), date));
+
+        assertEquals(2, calculator.getRejects().total());
+        assertEquals(2, calculator.getRejects().get(RejectReason.DATE));
+        List<String> quarantined = Files.readAllLines(quarantine.toPath());
+        assertEquals(Arrays.asList("1\tDATE\tAccount,Date,TxnType,Units,Price,Asset",
+                "9\tDATE\tNEAB0001,not a date,BOT,1,1,VUSA"), quarantined);
+    }
+}